@@ -16,16 +16,36 @@ package com.baidu.bifromq.deliverer;
 import com.baidu.bifromq.type.TopicMessagePack;
 
 /**
- * Using the wrapper as the map key instead of using TopicMessagePack directly to prevent heavy hashcode calculation
+ * Using the wrapper as the map key instead of using TopicMessagePack directly to prevent heavy hashcode calculation.
+ * Wrappers of the same TopicMessagePack instance are equal, so the message pack fanned out to multiple receivers of
+ * the same deliverer is embedded and serialized only once in the delivery request.
  */
 public class MessagePackWrapper {
     public final TopicMessagePack messagePack;
 
     private MessagePackWrapper(TopicMessagePack messagePack) {
         this.messagePack = messagePack;
+        // memoize the serialized size before the message pack being shared by concurrent serializations
+        messagePack.getSerializedSize();
     }
 
     public static MessagePackWrapper wrap(TopicMessagePack msgPack) {
         return new MessagePackWrapper(msgPack);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MessagePackWrapper)) {
+            return false;
+        }
+        return messagePack == ((MessagePackWrapper) o).messagePack;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(messagePack);
+    }
 }
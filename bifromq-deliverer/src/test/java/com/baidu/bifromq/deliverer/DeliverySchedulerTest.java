@@ -17,6 +17,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.fail;
 
 import com.baidu.bifromq.plugin.subbroker.DeliveryReply;
@@ -128,6 +129,20 @@ public class DeliverySchedulerTest {
     }
 
 
+    @Test
+    public void sameMessagePackWrapper() {
+        TopicMessagePack msgPack = TopicMessagePack.newBuilder().setTopic("a").build();
+        DeliveryCall call1 = new DeliveryCall(tenantId, MatchInfo.newBuilder().setReceiverId("r1").build(), 0,
+            "group1", msgPack);
+        DeliveryCall call2 = new DeliveryCall(tenantId, MatchInfo.newBuilder().setReceiverId("r2").build(), 0,
+            "group1", msgPack);
+        assertEquals(call1.msgPackWrapper, call2.msgPackWrapper);
+        assertEquals(call1.msgPackWrapper.hashCode(), call2.msgPackWrapper.hashCode());
+        // equality is based on identity to avoid heavy hashcode calculation
+        assertNotEquals(call1.msgPackWrapper,
+            MessagePackWrapper.wrap(TopicMessagePack.newBuilder().setTopic("a").build()));
+    }
+
     @Test(expectedExceptions = RuntimeException.class)
     public void writeFail() {
         MatchInfo matchInfo = MatchInfo.newBuilder().build();
@@ -26,29 +26,58 @@ import com.baidu.bifromq.plugin.eventcollector.distservice.DeliverNoInbox;
 import com.baidu.bifromq.plugin.eventcollector.distservice.Delivered;
 import com.baidu.bifromq.type.MatchInfo;
 import com.baidu.bifromq.type.TopicMessagePack;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * The executor delivering messages to the routes homed at it. Messages of the same route are queued and sent in order
+ * by one executor at a time, and the route queue as a whole could be stolen by idle executors in the same group.
+ */
 @Slf4j
 public class DeliverExecutor {
+    private static final int MAX_BATCH_PER_ROUTE = 128;
+    private final int id;
+    private final DeliverExecutor[] group;
+    private final FanOutPlanner planner;
     private final IEventCollector eventCollector;
     private final IDistClient distClient;
     private final IMessageDeliverer deliverer;
     private final ExecutorService executor;
-    private final ConcurrentLinkedQueue<SendTask> tasks = new ConcurrentLinkedQueue<>();
+    // the route queues homed at this executor, a route queue is present only when it's scheduled
+    private final Map<NormalMatching, RouteQueue> routeQueues = new ConcurrentHashMap<>();
+    // the route queues to be drained by this executor
+    private final Deque<RouteQueue> runQueue = new ConcurrentLinkedDeque<>();
     private final AtomicBoolean sending = new AtomicBoolean();
+    private final AtomicInteger queuedMsgPacks = new AtomicInteger();
+    private final Gauge queueDepthGauge;
+    private final Counter stealCounter;
 
     public DeliverExecutor(int id,
+                           DeliverExecutor[] group,
+                           FanOutPlanner planner,
                            IMessageDeliverer deliverer,
                            IEventCollector eventCollector,
-                           IDistClient distClient) {
+                           IDistClient distClient,
+                           String... tags) {
+        this.id = id;
+        this.group = group;
+        this.planner = planner;
         this.eventCollector = eventCollector;
         this.distClient = distClient;
         this.deliverer = deliverer;
@@ -56,38 +85,107 @@ public class DeliverExecutor {
             new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
                 new LinkedTransferQueue<>(),
                 EnvProvider.INSTANCE.newThreadFactory("deliver-executor-" + id)), Integer.toString(id), "deliver");
+        queueDepthGauge = Gauge.builder("deliver.executor.route.queued", queuedMsgPacks::get)
+            .tags(tags)
+            .tag("name", Integer.toString(id))
+            .register(Metrics.globalRegistry);
+        stealCounter = Counter.builder("deliver.executor.route.stolen")
+            .tags(tags)
+            .tag("name", Integer.toString(id))
+            .register(Metrics.globalRegistry);
     }
 
     public void submit(NormalMatching route, TopicMessagePack msgPack, boolean inline) {
-        if (inline) {
+        // the route queue is removed only after its last message pack is sent, so sending inline without it present
+        // won't overtake the queued ones of the same route
+        if (inline && !routeQueues.containsKey(route)) {
             send(route, msgPack);
         } else {
-            tasks.add(new SendTask(route, msgPack));
-            scheduleSend();
+            queuedMsgPacks.incrementAndGet();
+            AtomicReference<RouteQueue> newRouteQueue = new AtomicReference<>();
+            routeQueues.compute(route, (k, v) -> {
+                if (v == null) {
+                    v = new RouteQueue(route);
+                    newRouteQueue.set(v);
+                }
+                v.msgPacks.add(new QueuedMsgPack(msgPack, System.nanoTime()));
+                return v;
+            });
+            if (newRouteQueue.get() != null) {
+                runQueue.add(newRouteQueue.get());
+                if (!scheduleSend()) {
+                    // busy now, let an idle executor steal the backlog
+                    signalIdle();
+                }
+            }
         }
     }
 
     public void shutdown() {
         executor.shutdown();
+        Metrics.globalRegistry.remove(queueDepthGauge);
+        Metrics.globalRegistry.remove(stealCounter);
     }
 
-    private void scheduleSend() {
+    private boolean scheduleSend() {
         if (sending.compareAndSet(false, true)) {
             executor.submit(this::sendAll);
+            return true;
+        }
+        return false;
+    }
+
+    private void signalIdle() {
+        for (int i = 1; i < group.length; i++) {
+            DeliverExecutor peer = group[(id + i) % group.length];
+            if (!peer.sending.get() && peer.scheduleSend()) {
+                return;
+            }
         }
     }
 
     private void sendAll() {
-        SendTask task;
-        while ((task = tasks.poll()) != null) {
-            send(task.route, task.msgPack);
+        RouteQueue routeQueue;
+        while ((routeQueue = runQueue.poll()) != null || (routeQueue = steal()) != null) {
+            RouteQueue remaining = routeQueue.home.drain(routeQueue);
+            if (remaining != null) {
+                // yield to other routes
+                runQueue.add(remaining);
+            }
         }
         sending.set(false);
-        if (!tasks.isEmpty()) {
+        if (!runQueue.isEmpty()) {
             scheduleSend();
         }
     }
 
+    private RouteQueue steal() {
+        for (int i = 1; i < group.length; i++) {
+            RouteQueue routeQueue = group[(id + i) % group.length].runQueue.pollLast();
+            if (routeQueue != null) {
+                stealCounter.increment();
+                return routeQueue;
+            }
+        }
+        return null;
+    }
+
+    private RouteQueue drain(RouteQueue routeQueue) {
+        QueuedMsgPack queued;
+        int count = 0;
+        long start = System.nanoTime();
+        while (count < MAX_BATCH_PER_ROUTE && (queued = routeQueue.msgPacks.poll()) != null) {
+            if (count++ == 0) {
+                planner.observeQueueing(Math.max(1, start - queued.enqueueNanos));
+            }
+            queuedMsgPacks.decrementAndGet();
+            send(routeQueue.route, queued.msgPack);
+        }
+        planner.observeSend(count, System.nanoTime() - start);
+        // the route queue is descheduled only when it's drained
+        return routeQueues.compute(routeQueue.route, (k, v) -> v.msgPacks.isEmpty() ? null : v);
+    }
+
     private void send(NormalMatching matched, TopicMessagePack msgPack) {
         int subBrokerId = matched.subBrokerId;
         String delivererKey = matched.delivererKey;
@@ -134,6 +232,16 @@ public class DeliverExecutor {
 
     }
 
-    private record SendTask(NormalMatching route, TopicMessagePack msgPack) {
+    private class RouteQueue {
+        final NormalMatching route;
+        final DeliverExecutor home = DeliverExecutor.this;
+        final Queue<QueuedMsgPack> msgPacks = new ConcurrentLinkedQueue<>();
+
+        RouteQueue(NormalMatching route) {
+            this.route = route;
+        }
+    }
+
+    private record QueuedMsgPack(TopicMessagePack msgPack, long enqueueNanos) {
     }
 }
@@ -17,7 +17,6 @@ import static com.baidu.bifromq.util.TopicUtil.escape;
 import static com.baidu.bifromq.metrics.TenantMetric.MqttPersistentFanOutBytes;
 import static com.baidu.bifromq.plugin.eventcollector.ThreadLocalEventPool.getLocal;
 import static com.bifromq.plugin.resourcethrottler.TenantResourceType.TotalPersistentFanOutBytesPerSeconds;
-import static com.google.common.hash.Hashing.murmur3_128;
 
 import com.baidu.bifromq.deliverer.IMessageDeliverer;
 import com.baidu.bifromq.dist.client.IDistClient;
@@ -27,19 +26,14 @@ import com.baidu.bifromq.dist.entity.NormalMatching;
 import com.baidu.bifromq.metrics.ITenantMeter;
 import com.baidu.bifromq.plugin.eventcollector.IEventCollector;
 import com.baidu.bifromq.plugin.eventcollector.OutOfTenantResource;
-import com.baidu.bifromq.sysprops.props.DistInlineFanOutThreshold;
 import com.baidu.bifromq.sysprops.props.DistTopicMatchExpirySeconds;
-import com.baidu.bifromq.type.ClientInfo;
 import com.baidu.bifromq.type.TopicMessagePack;
 import com.baidu.bifromq.util.SizeUtil;
 import com.bifromq.plugin.resourcethrottler.IResourceThrottler;
 import com.bifromq.plugin.resourcethrottler.TenantResourceType;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.LoadingCache;
-import com.github.benmanes.caffeine.cache.RemovalListener;
 import com.github.benmanes.caffeine.cache.Scheduler;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -53,10 +47,9 @@ class DeliverExecutorGroup implements IDeliverExecutorGroup {
     private record OrderedSharedMatchingKey(String tenantId, String escapedTopicFilter) {
     }
 
-    // OuterCacheKey: OrderedSharedMatchingKey(<tenantId>, <escapedTopicFilter>)
-    // InnerCacheKey: ClientInfo(<tenantId>, <type>, <metadata>)
-    private final LoadingCache<OrderedSharedMatchingKey, Cache<ClientInfo, NormalMatching>> orderedSharedMatching;
-    private final int inlineFanOutThreshold = DistInlineFanOutThreshold.INSTANCE.get();
+    // OrderedSharedMatchingKey(<tenantId>, <escapedTopicFilter>) -> the ring of current group members
+    private final Cache<OrderedSharedMatchingKey, OrderedShareRing> orderedSharedMatching;
+    private final FanOutPlanner fanOutPlanner;
     private final IEventCollector eventCollector;
     private final IResourceThrottler resourceThrottler;
     private final DeliverExecutor[] fanoutExecutors;
@@ -65,25 +58,20 @@ class DeliverExecutorGroup implements IDeliverExecutorGroup {
                          IEventCollector eventCollector,
                          IResourceThrottler resourceThrottler,
                          IDistClient distClient,
-                         int groupSize) {
+                         int groupSize,
+                         String... tags) {
         int expirySec = DistTopicMatchExpirySeconds.INSTANCE.get();
         this.eventCollector = eventCollector;
         this.resourceThrottler = resourceThrottler;
         orderedSharedMatching = Caffeine.newBuilder()
             .expireAfterAccess(expirySec * 2L, TimeUnit.SECONDS)
             .scheduler(Scheduler.systemScheduler())
-            .removalListener((RemovalListener<OrderedSharedMatchingKey, Cache<ClientInfo, NormalMatching>>)
-                (key, value, cause) -> {
-                    if (value != null) {
-                        value.invalidateAll();
-                    }
-                })
-            .build(k -> Caffeine.newBuilder()
-                .expireAfterAccess(expirySec, TimeUnit.SECONDS)
-                .build());
+            .build();
+        fanOutPlanner = new FanOutPlanner(tags);
         fanoutExecutors = new DeliverExecutor[groupSize];
         for (int i = 0; i < groupSize; i++) {
-            fanoutExecutors[i] = new DeliverExecutor(i, deliverer, eventCollector, distClient);
+            fanoutExecutors[i] =
+                new DeliverExecutor(i, fanoutExecutors, fanOutPlanner, deliverer, eventCollector, distClient, tags);
         }
     }
 
@@ -93,6 +81,7 @@ class DeliverExecutorGroup implements IDeliverExecutorGroup {
             fanoutExecutor.shutdown();
         }
         orderedSharedMatching.invalidateAll();
+        fanOutPlanner.close();
     }
 
     @Override
@@ -105,7 +94,8 @@ class DeliverExecutorGroup implements IDeliverExecutorGroup {
                 ITenantMeter.get(matching.tenantId).recordSummary(MqttPersistentFanOutBytes, msgPackSize);
             }
         } else if (routes.size() > 1) {
-            boolean inline = routes.size() > inlineFanOutThreshold;
+            int inlineRoutes = fanOutPlanner.plan(routes.size());
+            int routeIdx = 0;
             boolean hasTFanOutBandwidth =
                 resourceThrottler.hasResource(tenantId, TenantResourceType.TotalTransientFanOutBytesPerSeconds);
             boolean hasTFannedOutUnderThrottled = false;
@@ -114,7 +104,12 @@ class DeliverExecutorGroup implements IDeliverExecutorGroup {
             boolean hasPFannedOutUnderThrottled = false;
             // we meter persistent fanout bytes here, since for transient fanout is actually happened in the broker
             long pFanoutBytes = 0;
+            long inlineStart = System.nanoTime();
             for (Matching matching : routes) {
+                if (routeIdx == inlineRoutes && inlineRoutes > 0) {
+                    fanOutPlanner.observeSend(inlineRoutes, System.nanoTime() - inlineStart);
+                }
+                boolean inline = routeIdx++ < inlineRoutes;
                 if (isSendToInbox(matching)) {
                     if (hasPFanOutBandwidth || !hasPFannedOutUnderThrottled) {
                         pFanoutBytes += msgPackSize;
@@ -145,6 +140,9 @@ class DeliverExecutorGroup implements IDeliverExecutorGroup {
                     break;
                 }
             }
+            if (routeIdx <= inlineRoutes && routeIdx > 0) {
+                fanOutPlanner.observeSend(routeIdx, System.nanoTime() - inlineStart);
+            }
             ITenantMeter.get(tenantId).recordSummary(MqttPersistentFanOutBytes, pFanoutBytes);
         }
     }
@@ -170,19 +168,12 @@ class DeliverExecutorGroup implements IDeliverExecutorGroup {
                 } else {
                     // ordered shared subscription
                     Map<NormalMatching, TopicMessagePack.Builder> orderedRoutes = new HashMap<>();
+                    OrderedShareRing ring = orderedShareRing(groupMatching);
                     for (TopicMessagePack.PublisherPack publisherPack : msgPack.getMessageList()) {
-                        ClientInfo sender = publisherPack.getPublisher();
-                        NormalMatching matchedInbox = orderedSharedMatching
-                            .get(new OrderedSharedMatchingKey(groupMatching.tenantId, groupMatching.escapedTopicFilter))
-                            .get(sender, k -> {
-                                RendezvousHash<ClientInfo, NormalMatching> hash =
-                                    new RendezvousHash<>(murmur3_128(),
-                                        (from, into) -> into.putInt(from.hashCode()),
-                                        (from, into) -> into.putBytes(from.scopedInboxId.getBytes()),
-                                        Comparator.comparing(a -> a.scopedInboxId));
-                                groupMatching.receiverList.forEach(hash::add);
-                                return hash.get(k);
-                            });
+                        NormalMatching matchedInbox = ring.get(publisherPack.getPublisher());
+                        if (matchedInbox == null) {
+                            continue;
+                        }
                         // ordered share sub
                         orderedRoutes.computeIfAbsent(matchedInbox, k -> TopicMessagePack.newBuilder())
                             .setTopic(msgPack.getTopic())
@@ -194,6 +185,18 @@ class DeliverExecutorGroup implements IDeliverExecutorGroup {
         }
     }
 
+    private OrderedShareRing orderedShareRing(GroupMatching groupMatching) {
+        OrderedSharedMatchingKey key =
+            new OrderedSharedMatchingKey(groupMatching.tenantId, groupMatching.escapedTopicFilter);
+        OrderedShareRing ring = orderedSharedMatching.getIfPresent(key);
+        if (ring == null || !ring.isBuiltFrom(groupMatching)) {
+            // rebuild the ring only when group membership changed
+            ring = new OrderedShareRing(groupMatching);
+            orderedSharedMatching.put(key, ring);
+        }
+        return ring;
+    }
+
     private void send(NormalMatching route, TopicMessagePack msgPack, boolean inline) {
         int idx = route.hashCode() % fanoutExecutors.length;
         if (idx < 0) {
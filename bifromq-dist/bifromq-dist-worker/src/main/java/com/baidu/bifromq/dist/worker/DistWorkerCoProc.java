@@ -344,7 +344,8 @@ class DistWorkerCoProc implements IKVRangeCoProc {
                 .setReqId(request.getReqId())
                 .build());
         }
-        List<CompletableFuture<Map<String, Map<String, Integer>>>> distFanOutFutures = new ArrayList<>();
+        // tenantId -> topicMsgPacks
+        Map<String, List<TopicMessagePack>> msgPacksByTenant = new HashMap<>();
         for (DistPack distPack : distPackList) {
             String tenantId = distPack.getTenantId();
             Boundary tenantBoundary = intersect(Boundary.newBuilder()
@@ -354,15 +355,25 @@ class DistWorkerCoProc implements IKVRangeCoProc {
             if (isEmptyRange(tenantBoundary)) {
                 continue;
             }
-            for (TopicMessagePack topicMsgPack : distPack.getMsgPackList()) {
-                String topic = topicMsgPack.getTopic();
-                distFanOutFutures.add(routeCache.get(tenantId, topic)
-                    .thenApply(routes -> {
-                        deliverExecutorGroup.submit(tenantId, routes, topicMsgPack);
-                        return singletonMap(tenantId, singletonMap(topic, routes.size()));
-                    }));
-            }
+            msgPacksByTenant.computeIfAbsent(tenantId, k -> new ArrayList<>()).addAll(distPack.getMsgPackList());
         }
+        List<CompletableFuture<Map<String, Map<String, Integer>>>> distFanOutFutures = new ArrayList<>();
+        msgPacksByTenant.forEach((tenantId, topicMsgPacks) -> {
+            Set<String> topics = new HashSet<>();
+            topicMsgPacks.forEach(topicMsgPack -> topics.add(topicMsgPack.getTopic()));
+            // match all topics of the tenant in one pass
+            distFanOutFutures.add(routeCache.get(tenantId, topics)
+                .thenApply(routesByTopic -> {
+                    Map<String, Integer> topicFanout = new HashMap<>();
+                    for (TopicMessagePack topicMsgPack : topicMsgPacks) {
+                        String topic = topicMsgPack.getTopic();
+                        Set<Matching> routes = routesByTopic.get(topic);
+                        deliverExecutorGroup.submit(tenantId, routes, topicMsgPack);
+                        topicFanout.put(topic, routes.size());
+                    }
+                    return singletonMap(tenantId, topicFanout);
+                }));
+        });
         return CompletableFuture.allOf(distFanOutFutures.toArray(CompletableFuture[]::new))
             .thenApply(v -> distFanOutFutures.stream().map(CompletableFuture::join).collect(Collectors.toList()))
             .thenApply(fanoutMapList -> {
@@ -381,7 +392,6 @@ class DistWorkerCoProc implements IKVRangeCoProc {
     private void load() {
         try (IKVCloseableReader reader = readerProvider.get()) {
             boundary = reader.boundary();
-            routeCache.reset(boundary);
             IKVIterator itr = reader.iterator();
             for (itr.seekToFirst(); itr.isValid(); ) {
                 String tenantId = parseTenantId(itr.key());
@@ -389,8 +399,10 @@ class DistWorkerCoProc implements IKVRangeCoProc {
                     case Normal -> tenantsState.incNormalRoutes(tenantId);
                     case Group -> tenantsState.decNormalRoutes(tenantId);
                 }
+                routeCache.load(itr.key(), itr.value());
                 itr.next();
             }
+            routeCache.reset(boundary);
         }
     }
 }
@@ -23,13 +23,17 @@ import com.baidu.bifromq.basekv.utils.KVRangeIdUtil;
 import com.baidu.bifromq.deliverer.IMessageDeliverer;
 import com.baidu.bifromq.deliverer.MessageDeliverer;
 import com.baidu.bifromq.dist.client.IDistClient;
+import com.baidu.bifromq.dist.worker.cache.HotTopicTracker;
 import com.baidu.bifromq.dist.worker.cache.ISubscriptionCache;
+import com.baidu.bifromq.dist.worker.cache.RouteCachePool;
 import com.baidu.bifromq.dist.worker.cache.SubscriptionCache;
 import com.baidu.bifromq.dist.worker.hinter.FanoutSplitHinter;
 import com.baidu.bifromq.plugin.eventcollector.IEventCollector;
 import com.baidu.bifromq.plugin.subbroker.ISubBrokerManager;
 import com.baidu.bifromq.sysprops.props.DistFanOutParallelism;
 import com.baidu.bifromq.sysprops.props.DistMatchParallelism;
+import com.baidu.bifromq.sysprops.props.DistRouteCacheMaxBytes;
+import com.baidu.bifromq.sysprops.props.DistRouteCacheWarmUpTopics;
 import com.baidu.bifromq.sysprops.props.DistWorkerFanOutSplitThreshold;
 import com.bifromq.plugin.resourcethrottler.IResourceThrottler;
 import io.micrometer.core.instrument.Metrics;
@@ -51,6 +55,8 @@ public class DistWorkerCoProcFactory implements IKVRangeCoProcFactory {
     private final IResourceThrottler resourceThrottler;
     private final IMessageDeliverer deliverer;
     private final ExecutorService matchExecutor;
+    private final HotTopicTracker hotTopics;
+    private final RouteCachePool routeCachePool;
     private final Duration loadEstWindow;
     private final int fanoutSplitThreshold = DistWorkerFanOutSplitThreshold.INSTANCE.get();
 
@@ -64,6 +70,9 @@ public class DistWorkerCoProcFactory implements IKVRangeCoProcFactory {
         this.resourceThrottler = resourceThrottler;
         this.loadEstWindow = loadEstimateWindow;
         deliverer = new MessageDeliverer(subBrokerManager);
+        // track more topics than warmed up per range, since the tracker is shared by all ranges in the store
+        hotTopics = new HotTopicTracker(Math.max(1, DistRouteCacheWarmUpTopics.INSTANCE.get() * 10));
+        routeCachePool = new RouteCachePool(DistRouteCacheMaxBytes.INSTANCE.get());
 
         matchExecutor = ExecutorServiceMetrics.monitor(Metrics.globalRegistry,
             new ForkJoinPool(DistMatchParallelism.INSTANCE.get(), new ForkJoinPool.ForkJoinWorkerThreadFactory() {
@@ -92,17 +101,20 @@ public class DistWorkerCoProcFactory implements IKVRangeCoProcFactory {
     @Override
     public IKVRangeCoProc createCoProc(String clusterId, String storeId, KVRangeId id,
                                        Supplier<IKVCloseableReader> rangeReaderProvider) {
-        ISubscriptionCache routeCache = new SubscriptionCache(id, rangeReaderProvider, matchExecutor);
+        ISubscriptionCache routeCache =
+            new SubscriptionCache(id, rangeReaderProvider, hotTopics, routeCachePool, matchExecutor);
         ITenantsState tenantsState = new TenantsState(rangeReaderProvider.get(),
             "clusterId", clusterId, "storeId", storeId, "rangeId", KVRangeIdUtil.toString(id));
         IDeliverExecutorGroup executorGroup =
             new DeliverExecutorGroup(deliverer, eventCollector, resourceThrottler, distClient,
-                DistFanOutParallelism.INSTANCE.get());
+                DistFanOutParallelism.INSTANCE.get(),
+                "clusterId", clusterId, "storeId", storeId, "rangeId", KVRangeIdUtil.toString(id));
         return new DistWorkerCoProc(id, rangeReaderProvider, routeCache, tenantsState, executorGroup);
     }
 
     public void close() {
         deliverer.close();
         matchExecutor.shutdown();
+        routeCachePool.close();
     }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker;
+
+import com.baidu.bifromq.basescheduler.MovingAverage;
+import com.baidu.bifromq.sysprops.props.DistInlineFanOutThreshold;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import java.time.Duration;
+
+/**
+ * Plan how many routes of a message pack to be sent inline in the calling thread, and leave the rest to deliver
+ * executors. The plan is made from the live measurements of the queueing time in deliver executors and the time of
+ * sending to one route: routes are sent inline as long as they could be done before the queued sends get started.
+ * The static inline fan-out threshold is used when there is no fresh measurement.
+ */
+class FanOutPlanner {
+    private final int inlineFanOutThreshold = DistInlineFanOutThreshold.INSTANCE.get();
+    private final MovingAverage queueingNanos = new MovingAverage(100, Duration.ofSeconds(1));
+    private final MovingAverage sendNanosPerRoute = new MovingAverage(100, Duration.ofSeconds(1));
+    private final Counter inlineCounter;
+    private final Counter asyncCounter;
+    private final Counter splitCounter;
+    private final Gauge queueingGauge;
+    private final Gauge sendGauge;
+
+    FanOutPlanner(String... tags) {
+        inlineCounter = Counter.builder("dist.fanout.plan").tags(tags).tag("plan", "inline")
+            .register(Metrics.globalRegistry);
+        asyncCounter = Counter.builder("dist.fanout.plan").tags(tags).tag("plan", "async")
+            .register(Metrics.globalRegistry);
+        splitCounter = Counter.builder("dist.fanout.plan").tags(tags).tag("plan", "split")
+            .register(Metrics.globalRegistry);
+        queueingGauge = Gauge.builder("dist.fanout.queueing.nanos", queueingNanos::estimate)
+            .tags(tags)
+            .register(Metrics.globalRegistry);
+        sendGauge = Gauge.builder("dist.fanout.send.nanos", sendNanosPerRoute::estimate)
+            .tags(tags)
+            .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * Plan the fan-out of a message pack.
+     *
+     * @param routeCount the number of routes to fan-out
+     * @return the number of routes to be sent inline
+     */
+    int plan(int routeCount) {
+        long queueing = queueingNanos.estimate();
+        long sendPerRoute = sendNanosPerRoute.estimate();
+        int inlineRoutes;
+        if (queueing == 0 || sendPerRoute == 0) {
+            inlineRoutes = routeCount > inlineFanOutThreshold ? routeCount : 0;
+        } else {
+            inlineRoutes = (int) Math.min(routeCount, queueing / sendPerRoute);
+        }
+        if (inlineRoutes == routeCount) {
+            inlineCounter.increment();
+        } else if (inlineRoutes == 0) {
+            asyncCounter.increment();
+        } else {
+            splitCounter.increment();
+        }
+        return inlineRoutes;
+    }
+
+    void observeQueueing(long nanos) {
+        queueingNanos.observe(nanos);
+    }
+
+    void observeSend(int routeCount, long nanos) {
+        if (routeCount > 0) {
+            sendNanosPerRoute.observe(Math.max(1, nanos / routeCount));
+        }
+    }
+
+    void close() {
+        Metrics.globalRegistry.remove(inlineCounter);
+        Metrics.globalRegistry.remove(asyncCounter);
+        Metrics.globalRegistry.remove(splitCounter);
+        Metrics.globalRegistry.remove(queueingGauge);
+        Metrics.globalRegistry.remove(sendGauge);
+    }
+}
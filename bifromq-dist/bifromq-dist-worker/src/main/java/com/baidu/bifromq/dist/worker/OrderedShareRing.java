@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker;
+
+import static com.google.common.hash.Hashing.murmur3_128;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.baidu.bifromq.dist.entity.GroupMatching;
+import com.baidu.bifromq.dist.entity.NormalMatching;
+import com.baidu.bifromq.type.ClientInfo;
+import com.google.common.hash.HashFunction;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent hash ring of the receivers in an ordered shared subscription group. The ring is built once from
+ * a snapshot of group membership, and assigns a sender to a receiver in O(log n) time. Membership change only moves
+ * the senders assigned to the joined or left receivers.
+ */
+final class OrderedShareRing {
+    private static final int VIRTUAL_NODES = 32;
+    private static final HashFunction HASHER = murmur3_128();
+
+    private final Set<String> receiverIds;
+    private final long[] points;
+    private final NormalMatching[] receivers;
+
+    OrderedShareRing(GroupMatching groupMatching) {
+        receiverIds = groupMatching.receiverIds;
+        TreeMap<Long, NormalMatching> ring = new TreeMap<>();
+        for (NormalMatching receiver : groupMatching.receiverList) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                long point = HASHER.newHasher()
+                    .putString(receiver.scopedInboxId, UTF_8)
+                    .putInt(i)
+                    .hash()
+                    .asLong();
+                // resolve collision deterministically regardless of the order of receivers
+                ring.merge(point, receiver, (a, b) -> a.scopedInboxId.compareTo(b.scopedInboxId) <= 0 ? a : b);
+            }
+        }
+        points = new long[ring.size()];
+        receivers = new NormalMatching[ring.size()];
+        int idx = 0;
+        for (Map.Entry<Long, NormalMatching> entry : ring.entrySet()) {
+            points[idx] = entry.getKey();
+            receivers[idx++] = entry.getValue();
+        }
+    }
+
+    /**
+     * Check if the ring is built from the same group membership.
+     *
+     * @param groupMatching the group matching
+     * @return true if the members of the group are the same as the ring
+     */
+    boolean isBuiltFrom(GroupMatching groupMatching) {
+        // GroupMatching is snapshot, so identity check is enough in most cases
+        return receiverIds == groupMatching.receiverIds || receiverIds.equals(groupMatching.receiverIds);
+    }
+
+    /**
+     * Get the receiver assigned to the sender.
+     *
+     * @param sender the sender
+     * @return the assigned receiver or null if the group is empty
+     */
+    NormalMatching get(ClientInfo sender) {
+        if (points.length == 0) {
+            return null;
+        }
+        long hash = HASHER.newHasher().putInt(sender.hashCode()).hash().asLong();
+        int idx = Arrays.binarySearch(points, hash);
+        if (idx < 0) {
+            idx = -idx - 1;
+        }
+        return receivers[idx == points.length ? 0 : idx];
+    }
+}
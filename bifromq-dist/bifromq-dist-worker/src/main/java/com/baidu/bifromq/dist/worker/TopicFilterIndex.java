@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker;
+
+import static com.baidu.bifromq.util.TopicConst.MULTI_WILDCARD;
+import static com.baidu.bifromq.util.TopicConst.SINGLE_WILDCARD;
+import static com.baidu.bifromq.util.TopicConst.SYS_PREFIX;
+
+import com.baidu.bifromq.util.TopicUtil;
+import com.baidu.bifromq.util.index.Branch;
+import com.baidu.bifromq.util.index.TopicLevelTrie;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Concurrent Index for searching TopicFilters against Topic.
+ */
+public final class TopicFilterIndex<V> extends TopicLevelTrie<V> {
+    private static final BranchSelector BranchSelector = new BranchSelector() {
+        @Override
+        public <T> Map<Branch<T>, Action> selectBranch(Map<String, Branch<T>> branches,
+                                                       List<String> topicLevels,
+                                                       int currentLevel) {
+            if (currentLevel < topicLevels.size()) {
+                String topicLevel = topicLevels.get(currentLevel);
+                boolean isLastLevel = currentLevel == topicLevels.size() - 1;
+                // wildcard at first level should not match SYS topic
+                boolean matchWildcard = currentLevel != 0 || !topicLevel.startsWith(SYS_PREFIX);
+                Map<Branch<T>, Action> result = new HashMap<>();
+                Branch<T> exact = branches.get(topicLevel);
+                if (exact != null) {
+                    // continue to the next level to match 'a/#' against 'a'
+                    result.put(exact, isLastLevel ? Action.MATCH_AND_CONTINUE : Action.CONTINUE);
+                }
+                if (matchWildcard) {
+                    Branch<T> single = branches.get(SINGLE_WILDCARD);
+                    if (single != null) {
+                        result.put(single, isLastLevel ? Action.MATCH_AND_CONTINUE : Action.CONTINUE);
+                    }
+                    Branch<T> multi = branches.get(MULTI_WILDCARD);
+                    if (multi != null) {
+                        result.put(multi, Action.MATCH_AND_STOP);
+                    }
+                }
+                return result;
+            } else {
+                // '#' also matches the parent level
+                Branch<T> multi = branches.get(MULTI_WILDCARD);
+                if (multi != null) {
+                    return Map.of(multi, Action.MATCH_AND_STOP);
+                }
+                return Collections.emptyMap();
+            }
+        }
+    };
+
+    public TopicFilterIndex() {
+        super(BranchSelector);
+    }
+
+    public void add(String topicFilter, V value) {
+        add(TopicUtil.parse(topicFilter, false), value);
+    }
+
+    public void remove(String topicFilter, V value) {
+        remove(TopicUtil.parse(topicFilter, false), value);
+    }
+
+    public List<V> match(String topic) {
+        return lookup(TopicUtil.parse(topic, false));
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker.cache;
+
+import static com.baidu.bifromq.dist.entity.EntityUtil.parseMatchRecord;
+
+import com.baidu.bifromq.dist.entity.GroupMatching;
+import com.baidu.bifromq.dist.rpc.proto.GroupMatchRecord;
+import com.google.common.collect.Sets;
+import java.util.Set;
+
+/**
+ * GroupMatching shared by route cache and route index is never mutated in place, updates are applied to a copy.
+ */
+final class GroupMatchingUtil {
+    private GroupMatchingUtil() {
+    }
+
+    /**
+     * Copy the group matching with receivers added and removed.
+     *
+     * @param groupMatching the group matching to copy
+     * @param added         the scoped receiver ids to add
+     * @param removed       the scoped receiver ids to remove
+     * @return the copied group matching
+     */
+    static GroupMatching copyOf(GroupMatching groupMatching, Set<String> added, Set<String> removed) {
+        Set<String> receiverIds = Sets.newLinkedHashSet();
+        groupMatching.receiverList.forEach(receiver -> receiverIds.add(receiver.scopedInboxId));
+        receiverIds.addAll(added);
+        receiverIds.removeAll(removed);
+        return (GroupMatching) parseMatchRecord(groupMatching.key, GroupMatchRecord.newBuilder()
+            .addAllQReceiverId(receiverIds)
+            .build()
+            .toByteString());
+    }
+}
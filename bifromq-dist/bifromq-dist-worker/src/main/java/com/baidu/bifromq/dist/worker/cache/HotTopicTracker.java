@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * The tracker of the most frequently distributed topics in the dist-worker. It's shared by all ranges in the store, so
+ * the hot topics observed before a range is split, reloaded or re-elected are still known for warming up its route
+ * cache. The access frequency is estimated by the frequency sketch of the underlying bounded cache, which is fed with
+ * sampled accesses to keep the cost off the dist path, the hot topics are still the most sampled ones.
+ */
+public class HotTopicTracker {
+    record TenantTopic(String tenantId, String topic) {
+    }
+
+    private static final int DEFAULT_SAMPLE_RATE = 16;
+    private final Cache<TenantTopic, Boolean> topics;
+    private final int sampleRate;
+
+    public HotTopicTracker(int capacity) {
+        this(capacity, DEFAULT_SAMPLE_RATE);
+    }
+
+    HotTopicTracker(int capacity, int sampleRate) {
+        this.sampleRate = sampleRate;
+        topics = Caffeine.newBuilder()
+            .maximumSize(capacity)
+            .executor(Runnable::run)
+            .build();
+    }
+
+    void record(String tenantId, String topic) {
+        // only one of sampleRate accesses goes to the sketch
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return;
+        }
+        topics.get(new TenantTopic(tenantId, topic), k -> Boolean.TRUE);
+    }
+
+    /**
+     * Get the hottest topics of the tenants accepted by the filter.
+     *
+     * @param tenantFilter the filter of tenantId
+     * @param limit        the max number of topics to return
+     * @return the topics in descending order of hotness
+     */
+    List<TenantTopic> hottest(Predicate<String> tenantFilter, int limit) {
+        return topics.policy().eviction()
+            .map(eviction -> eviction.hottest(entries -> entries
+                .map(entry -> entry.getKey())
+                .filter(tenantTopic -> tenantFilter.test(tenantTopic.tenantId))
+                .limit(limit)
+                .toList()))
+            .orElse(List.of());
+    }
+}
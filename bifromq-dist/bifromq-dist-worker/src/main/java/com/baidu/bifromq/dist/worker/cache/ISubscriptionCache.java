@@ -15,6 +15,7 @@ package com.baidu.bifromq.dist.worker.cache;
 
 import com.baidu.bifromq.basekv.proto.Boundary;
 import com.baidu.bifromq.dist.entity.Matching;
+import com.google.protobuf.ByteString;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -22,10 +23,32 @@ import java.util.concurrent.CompletableFuture;
 public interface ISubscriptionCache {
     CompletableFuture<Set<Matching>> get(String tenantId, String topic);
 
+    /**
+     * Get the matchings of the topics from the same tenant, the cache-missed topics will be matched in one pass.
+     *
+     * @param tenantId the tenantId
+     * @param topics   the topics to get
+     * @return the set of matching for each topic
+     */
+    CompletableFuture<Map<String, Set<Matching>>> get(String tenantId, Set<String> topics);
+
     void removeAllMatch(Map<String, Map<String, Set<Matching>>> matchesByTenant);
 
     void addAllMatch(Map<String, Map<String, Set<Matching>>> matchesByTenant);
 
+    /**
+     * Load a match record during (re)loading the range, it will be used for matching after next reset.
+     *
+     * @param matchRecordKey   the key of the match record
+     * @param matchRecordValue the value of the match record
+     */
+    void load(ByteString matchRecordKey, ByteString matchRecordValue);
+
+    /**
+     * Reset the cache to the given boundary after all match records in the range have been loaded.
+     *
+     * @param boundary the boundary of the range
+     */
     void reset(Boundary boundary);
 
     void close();
@@ -30,5 +30,14 @@ public interface ITenantRouteCache {
 
     Set<Matching> get(String topic, Boundary matchRecordRange);
 
+    /**
+     * Get the matchings of the topics, the cache-missed topics will be matched together in one pass.
+     *
+     * @param topics           the topics to get
+     * @param matchRecordRange the boundary of the match record
+     * @return the set of matching for each topic
+     */
+    Map<String, Set<Matching>> getAll(Set<String> topics, Boundary matchRecordRange);
+
     void destroy();
 }
@@ -15,6 +15,7 @@ package com.baidu.bifromq.dist.worker.cache;
 
 import com.baidu.bifromq.basekv.proto.Boundary;
 import com.baidu.bifromq.dist.entity.Matching;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -29,4 +30,13 @@ public interface ITenantRouteMatcher {
      * @return the set of matching
      */
     Set<Matching> match(String topic, Boundary matchRecordBoundary);
+
+    /**
+     * Match the topics within the given boundary in one pass.
+     *
+     * @param topics              the topics to match
+     * @param matchRecordBoundary the boundary of the match record
+     * @return the set of matching for each topic
+     */
+    Map<String, Set<Matching>> matchAll(Set<String> topics, Boundary matchRecordBoundary);
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker.cache;
+
+import com.baidu.bifromq.basekv.proto.Boundary;
+import com.baidu.bifromq.dist.entity.Matching;
+import io.micrometer.core.instrument.Timer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+class InMemTenantRouteMatcher implements ITenantRouteMatcher {
+    private final String tenantId;
+    private final Timer timer;
+    private final RouteIndex routeIndex;
+
+    public InMemTenantRouteMatcher(String tenantId, RouteIndex routeIndex, Timer timer) {
+        this.tenantId = tenantId;
+        this.timer = timer;
+        this.routeIndex = routeIndex;
+    }
+
+    @Override
+    public Set<Matching> match(String topic, Boundary matchRecordBoundary) {
+        final Timer.Sample sample = Timer.start();
+        Set<Matching> matchedRoutes = routeIndex.match(tenantId, topic, matchRecordBoundary);
+        sample.stop(timer);
+        return matchedRoutes;
+    }
+
+    @Override
+    public Map<String, Set<Matching>> matchAll(Set<String> topics, Boundary matchRecordBoundary) {
+        final Timer.Sample sample = Timer.start();
+        Map<String, Set<Matching>> matchedRoutes = new HashMap<>();
+        for (String topic : topics) {
+            matchedRoutes.put(topic, routeIndex.match(tenantId, topic, matchRecordBoundary));
+        }
+        sample.stop(timer);
+        return matchedRoutes;
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker.cache;
+
+import static com.baidu.bifromq.dist.entity.EntityUtil.parseMatchRecord;
+import static com.baidu.bifromq.metrics.TenantMetric.MqttRouteFilterFPPGauge;
+import static com.baidu.bifromq.metrics.TenantMetric.MqttRouteFilterSizeGauge;
+import static com.baidu.bifromq.util.TopicConst.DELIMITER_CHAR;
+import static com.baidu.bifromq.util.TopicConst.MULTI_WILDCARD;
+import static com.baidu.bifromq.util.TopicConst.SINGLE_WILDCARD;
+import static com.baidu.bifromq.util.TopicUtil.unescape;
+import static com.google.common.hash.Hashing.murmur3_128;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.baidu.bifromq.dist.entity.GroupMatching;
+import com.baidu.bifromq.dist.entity.Matching;
+import com.baidu.bifromq.metrics.ITenantMeter;
+import com.google.common.hash.HashFunction;
+import com.google.protobuf.ByteString;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The counting bloom filter over the literal prefix of topic filters in a dist-worker range, for telling the topics
+ * having no routes without looking up. The literal prefix of a topic filter is the levels before its first wildcard,
+ * and a topic could have routes only if one of its level prefixes is the literal prefix of some topic filter.
+ * The filter is updated from the single mutation thread of the range, and is safe for concurrent checking. Each tenant
+ * filter keeps the route count of its literal prefixes, and is rebuilt with doubled size once the prefixes outgrow it.
+ */
+class RouteBloomFilter {
+    private static final HashFunction HASHER = murmur3_128();
+    private static final int NUM_HASHES = 7;
+    private static final int COUNTERS_PER_PREFIX = 10;
+    private static final int MIN_COUNTERS = 1024;
+
+    private final String[] tags;
+    private volatile Map<String, TenantFilter> tenantFilters = new ConcurrentHashMap<>();
+    // tenantId -> literal prefix -> route count
+    private Map<String, Map<String, Integer>> loadingPrefixes = new HashMap<>();
+
+    RouteBloomFilter(String... tags) {
+        this.tags = tags;
+    }
+
+    /**
+     * Load a match record into the filter being built, which will be in effect after next call of {@link #reset()}.
+     *
+     * @param matchRecordKey   the key of the match record
+     * @param matchRecordValue the value of the match record
+     */
+    void load(ByteString matchRecordKey, ByteString matchRecordValue) {
+        Matching matching = parseMatchRecord(matchRecordKey, matchRecordValue);
+        loadingPrefixes.computeIfAbsent(matching.tenantId, k -> new HashMap<>())
+            .merge(literalPrefix(unescape(matching.escapedTopicFilter)), routeCount(matching), Integer::sum);
+    }
+
+    /**
+     * Replace the filter in effect with the one built from loaded match records, each tenant filter is sized by the
+     * number of loaded literal prefixes.
+     */
+    void reset() {
+        Map<String, TenantFilter> oldFilters = tenantFilters;
+        oldFilters.values().forEach(TenantFilter::destroy);
+        Map<String, TenantFilter> newFilters = new ConcurrentHashMap<>();
+        loadingPrefixes.forEach((tenantId, prefixes) ->
+            newFilters.put(tenantId, new TenantFilter(tenantId, prefixes, prefixes.size())));
+        tenantFilters = newFilters;
+        loadingPrefixes = new HashMap<>();
+    }
+
+    void addAllMatch(String tenantId, Map<String, Set<Matching>> newMatches) {
+        TenantFilter tenantFilter =
+            tenantFilters.computeIfAbsent(tenantId, k -> new TenantFilter(tenantId, new HashMap<>(), 0));
+        newMatches.forEach((topicFilter, matchings) -> {
+            int count = matchings.stream().mapToInt(RouteBloomFilter::routeCount).sum();
+            tenantFilter.add(literalPrefix(topicFilter), count);
+        });
+        if (tenantFilter.prefixes.size() > tenantFilter.capacity) {
+            // the filter in effect still answers checking until replaced
+            tenantFilter.destroy();
+            tenantFilters.put(tenantId,
+                new TenantFilter(tenantId, tenantFilter.prefixes, tenantFilter.prefixes.size() * 2));
+        }
+    }
+
+    void removeAllMatch(String tenantId, Map<String, Set<Matching>> obsoleteMatches) {
+        TenantFilter tenantFilter = tenantFilters.get(tenantId);
+        if (tenantFilter == null) {
+            return;
+        }
+        obsoleteMatches.forEach((topicFilter, matchings) -> {
+            int count = matchings.stream().mapToInt(RouteBloomFilter::routeCount).sum();
+            tenantFilter.remove(literalPrefix(topicFilter), count);
+        });
+        tenantFilters.computeIfPresent(tenantId, (k, v) -> {
+            if (v.routes == 0) {
+                v.destroy();
+                return null;
+            }
+            return v;
+        });
+    }
+
+    /**
+     * Check if the topic may have routes in the range.
+     *
+     * @param tenantId the tenantId
+     * @param topic    the topic
+     * @return false if the topic definitely has no routes
+     */
+    boolean mightHaveRoutes(String tenantId, String topic) {
+        TenantFilter tenantFilter = tenantFilters.get(tenantId);
+        return tenantFilter != null && tenantFilter.mightMatch(topic);
+    }
+
+    void close() {
+        tenantFilters.values().forEach(TenantFilter::destroy);
+        tenantFilters = new ConcurrentHashMap<>();
+    }
+
+    private static int routeCount(Matching matching) {
+        return switch (matching.type()) {
+            case Normal -> 1;
+            case Group -> ((GroupMatching) matching).receiverIds.size();
+        };
+    }
+
+    private static String literalPrefix(String topicFilter) {
+        int levelStart = 0;
+        while (levelStart <= topicFilter.length()) {
+            int levelEnd = topicFilter.indexOf(DELIMITER_CHAR, levelStart);
+            if (levelEnd < 0) {
+                levelEnd = topicFilter.length();
+            }
+            String level = topicFilter.substring(levelStart, levelEnd);
+            if (level.equals(SINGLE_WILDCARD) || level.equals(MULTI_WILDCARD)) {
+                return levelStart == 0 ? "" : topicFilter.substring(0, levelStart - 1);
+            }
+            levelStart = levelEnd + 1;
+        }
+        return topicFilter;
+    }
+
+    private class TenantFilter {
+        private final String tenantId;
+        // literal prefix -> route count, only accessed from the mutation thread
+        private final Map<String, Integer> prefixes;
+        private final int capacity;
+        private final AtomicIntegerArray counters;
+        private final int mask;
+        // the routes of topic filters starting with wildcard
+        private volatile int wildcardRoutes;
+        private volatile int nonZeroCounters;
+        private volatile long routes;
+
+        TenantFilter(String tenantId, Map<String, Integer> prefixes, int expectedPrefixes) {
+            this.tenantId = tenantId;
+            this.prefixes = prefixes;
+            int size = Integer.highestOneBit(Math.max(MIN_COUNTERS, expectedPrefixes * COUNTERS_PER_PREFIX) - 1) << 1;
+            capacity = size / COUNTERS_PER_PREFIX;
+            counters = new AtomicIntegerArray(size);
+            mask = size - 1;
+            prefixes.forEach(this::increment);
+            ITenantMeter.gauging(tenantId, MqttRouteFilterSizeGauge, counters::length, tags);
+            ITenantMeter.gauging(tenantId, MqttRouteFilterFPPGauge, this::fpp, tags);
+        }
+
+        void add(String prefix, int count) {
+            if (count <= 0) {
+                return;
+            }
+            prefixes.merge(prefix, count, Integer::sum);
+            increment(prefix, count);
+        }
+
+        private void increment(String prefix, int count) {
+            routes += count;
+            if (prefix.isEmpty()) {
+                wildcardRoutes += count;
+                return;
+            }
+            long hash = HASHER.hashString(prefix, UTF_8).asLong();
+            int hash1 = (int) hash;
+            int hash2 = (int) (hash >>> 32);
+            for (int i = 1; i <= NUM_HASHES; i++) {
+                if (counters.getAndAdd((hash1 + i * hash2) & mask, count) == 0) {
+                    nonZeroCounters++;
+                }
+            }
+        }
+
+        void remove(String prefix, int count) {
+            if (count <= 0) {
+                return;
+            }
+            prefixes.computeIfPresent(prefix, (k, v) -> v > count ? v - count : null);
+            routes = Math.max(0, routes - count);
+            if (prefix.isEmpty()) {
+                wildcardRoutes = Math.max(0, wildcardRoutes - count);
+                return;
+            }
+            long hash = HASHER.hashString(prefix, UTF_8).asLong();
+            int hash1 = (int) hash;
+            int hash2 = (int) (hash >>> 32);
+            for (int i = 1; i <= NUM_HASHES; i++) {
+                int idx = (hash1 + i * hash2) & mask;
+                int counter = counters.get(idx);
+                if (counter > 0) {
+                    counters.set(idx, Math.max(0, counter - count));
+                    if (counter <= count) {
+                        nonZeroCounters--;
+                    }
+                }
+            }
+        }
+
+        boolean mightMatch(String topic) {
+            if (wildcardRoutes > 0) {
+                return true;
+            }
+            int levelEnd = topic.indexOf(DELIMITER_CHAR);
+            while (levelEnd >= 0) {
+                if (mightContain(topic.substring(0, levelEnd))) {
+                    return true;
+                }
+                levelEnd = topic.indexOf(DELIMITER_CHAR, levelEnd + 1);
+            }
+            return mightContain(topic);
+        }
+
+        private boolean mightContain(String prefix) {
+            long hash = HASHER.hashString(prefix, UTF_8).asLong();
+            int hash1 = (int) hash;
+            int hash2 = (int) (hash >>> 32);
+            for (int i = 1; i <= NUM_HASHES; i++) {
+                if (counters.get((hash1 + i * hash2) & mask) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private double fpp() {
+            return Math.pow((double) nonZeroCounters / counters.length(), NUM_HASHES);
+        }
+
+        void destroy() {
+            ITenantMeter.stopGauging(tenantId, MqttRouteFilterSizeGauge, tags);
+            ITenantMeter.stopGauging(tenantId, MqttRouteFilterFPPGauge, tags);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker.cache;
+
+import com.baidu.bifromq.dist.entity.Matching;
+import com.baidu.bifromq.dist.worker.cache.TenantRouteCache.RouteCacheKey;
+import com.baidu.bifromq.sysprops.props.DistRouteCacheTenantFloorBytes;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import org.checkerframework.checker.index.qual.NonNegative;
+
+/**
+ * The memory-budgeted pool of cached routes shared by all tenants in the dist-worker. Tenant route caches demote the
+ * route sets beyond their floors into the pool, where they are weighed by estimated bytes and evicted across tenants
+ * by access frequency, so the busy tenants could use the memory left by idle ones. The floors of the tenant route
+ * caches are reserved out of the same budget: the pool gets what is left, and the floor is halved until the floors of
+ * all tenants fit in the budget.
+ */
+public class RouteCachePool {
+    private record PooledKey(TenantRouteCache owner, RouteCacheKey key) {
+    }
+
+    private record PooledRoutes(Set<Matching> routes, int bytes) {
+    }
+
+    private final long maxBytes;
+    private final long maxTenantFloorBytes;
+    private final Set<TenantRouteCache> owners = ConcurrentHashMap.newKeySet();
+    private final Cache<PooledKey, PooledRoutes> pool;
+    private final Gauge bytesGauge;
+    private final Gauge sizeGauge;
+    private volatile long tenantFloorBytes;
+
+    public RouteCachePool(long maxBytes) {
+        this(maxBytes, DistRouteCacheTenantFloorBytes.INSTANCE.get());
+    }
+
+    RouteCachePool(long maxBytes, long tenantFloorBytes) {
+        this(maxBytes, tenantFloorBytes, Ticker.systemTicker());
+    }
+
+    RouteCachePool(long maxBytes, long tenantFloorBytes, Ticker ticker) {
+        this.maxBytes = maxBytes;
+        this.maxTenantFloorBytes = tenantFloorBytes;
+        this.tenantFloorBytes = tenantFloorBytes;
+        pool = Caffeine.newBuilder()
+            .ticker(ticker)
+            .scheduler(Scheduler.systemScheduler())
+            .maximumWeight(maxBytes)
+            .<PooledKey, PooledRoutes>weigher((key, value) -> value.bytes)
+            .expireAfter(new Expiry<PooledKey, PooledRoutes>() {
+                @Override
+                public long expireAfterCreate(PooledKey key, PooledRoutes value, long currentTime) {
+                    return key.owner.expiryNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(PooledKey key, PooledRoutes value, long currentTime,
+                                              @NonNegative long currentDuration) {
+                    // applying route changes will not refresh expiry
+                    return currentDuration;
+                }
+
+                @Override
+                public long expireAfterRead(PooledKey key, PooledRoutes value, long currentTime,
+                                            @NonNegative long currentDuration) {
+                    return key.owner.expiryNanos();
+                }
+            })
+            .evictionListener((key, value, cause) -> {
+                if (key != null && value != null) {
+                    key.owner.onPoolEviction(key.key, value.bytes);
+                }
+            })
+            .build();
+        bytesGauge = Gauge.builder("dist.route.cache.pool.bytes", this::bytes)
+            .register(Metrics.globalRegistry);
+        sizeGauge = Gauge.builder("dist.route.cache.pool.size", pool::estimatedSize)
+            .register(Metrics.globalRegistry);
+    }
+
+    long tenantFloorBytes() {
+        return tenantFloorBytes;
+    }
+
+    synchronized void register(TenantRouteCache owner) {
+        owners.add(owner);
+        if (!resize()) {
+            owner.resizeFloor(tenantFloorBytes);
+        }
+    }
+
+    synchronized void unregister(TenantRouteCache owner) {
+        if (owners.remove(owner)) {
+            resize();
+        }
+    }
+
+    private boolean resize() {
+        int tenants = Math.max(1, owners.size());
+        long floor = maxTenantFloorBytes;
+        while (floor > maxBytes / tenants) {
+            floor >>= 1;
+        }
+        boolean floorChanged = floor != tenantFloorBytes;
+        tenantFloorBytes = floor;
+        if (floorChanged) {
+            owners.forEach(owner -> owner.resizeFloor(tenantFloorBytes));
+        }
+        long poolBytes = maxBytes - tenants * floor;
+        pool.policy().eviction().ifPresent(eviction -> eviction.setMaximum(poolBytes));
+        return floorChanged;
+    }
+
+    Set<Matching> getIfPresent(TenantRouteCache owner, RouteCacheKey key) {
+        PooledRoutes pooledRoutes = pool.getIfPresent(new PooledKey(owner, key));
+        return pooledRoutes != null ? pooledRoutes.routes : null;
+    }
+
+    void put(TenantRouteCache owner, RouteCacheKey key, Set<Matching> routes, int bytes) {
+        PooledRoutes replaced = pool.asMap().put(new PooledKey(owner, key), new PooledRoutes(routes, bytes));
+        owner.onPooled(key, bytes - (replaced != null ? replaced.bytes : 0));
+    }
+
+    void computeIfPresent(TenantRouteCache owner, RouteCacheKey key, Function<Set<Matching>, Set<Matching>> updater) {
+        pool.asMap().computeIfPresent(new PooledKey(owner, key), (k, pooledRoutes) -> {
+            Set<Matching> updated = updater.apply(pooledRoutes.routes);
+            int bytes = RouteWeigher.weigh(key.topic, updated);
+            owner.onPooled(key, bytes - pooledRoutes.bytes);
+            return new PooledRoutes(updated, bytes);
+        });
+    }
+
+    void invalidate(TenantRouteCache owner, RouteCacheKey key) {
+        PooledRoutes removed = pool.asMap().remove(new PooledKey(owner, key));
+        if (removed != null) {
+            owner.onUnpooled(key, removed.bytes);
+        }
+    }
+
+    long bytes() {
+        return pool.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    public void close() {
+        pool.invalidateAll();
+        Metrics.globalRegistry.remove(bytesGauge);
+        Metrics.globalRegistry.remove(sizeGauge);
+    }
+}
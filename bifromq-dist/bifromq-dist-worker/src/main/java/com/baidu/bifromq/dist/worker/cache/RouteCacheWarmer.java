@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker.cache;
+
+import static com.baidu.bifromq.dist.entity.EntityUtil.parseMatchRecord;
+import static com.baidu.bifromq.util.TopicUtil.isWildcardTopicFilter;
+import static com.baidu.bifromq.util.TopicUtil.unescape;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.baidu.bifromq.dist.entity.GroupMatching;
+import com.baidu.bifromq.dist.entity.Matching;
+import com.baidu.bifromq.dist.worker.cache.HotTopicTracker.TenantTopic;
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Preload the routes of hot topics into the route cache after a range is loaded, to avoid the cache miss storm after
+ * restart or split. The topics are taken from the hot topics tracked in the store first, and then from the non-wildcard
+ * topic filters having most routes in the loaded match records, which are the only hint available after restart.
+ * The warm-up runs in small steps at a limited rate, and is canceled when the range is reloaded or closed.
+ */
+@Slf4j
+class RouteCacheWarmer {
+    private static final long STEP_INTERVAL_MILLIS = 100;
+
+    private record LoadedTopic(String tenantId, String topic, int routes) {
+    }
+
+    private final HotTopicTracker hotTopics;
+    private final int maxTopics;
+    private final int topicsPerStep;
+    private final Executor stepExecutor;
+    // the loaded non-wildcard topic filters having most routes, the least one at head
+    private PriorityQueue<LoadedTopic> loadingTopics =
+        new PriorityQueue<>(Comparator.comparingInt(LoadedTopic::routes));
+    // match records of the same topic filter are adjacent, so routes are counted in run
+    private String runTenantId;
+    private String runTopic;
+    private int runRoutes;
+    private volatile WarmUp warmUp;
+
+    RouteCacheWarmer(HotTopicTracker hotTopics, int maxTopics, int topicsPerSecond, Executor executor) {
+        this.hotTopics = hotTopics;
+        this.maxTopics = maxTopics;
+        this.topicsPerStep = Math.max(1, (int) (topicsPerSecond * STEP_INTERVAL_MILLIS / 1000));
+        this.stepExecutor = CompletableFuture.delayedExecutor(STEP_INTERVAL_MILLIS, MILLISECONDS, executor);
+    }
+
+    /**
+     * Record the accessed topic as the candidate of warm-up.
+     *
+     * @param tenantId the tenantId
+     * @param topic    the topic
+     */
+    void record(String tenantId, String topic) {
+        if (hotTopics != null) {
+            hotTopics.record(tenantId, topic);
+        }
+    }
+
+    /**
+     * Load a match record as the candidate of next warm-up.
+     *
+     * @param matchRecordKey   the key of the match record
+     * @param matchRecordValue the value of the match record
+     */
+    void load(ByteString matchRecordKey, ByteString matchRecordValue) {
+        Matching matching = parseMatchRecord(matchRecordKey, matchRecordValue);
+        String topicFilter = unescape(matching.escapedTopicFilter);
+        if (isWildcardTopicFilter(topicFilter)) {
+            return;
+        }
+        int routes = switch (matching.type()) {
+            case Normal -> 1;
+            case Group -> ((GroupMatching) matching).receiverIds.size();
+        };
+        if (matching.tenantId.equals(runTenantId) && topicFilter.equals(runTopic)) {
+            runRoutes += routes;
+            return;
+        }
+        endRun();
+        runTenantId = matching.tenantId;
+        runTopic = topicFilter;
+        runRoutes = routes;
+    }
+
+    /**
+     * Start warming up with the hot topics of the tenants in range and the loaded candidates, the previous warm-up will
+     * be canceled.
+     *
+     * @param tenantFilter the filter of tenants in range
+     * @param warmer       the function to preload the routes of topics from the same tenant
+     */
+    void warmUp(Predicate<String> tenantFilter, BiConsumer<String, Set<String>> warmer) {
+        endRun();
+        PriorityQueue<LoadedTopic> loadedTopics = loadingTopics;
+        loadingTopics = new PriorityQueue<>(Comparator.comparingInt(LoadedTopic::routes));
+        cancel();
+        Set<TenantTopic> topics = new LinkedHashSet<>();
+        if (hotTopics != null) {
+            topics.addAll(hotTopics.hottest(tenantFilter, maxTopics));
+        }
+        List<LoadedTopic> sortedLoadedTopics = new ArrayList<>(loadedTopics);
+        sortedLoadedTopics.sort(Comparator.comparingInt(LoadedTopic::routes).reversed());
+        for (LoadedTopic loadedTopic : sortedLoadedTopics) {
+            if (topics.size() >= maxTopics) {
+                break;
+            }
+            topics.add(new TenantTopic(loadedTopic.tenantId, loadedTopic.topic));
+        }
+        if (topics.isEmpty()) {
+            return;
+        }
+        log.debug("Warm up route cache with {} topics", topics.size());
+        WarmUp newWarmUp = new WarmUp(new ArrayList<>(topics), warmer);
+        warmUp = newWarmUp;
+        stepExecutor.execute(newWarmUp);
+    }
+
+    void cancel() {
+        WarmUp current = warmUp;
+        if (current != null) {
+            current.canceled = true;
+            warmUp = null;
+        }
+    }
+
+    private void endRun() {
+        if (runTopic == null) {
+            return;
+        }
+        loadingTopics.offer(new LoadedTopic(runTenantId, runTopic, runRoutes));
+        if (loadingTopics.size() > maxTopics) {
+            loadingTopics.poll();
+        }
+        runTenantId = null;
+        runTopic = null;
+        runRoutes = 0;
+    }
+
+    private class WarmUp implements Runnable {
+        private final List<TenantTopic> topics;
+        private final BiConsumer<String, Set<String>> warmer;
+        private int next = 0;
+        private volatile boolean canceled;
+
+        WarmUp(List<TenantTopic> topics, BiConsumer<String, Set<String>> warmer) {
+            this.topics = topics;
+            this.warmer = warmer;
+        }
+
+        @Override
+        public void run() {
+            if (canceled) {
+                return;
+            }
+            int end = Math.min(topics.size(), next + topicsPerStep);
+            Map<String, Set<String>> topicsByTenant = new HashMap<>();
+            for (; next < end; next++) {
+                TenantTopic tenantTopic = topics.get(next);
+                topicsByTenant.computeIfAbsent(tenantTopic.tenantId(), k -> new HashSet<>()).add(tenantTopic.topic());
+            }
+            try {
+                topicsByTenant.forEach(warmer);
+            } catch (Throwable e) {
+                log.debug("Stop warming up route cache", e);
+                return;
+            }
+            if (next < topics.size()) {
+                stepExecutor.execute(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker.cache;
+
+import static com.baidu.bifromq.basekv.utils.BoundaryUtil.inRange;
+import static com.baidu.bifromq.dist.entity.EntityUtil.parseMatchRecord;
+import static com.baidu.bifromq.dist.worker.cache.GroupMatchingUtil.copyOf;
+import static com.baidu.bifromq.util.TopicUtil.unescape;
+
+import com.baidu.bifromq.basekv.proto.Boundary;
+import com.baidu.bifromq.dist.entity.GroupMatching;
+import com.baidu.bifromq.dist.entity.Matching;
+import com.baidu.bifromq.dist.worker.TopicFilterIndex;
+import com.google.protobuf.ByteString;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The in-memory index of the match records in a dist-worker range. The index is updated from the single mutation
+ * thread of the range, and is safe for concurrent matching.
+ */
+class RouteIndex {
+    private static class TenantRoutes {
+        private final TopicFilterIndex<ByteString> topicFilterIndex = new TopicFilterIndex<>();
+        // matchRecordKey -> matching, GroupMatching in this map is never mutated and replaced as a whole when updated
+        private final Map<ByteString, Matching> matchings = new ConcurrentHashMap<>();
+
+        void put(Matching matching) {
+            if (matchings.put(matching.key, matching) == null) {
+                topicFilterIndex.add(unescape(matching.escapedTopicFilter), matching.key);
+            }
+        }
+
+        void remove(Matching matching) {
+            topicFilterIndex.remove(unescape(matching.escapedTopicFilter), matching.key);
+            matchings.remove(matching.key);
+        }
+    }
+
+    private volatile Map<String, TenantRoutes> tenantRoutes = new ConcurrentHashMap<>();
+    private Map<String, TenantRoutes> loadingRoutes = new ConcurrentHashMap<>();
+
+    /**
+     * Load a match record into the index being built, which will be in effect after next call of {@link #reset()}.
+     *
+     * @param matchRecordKey   the key of the match record
+     * @param matchRecordValue the value of the match record
+     */
+    void load(ByteString matchRecordKey, ByteString matchRecordValue) {
+        Matching matching = parseMatchRecord(matchRecordKey, matchRecordValue);
+        loadingRoutes.computeIfAbsent(matching.tenantId, k -> new TenantRoutes()).put(matching);
+    }
+
+    /**
+     * Replace the index in effect with the one built from loaded match records.
+     */
+    void reset() {
+        tenantRoutes = loadingRoutes;
+        loadingRoutes = new ConcurrentHashMap<>();
+    }
+
+    void addAllMatch(String tenantId, Map<String, Set<Matching>> newMatches) {
+        TenantRoutes routes = tenantRoutes.computeIfAbsent(tenantId, k -> new TenantRoutes());
+        for (Set<Matching> matchings : newMatches.values()) {
+            for (Matching matching : matchings) {
+                switch (matching.type()) {
+                    case Normal -> routes.put(matching);
+                    case Group -> {
+                        GroupMatching newGroupMatching = (GroupMatching) matching;
+                        Matching existing = routes.matchings.get(matching.key);
+                        if (existing == null) {
+                            routes.put(copyOf(newGroupMatching, newGroupMatching.receiverIds, Set.of()));
+                        } else {
+                            routes.matchings.put(matching.key,
+                                copyOf((GroupMatching) existing, newGroupMatching.receiverIds, Set.of()));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    void removeAllMatch(String tenantId, Map<String, Set<Matching>> obsoleteMatches) {
+        TenantRoutes routes = tenantRoutes.get(tenantId);
+        if (routes == null) {
+            return;
+        }
+        for (Set<Matching> matchings : obsoleteMatches.values()) {
+            for (Matching matching : matchings) {
+                switch (matching.type()) {
+                    case Normal -> routes.remove(matching);
+                    case Group -> {
+                        Matching existing = routes.matchings.get(matching.key);
+                        if (existing != null) {
+                            GroupMatching remaining = copyOf((GroupMatching) existing, Set.of(),
+                                ((GroupMatching) matching).receiverIds);
+                            if (remaining.receiverIds.isEmpty()) {
+                                routes.remove(existing);
+                            } else {
+                                routes.matchings.put(matching.key, remaining);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        tenantRoutes.computeIfPresent(tenantId, (k, v) -> v.matchings.isEmpty() ? null : v);
+    }
+
+    /**
+     * Match the topic against the indexed match records of the tenant within the given boundary.
+     *
+     * @param tenantId            the tenantId
+     * @param topic               the topic to match
+     * @param matchRecordBoundary the boundary of the match record
+     * @return the set of matching
+     */
+    Set<Matching> match(String tenantId, String topic, Boundary matchRecordBoundary) {
+        Set<Matching> matchedRoutes = new HashSet<>();
+        TenantRoutes routes = tenantRoutes.get(tenantId);
+        if (routes == null) {
+            return matchedRoutes;
+        }
+        for (ByteString matchRecordKey : routes.topicFilterIndex.match(topic)) {
+            if (!inRange(matchRecordKey, matchRecordBoundary)) {
+                continue;
+            }
+            Matching matching = routes.matchings.get(matchRecordKey);
+            if (matching != null) {
+                matchedRoutes.add(matching);
+            }
+        }
+        return matchedRoutes;
+    }
+}
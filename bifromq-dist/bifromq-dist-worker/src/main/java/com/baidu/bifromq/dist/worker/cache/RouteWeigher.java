@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker.cache;
+
+import com.baidu.bifromq.dist.entity.GroupMatching;
+import com.baidu.bifromq.dist.entity.Matching;
+import com.baidu.bifromq.dist.entity.NormalMatching;
+import java.util.Set;
+
+/**
+ * Estimate the heap bytes taken by a cached route set, including the topic key, the set itself and the matchings in
+ * it. The estimation is made from the sizes of strings and the typical object layout of 64-bit JVM with compressed
+ * oops, it's meant for budgeting rather than exact accounting.
+ */
+final class RouteWeigher {
+    private static final int OBJECT_OVERHEAD = 16;
+    private static final int STRING_OVERHEAD = 40;
+    private static final int BYTE_STRING_OVERHEAD = 32;
+    private static final int CACHE_ENTRY_OVERHEAD = 128;
+    private static final int SET_OVERHEAD = 64;
+    private static final int SET_ENTRY_OVERHEAD = 32;
+    private static final int MATCH_INFO_OVERHEAD = 64;
+
+    private RouteWeigher() {
+    }
+
+    static int weigh(String topic, Set<Matching> matchings) {
+        long bytes = CACHE_ENTRY_OVERHEAD + stringBytes(topic) + SET_OVERHEAD;
+        for (Matching matching : matchings) {
+            bytes += SET_ENTRY_OVERHEAD + weigh(matching);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static long weigh(Matching matching) {
+        long bytes = OBJECT_OVERHEAD
+            + BYTE_STRING_OVERHEAD + matching.key.size()
+            + stringBytes(matching.tenantId)
+            + stringBytes(matching.escapedTopicFilter)
+            + stringBytes(matching.originalTopicFilter());
+        switch (matching.type()) {
+            case Normal -> {
+                NormalMatching normalMatching = (NormalMatching) matching;
+                bytes += stringBytes(normalMatching.scopedInboxId)
+                    + stringBytes(normalMatching.delivererKey)
+                    + MATCH_INFO_OVERHEAD + stringBytes(normalMatching.matchInfo.getReceiverId());
+            }
+            case Group -> {
+                GroupMatching groupMatching = (GroupMatching) matching;
+                bytes += stringBytes(groupMatching.group) + SET_OVERHEAD;
+                for (NormalMatching receiver : groupMatching.receiverList) {
+                    // the receiver id is shared by the id set and the receiver
+                    bytes += SET_ENTRY_OVERHEAD + OBJECT_OVERHEAD
+                        + stringBytes(receiver.scopedInboxId)
+                        + stringBytes(receiver.delivererKey)
+                        + MATCH_INFO_OVERHEAD + stringBytes(receiver.matchInfo.getReceiverId());
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String str) {
+        return str == null ? 0 : STRING_OVERHEAD + str.length();
+    }
+}
@@ -14,6 +14,7 @@
 package com.baidu.bifromq.dist.worker.cache;
 
 import static com.baidu.bifromq.basekv.utils.BoundaryUtil.intersect;
+import static com.baidu.bifromq.basekv.utils.BoundaryUtil.isOverlap;
 import static com.baidu.bifromq.dist.entity.EntityUtil.matchRecordKeyPrefix;
 import static com.baidu.bifromq.dist.entity.EntityUtil.tenantUpperBound;
 import static com.baidu.bifromq.dist.worker.cache.SubscriptionCache.TenantKey.noRefreshExpiry;
@@ -24,13 +25,21 @@ import com.baidu.bifromq.basekv.proto.KVRangeId;
 import com.baidu.bifromq.basekv.store.api.IKVCloseableReader;
 import com.baidu.bifromq.basekv.utils.KVRangeIdUtil;
 import com.baidu.bifromq.dist.entity.Matching;
+import com.baidu.bifromq.sysprops.props.DistInMemoryRouteMatch;
+import com.baidu.bifromq.sysprops.props.DistRouteBloomFilter;
+import com.baidu.bifromq.sysprops.props.DistRouteCacheWarmUpRate;
+import com.baidu.bifromq.sysprops.props.DistRouteCacheWarmUpTopics;
 import com.baidu.bifromq.sysprops.props.DistTopicMatchExpirySeconds;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.Expiry;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.github.benmanes.caffeine.cache.Scheduler;
 import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.protobuf.ByteString;
 import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -66,21 +75,56 @@ public class SubscriptionCache implements ISubscriptionCache {
 
     private final Executor matchExecutor;
     private final ITenantRouteCacheFactory tenantRouteCacheFactory;
+    private final RouteIndex routeIndex;
+    private final RouteBloomFilter routeFilter;
+    private final RouteCacheWarmer warmer;
     private final LoadingCache<TenantKey, ITenantRouteCache> tenantCache;
     private volatile Boundary boundary;
 
-    public SubscriptionCache(KVRangeId id, Supplier<IKVCloseableReader> rangeReaderProvider, Executor matchExecutor) {
-        this(id, new TenantRouteCacheFactory(rangeReaderProvider,
+    public SubscriptionCache(KVRangeId id,
+                             Supplier<IKVCloseableReader> rangeReaderProvider,
+                             HotTopicTracker hotTopics,
+                             RouteCachePool routeCachePool,
+                             Executor matchExecutor) {
+        this(id, rangeReaderProvider, routeCachePool, DistInMemoryRouteMatch.INSTANCE.get() ? new RouteIndex() : null,
+            DistRouteBloomFilter.INSTANCE.get() ? new RouteBloomFilter("id", KVRangeIdUtil.toString(id)) : null,
+            DistRouteCacheWarmUpTopics.INSTANCE.get() > 0
+                ? new RouteCacheWarmer(hotTopics, DistRouteCacheWarmUpTopics.INSTANCE.get(),
+                DistRouteCacheWarmUpRate.INSTANCE.get(), matchExecutor) : null,
+            matchExecutor);
+    }
+
+    private SubscriptionCache(KVRangeId id,
+                              Supplier<IKVCloseableReader> rangeReaderProvider,
+                              RouteCachePool routeCachePool,
+                              RouteIndex routeIndex,
+                              RouteBloomFilter routeFilter,
+                              RouteCacheWarmer warmer,
+                              Executor matchExecutor) {
+        this(id, new TenantRouteCacheFactory(rangeReaderProvider, routeIndex, routeCachePool,
                 Duration.ofSeconds(DistTopicMatchExpirySeconds.INSTANCE.get()), "id", KVRangeIdUtil.toString(id)),
-            matchExecutor, Ticker.systemTicker());
+            routeIndex, routeFilter, warmer, matchExecutor, Ticker.systemTicker());
     }
 
     public SubscriptionCache(KVRangeId id,
                              ITenantRouteCacheFactory tenantRouteCacheFactory,
                              Executor matchExecutor,
                              Ticker ticker) {
+        this(id, tenantRouteCacheFactory, null, null, null, matchExecutor, ticker);
+    }
+
+    SubscriptionCache(KVRangeId id,
+                      ITenantRouteCacheFactory tenantRouteCacheFactory,
+                      RouteIndex routeIndex,
+                      RouteBloomFilter routeFilter,
+                      RouteCacheWarmer warmer,
+                      Executor matchExecutor,
+                      Ticker ticker) {
         this.matchExecutor = matchExecutor;
         this.tenantRouteCacheFactory = tenantRouteCacheFactory;
+        this.routeIndex = routeIndex;
+        this.routeFilter = routeFilter;
+        this.warmer = warmer;
         long expiryNanos = tenantRouteCacheFactory.expiry().multipliedBy(2).toNanos();
         tenantCache = Caffeine.newBuilder()
             .ticker(ticker)
@@ -113,11 +157,15 @@ public class SubscriptionCache implements ISubscriptionCache {
 
     @Override
     public CompletableFuture<Set<Matching>> get(String tenantId, String topic) {
+        if (routeFilter != null && !routeFilter.mightHaveRoutes(tenantId, topic)) {
+            // no routes: skip lookup
+            return CompletableFuture.completedFuture(Collections.emptySet());
+        }
+        if (warmer != null) {
+            warmer.record(tenantId, topic);
+        }
         ITenantRouteCache routesCache = tenantCache.get(refreshExpiry(tenantId));
-        Boundary tenantBoundary = intersect(Boundary.newBuilder()
-            .setStartKey(matchRecordKeyPrefix(tenantId))
-            .setEndKey(tenantUpperBound(tenantId))
-            .build(), boundary);
+        Boundary tenantBoundary = tenantBoundary(tenantId);
         Set<Matching> matches = routesCache.getIfPresent(topic, tenantBoundary);
         if (matches != null) {
             // cache hit: fast path
@@ -127,10 +175,49 @@ public class SubscriptionCache implements ISubscriptionCache {
         return CompletableFuture.supplyAsync(() -> routesCache.get(topic, tenantBoundary), matchExecutor);
     }
 
+    @Override
+    public CompletableFuture<Map<String, Set<Matching>>> get(String tenantId, Set<String> topics) {
+        ITenantRouteCache routesCache = tenantCache.get(refreshExpiry(tenantId));
+        Boundary tenantBoundary = tenantBoundary(tenantId);
+        Map<String, Set<Matching>> matchesByTopic = new HashMap<>();
+        Set<String> missedTopics = new HashSet<>();
+        for (String topic : topics) {
+            if (routeFilter != null && !routeFilter.mightHaveRoutes(tenantId, topic)) {
+                // no routes: skip lookup
+                matchesByTopic.put(topic, Collections.emptySet());
+                continue;
+            }
+            if (warmer != null) {
+                warmer.record(tenantId, topic);
+            }
+            Set<Matching> matches = routesCache.getIfPresent(topic, tenantBoundary);
+            if (matches != null) {
+                matchesByTopic.put(topic, matches);
+            } else {
+                missedTopics.add(topic);
+            }
+        }
+        if (missedTopics.isEmpty()) {
+            // all cache hit: fast path
+            return CompletableFuture.completedFuture(matchesByTopic);
+        }
+        // some cache miss: match them together in slow path
+        return CompletableFuture.supplyAsync(() -> {
+            matchesByTopic.putAll(routesCache.getAll(missedTopics, tenantBoundary));
+            return matchesByTopic;
+        }, matchExecutor);
+    }
+
     @Override
     public void removeAllMatch(Map<String, Map<String, Set<Matching>>> matchesByTenant) {
         matchesByTenant.forEach(
             (tenantId, matches) -> {
+                if (routeIndex != null) {
+                    routeIndex.removeAllMatch(tenantId, matches);
+                }
+                if (routeFilter != null) {
+                    routeFilter.removeAllMatch(tenantId, matches);
+                }
                 ITenantRouteCache cache = tenantCache.getIfPresent(noRefreshExpiry(tenantId));
                 if (cache != null) {
                     cache.removeAllMatch(matches);
@@ -141,6 +228,12 @@ public class SubscriptionCache implements ISubscriptionCache {
     @Override
     public void addAllMatch(Map<String, Map<String, Set<Matching>>> matchesByTenant) {
         matchesByTenant.forEach((tenantId, matches) -> {
+            if (routeIndex != null) {
+                routeIndex.addAllMatch(tenantId, matches);
+            }
+            if (routeFilter != null) {
+                routeFilter.addAllMatch(tenantId, matches);
+            }
             ITenantRouteCache cache = tenantCache.getIfPresent(noRefreshExpiry(tenantId));
             if (cache != null) {
                 cache.addAllMatch(matches);
@@ -148,14 +241,67 @@ public class SubscriptionCache implements ISubscriptionCache {
         });
     }
 
+    @Override
+    public void load(ByteString matchRecordKey, ByteString matchRecordValue) {
+        if (routeIndex != null) {
+            routeIndex.load(matchRecordKey, matchRecordValue);
+        }
+        if (routeFilter != null) {
+            routeFilter.load(matchRecordKey, matchRecordValue);
+        }
+        if (warmer != null) {
+            warmer.load(matchRecordKey, matchRecordValue);
+        }
+    }
+
     @Override
     public void reset(Boundary boundary) {
+        if (routeIndex != null) {
+            routeIndex.reset();
+        }
+        if (routeFilter != null) {
+            routeFilter.reset();
+        }
         this.boundary = boundary;
+        if (warmer != null) {
+            warmer.warmUp(tenantId -> isOverlap(tenantRange(tenantId), boundary), this::warmUp);
+        }
+    }
+
+    private void warmUp(String tenantId, Set<String> topics) {
+        Set<String> topicsToLoad = new HashSet<>();
+        for (String topic : topics) {
+            if (routeFilter == null || routeFilter.mightHaveRoutes(tenantId, topic)) {
+                topicsToLoad.add(topic);
+            }
+        }
+        if (!topicsToLoad.isEmpty()) {
+            tenantCache.get(noRefreshExpiry(tenantId)).getAll(topicsToLoad, tenantBoundary(tenantId));
+        }
+    }
+
+    private Boundary tenantBoundary(String tenantId) {
+        return intersect(tenantRange(tenantId), boundary);
+    }
+
+    private Boundary tenantRange(String tenantId) {
+        return Boundary.newBuilder()
+            .setStartKey(matchRecordKeyPrefix(tenantId))
+            .setEndKey(tenantUpperBound(tenantId))
+            .build();
     }
 
     @Override
     public void close() {
+        if (warmer != null) {
+            warmer.cancel();
+        }
+        // explicit invalidation doesn't fire eviction listener
+        tenantCache.asMap().values().forEach(ITenantRouteCache::destroy);
         tenantCache.invalidateAll();
         tenantRouteCacheFactory.close();
+        if (routeFilter != null) {
+            routeFilter.close();
+        }
     }
 }
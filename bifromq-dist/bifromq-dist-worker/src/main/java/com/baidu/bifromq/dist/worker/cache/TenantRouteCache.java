@@ -13,6 +13,11 @@
 
 package com.baidu.bifromq.dist.worker.cache;
 
+import static com.baidu.bifromq.dist.worker.cache.GroupMatchingUtil.copyOf;
+import static com.baidu.bifromq.util.TopicConst.DELIMITER_CHAR;
+import static com.baidu.bifromq.util.TopicConst.MULTI_WILDCARD;
+import static com.baidu.bifromq.util.TopicConst.SINGLE_WILDCARD;
+
 import com.baidu.bifromq.basekv.proto.Boundary;
 import com.baidu.bifromq.dist.entity.GroupMatching;
 import com.baidu.bifromq.dist.entity.Matching;
@@ -23,21 +28,39 @@ import com.baidu.bifromq.sysprops.props.DistMaxCachedRoutesPerTenant;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.github.benmanes.caffeine.cache.Scheduler;
 import com.github.benmanes.caffeine.cache.Ticker;
 import com.github.benmanes.caffeine.cache.Weigher;
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import org.checkerframework.checker.index.qual.NonNegative;
 
+/**
+ * The route cache of a tenant. Cached route sets are immutable snapshots, route changes are applied by replacing them
+ * with updated copies, so readers never observe in-place mutation. Cache misses are loaded optimistically against the
+ * versions of the topic stripes they belong to, and route changes only bump the versions of the stripes they affect.
+ * When a shared {@link RouteCachePool} is given, the tenant cache only keeps route sets up to the floor bytes assigned by
+ * the pool, and the ones evicted by size are demoted into the pool to compete with other tenants.
+ */
 class TenantRouteCache implements ITenantRouteCache {
+    private static final int STRIPES = 16;
+    private static final int MAX_OPTIMISTIC_LOAD = 3;
+
     @EqualsAndHashCode
     @AllArgsConstructor
-    private static class RouteCacheKey {
+    static class RouteCacheKey {
         final String topic;
         final Boundary matchRecordBoundary;
         @EqualsAndHashCode.Exclude
@@ -46,26 +69,51 @@ class TenantRouteCache implements ITenantRouteCache {
 
     private final String tenantId;
     private final ITenantRouteMatcher matcher;
+    private final long expiryNanos;
+    private final RouteCachePool pool;
+    private final String[] tags;
     private final Cache<RouteCacheKey, Set<Matching>> routesCache;
+    private final Set<RouteCacheKey> pooledKeys = ConcurrentHashMap.newKeySet();
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
     private final TopicIndex<RouteCacheKey> index;
-    private final StampedLock stampedLock = new StampedLock();
+    // the lock of each stripe works as the version of routes in that stripe
+    private final StampedLock[] stripeLocks = new StampedLock[STRIPES];
+    private volatile boolean destroyed;
 
     TenantRouteCache(String tenantId, ITenantRouteMatcher matcher, Duration expiryAfterAccess) {
         this(tenantId, matcher, expiryAfterAccess, Ticker.systemTicker());
     }
 
     TenantRouteCache(String tenantId, ITenantRouteMatcher matcher, Duration expiryAfterAccess, Ticker ticker) {
+        this(tenantId, matcher, expiryAfterAccess, null, ticker);
+    }
+
+    TenantRouteCache(String tenantId,
+                     ITenantRouteMatcher matcher,
+                     Duration expiryAfterAccess,
+                     RouteCachePool pool,
+                     Ticker ticker,
+                     String... tags) {
         this.tenantId = tenantId;
         this.matcher = matcher;
+        this.expiryNanos = expiryAfterAccess.toNanos();
+        this.pool = pool;
+        this.tags = tags;
+        for (int i = 0; i < STRIPES; i++) {
+            stripeLocks[i] = new StampedLock();
+        }
         index = new TopicIndex<>();
         routesCache = Caffeine.newBuilder()
             .ticker(ticker)
             .scheduler(Scheduler.systemScheduler())
-            .maximumWeight(DistMaxCachedRoutesPerTenant.INSTANCE.get())
+            .maximumWeight(pool == null
+                ? DistMaxCachedRoutesPerTenant.INSTANCE.get() : pool.tenantFloorBytes())
             .weigher(new Weigher<RouteCacheKey, Set<Matching>>() {
                 @Override
                 public @NonNegative int weigh(RouteCacheKey key, Set<Matching> value) {
-                    return value.size();
+                    return pool == null ? value.size() : RouteWeigher.weigh(key.topic, value);
                 }
             })
             .expireAfter(new Expiry<RouteCacheKey, Set<Matching>>() {
@@ -77,7 +125,8 @@ class TenantRouteCache implements ITenantRouteCache {
                 @Override
                 public long expireAfterUpdate(RouteCacheKey key, Set<Matching> matchings, long currentTime,
                                               @NonNegative long currentDuration) {
-                    return expiryAfterAccess.toNanos();
+                    // applying route changes will not refresh expiry
+                    return currentDuration;
                 }
 
                 @Override
@@ -90,96 +139,57 @@ class TenantRouteCache implements ITenantRouteCache {
                 }
             })
             .evictionListener((key, value, cause) -> {
-                if (key != null) {
+                if (key == null) {
+                    return;
+                }
+                if (pool != null && value != null && cause == RemovalCause.SIZE && !destroyed) {
+                    // beyond the floor: demote to the pool, the indexed key is kept
+                    pool.put(this, key, value, RouteWeigher.weigh(key.topic, value));
+                } else {
+                    if (pool != null) {
+                        // the one demoted concurrently with reloading if any
+                        pool.invalidate(this, key);
+                    }
                     index.remove(key.topic, key);
                 }
             })
             .build();
-        ITenantMeter.gauging(tenantId, TenantMetric.MqttRouteCacheSize, routesCache::estimatedSize);
+        if (pool != null) {
+            pool.register(this);
+        }
+        ITenantMeter.gauging(tenantId, TenantMetric.MqttRouteCacheSize,
+            () -> routesCache.estimatedSize() + pooledKeys.size(), tags);
+        ITenantMeter.gauging(tenantId, TenantMetric.MqttRouteCacheHitRatioGauge, this::hitRatio, tags);
+        if (pool != null) {
+            ITenantMeter.gauging(tenantId, TenantMetric.MqttRouteCacheBytesGauge, this::bytes, tags);
+        }
     }
 
     @Override
     public void addAllMatch(Map<String, Set<Matching>> newMatches) {
-        long stamp = stampedLock.writeLock();
-        try {
-            for (Map.Entry<String, Set<Matching>> entry : newMatches.entrySet()) {
-                String topicFilter = entry.getKey();
-                for (RouteCacheKey cacheKey : index.match(topicFilter)) {
-                    for (Matching matching : entry.getValue()) {
-                        // indexed key will not refresh expiry
-                        Set<Matching> cachedMatching = routesCache.getIfPresent(cacheKey);
-                        if (cachedMatching != null) {
-                            switch (matching.type()) {
-                                case Normal -> cachedMatching.add(matching);
-                                case Group -> {
-                                    GroupMatching newGroupMatching = (GroupMatching) matching;
-                                    boolean found = false;
-                                    for (Matching m : cachedMatching) {
-                                        if (m.type() == Matching.Type.Group) {
-                                            GroupMatching cachedGroupMatching = (GroupMatching) m;
-                                            if (cachedGroupMatching.originalTopicFilter()
-                                                .equals(newGroupMatching.originalTopicFilter())) {
-                                                cachedGroupMatching.addAll(newGroupMatching.receiverIds);
-                                                found = true;
-                                                break;
-                                            }
-                                        }
-                                    }
-                                    if (!found) {
-                                        cachedMatching.add(matching);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        } finally {
-            stampedLock.unlockWrite(stamp);
+        for (Map.Entry<String, Set<Matching>> entry : newMatches.entrySet()) {
+            update(entry.getKey(), cachedMatchings -> added(cachedMatchings, entry.getValue()));
         }
     }
 
     @Override
     public void removeAllMatch(Map<String, Set<Matching>> obsoleteMatches) {
-        long stamp = stampedLock.writeLock();
-        try {
-            for (Map.Entry<String, Set<Matching>> entry : obsoleteMatches.entrySet()) {
-                String topicFilter = entry.getKey();
-                for (RouteCacheKey cacheKey : index.match(topicFilter)) {
-                    for (Matching matching : entry.getValue()) {
-                        // indexed key will not refresh expiry
-                        Set<Matching> cachedMatching = routesCache.getIfPresent(cacheKey);
-                        if (cachedMatching != null) {
-                            // remove matching from cache
-                            switch (matching.type()) {
-                                case Normal -> cachedMatching.remove(matching);
-                                case Group -> {
-                                    GroupMatching obsoleteGroupMatching = (GroupMatching) matching;
-                                    cachedMatching.removeIf(m -> {
-                                        if (m.type() == Matching.Type.Group) {
-                                            GroupMatching cachedGroupMatching = ((GroupMatching) m);
-                                            if (cachedGroupMatching.originalTopicFilter()
-                                                .equals(obsoleteGroupMatching.originalTopicFilter())) {
-                                                cachedGroupMatching.removeAll(obsoleteGroupMatching.receiverIds);
-                                                return cachedGroupMatching.receiverIds.isEmpty();
-                                            }
-                                        }
-                                        return false;
-                                    });
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        } finally {
-            stampedLock.unlockWrite(stamp);
+        for (Map.Entry<String, Set<Matching>> entry : obsoleteMatches.entrySet()) {
+            update(entry.getKey(), cachedMatchings -> removed(cachedMatchings, entry.getValue()));
         }
     }
 
     @Override
     public Set<Matching> getIfPresent(String topic, Boundary matchRecordRange) {
-        return routesCache.getIfPresent(new RouteCacheKey(topic, matchRecordRange, true));
+        RouteCacheKey cacheKey = new RouteCacheKey(topic, matchRecordRange, true);
+        Set<Matching> cachedMatchings = routesCache.getIfPresent(cacheKey);
+        if (cachedMatchings == null && pool != null) {
+            cachedMatchings = pool.getIfPresent(this, cacheKey);
+        }
+        if (cachedMatchings != null) {
+            hits.increment();
+        }
+        return cachedMatchings;
     }
 
     @Override
@@ -188,20 +198,237 @@ class TenantRouteCache implements ITenantRouteCache {
         if (cachedMatchings != null) {
             return cachedMatchings;
         }
-        long stamp = stampedLock.readLock();
+        misses.increment();
+        ITenantMeter.get(tenantId).recordCount(TenantMetric.MqttRouteCacheMissCount);
+        return load(Set.of(topic), matchRecordRange,
+            topics -> Map.of(topic, matcher.match(topic, matchRecordRange))).get(topic);
+    }
+
+    @Override
+    public Map<String, Set<Matching>> getAll(Set<String> topics, Boundary matchRecordRange) {
+        Map<String, Set<Matching>> result = new HashMap<>();
+        Set<String> missedTopics = new HashSet<>();
+        for (String topic : topics) {
+            Set<Matching> cachedMatchings = getIfPresent(topic, matchRecordRange);
+            if (cachedMatchings != null) {
+                result.put(topic, cachedMatchings);
+            } else {
+                missedTopics.add(topic);
+            }
+        }
+        if (missedTopics.isEmpty()) {
+            return result;
+        }
+        misses.add(missedTopics.size());
+        ITenantMeter.get(tenantId).recordCount(TenantMetric.MqttRouteCacheMissCount, missedTopics.size());
+        result.putAll(load(missedTopics, matchRecordRange, t -> matcher.matchAll(t, matchRecordRange)));
+        return result;
+    }
+
+    private Map<String, Set<Matching>> load(Set<String> topics,
+                                            Boundary matchRecordRange,
+                                            Function<Set<String>, Map<String, Set<Matching>>> matchFn) {
+        Map<String, Set<Matching>> loaded = new HashMap<>();
+        Set<String> topicsToMatch = topics;
+        for (int i = 0; i < MAX_OPTIMISTIC_LOAD && !topicsToMatch.isEmpty(); i++) {
+            Map<Integer, Long> stamps = new HashMap<>();
+            for (String topic : topicsToMatch) {
+                stamps.computeIfAbsent(stripe(topic), s -> stripeLocks[s].tryOptimisticRead());
+            }
+            Map<String, Set<Matching>> matched = matchFn.apply(topicsToMatch);
+            matched.forEach((topic, matchings) -> {
+                cache(topic, matchRecordRange, matchings);
+                loaded.put(topic, matchings);
+            });
+            // the topics whose stripe has been updated during matching need to be matched again, since the update
+            // may be applied before they are cached
+            Set<String> conflictTopics = new HashSet<>();
+            for (String topic : topicsToMatch) {
+                if (!stripeLocks[stripe(topic)].validate(stamps.get(stripe(topic)))) {
+                    conflictTopics.add(topic);
+                }
+            }
+            topicsToMatch = conflictTopics;
+        }
+        if (!topicsToMatch.isEmpty()) {
+            // fallback to block the route updates on the stripes
+            int[] stripes = topicsToMatch.stream().mapToInt(TenantRouteCache::stripe).distinct().sorted().toArray();
+            long[] stamps = new long[stripes.length];
+            for (int i = 0; i < stripes.length; i++) {
+                stamps[i] = stripeLocks[stripes[i]].readLock();
+            }
+            try {
+                matchFn.apply(topicsToMatch).forEach((topic, matchings) -> {
+                    cache(topic, matchRecordRange, matchings);
+                    loaded.put(topic, matchings);
+                });
+            } finally {
+                for (int i = stripes.length - 1; i >= 0; i--) {
+                    stripeLocks[stripes[i]].unlockRead(stamps[i]);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    private void cache(String topic, Boundary matchRecordRange, Set<Matching> matchings) {
+        RouteCacheKey cacheKey = new RouteCacheKey(topic, matchRecordRange, true);
+        if (pool != null) {
+            // the stale pooled one if any, before the new one could be demoted
+            pool.invalidate(this, cacheKey);
+        }
+        routesCache.put(cacheKey, matchings);
+        index.add(topic, new RouteCacheKey(topic, matchRecordRange, false));
+    }
+
+    private void update(String topicFilter, Function<Set<Matching>, Set<Matching>> updater) {
+        int[] stripes = stripes(topicFilter);
+        long[] stamps = new long[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            stamps[i] = stripeLocks[stripes[i]].writeLock();
+        }
         try {
-            ITenantMeter.get(tenantId).recordCount(TenantMetric.MqttRouteCacheMissCount);
-            Set<Matching> matchings = matcher.match(topic, matchRecordRange);
-            routesCache.put(new RouteCacheKey(topic, matchRecordRange, true), matchings);
-            index.add(topic, new RouteCacheKey(topic, matchRecordRange, false));
-            return matchings;
+            for (RouteCacheKey cacheKey : index.match(topicFilter)) {
+                // indexed key will not refresh expiry
+                routesCache.asMap().computeIfPresent(cacheKey, (k, cachedMatchings) -> updater.apply(cachedMatchings));
+                if (pool != null) {
+                    pool.computeIfPresent(this, cacheKey, updater);
+                }
+            }
         } finally {
-            stampedLock.unlockRead(stamp);
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                stripeLocks[stripes[i]].unlockWrite(stamps[i]);
+            }
+        }
+    }
+
+    private static Set<Matching> added(Set<Matching> cachedMatchings, Set<Matching> newMatchings) {
+        Set<Matching> updated = new HashSet<>(cachedMatchings);
+        for (Matching matching : newMatchings) {
+            switch (matching.type()) {
+                case Normal -> updated.add(matching);
+                case Group -> {
+                    GroupMatching newGroupMatching = (GroupMatching) matching;
+                    GroupMatching cachedGroupMatching = findGroupMatching(updated, newGroupMatching);
+                    if (cachedGroupMatching != null) {
+                        updated.remove(cachedGroupMatching);
+                        updated.add(copyOf(cachedGroupMatching, newGroupMatching.receiverIds, Set.of()));
+                    } else {
+                        updated.add(matching);
+                    }
+                }
+            }
+        }
+        return updated;
+    }
+
+    private static Set<Matching> removed(Set<Matching> cachedMatchings, Set<Matching> obsoleteMatchings) {
+        Set<Matching> updated = new HashSet<>(cachedMatchings);
+        for (Matching matching : obsoleteMatchings) {
+            switch (matching.type()) {
+                case Normal -> updated.remove(matching);
+                case Group -> {
+                    GroupMatching obsoleteGroupMatching = (GroupMatching) matching;
+                    GroupMatching cachedGroupMatching = findGroupMatching(updated, obsoleteGroupMatching);
+                    if (cachedGroupMatching != null) {
+                        updated.remove(cachedGroupMatching);
+                        GroupMatching remaining =
+                            copyOf(cachedGroupMatching, Set.of(), obsoleteGroupMatching.receiverIds);
+                        if (!remaining.receiverIds.isEmpty()) {
+                            updated.add(remaining);
+                        }
+                    }
+                }
+            }
+        }
+        return updated;
+    }
+
+    private static GroupMatching findGroupMatching(Set<Matching> matchings, GroupMatching groupMatching) {
+        for (Matching m : matchings) {
+            if (m.type() == Matching.Type.Group
+                && m.originalTopicFilter().equals(groupMatching.originalTopicFilter())) {
+                return (GroupMatching) m;
+            }
         }
+        return null;
+    }
+
+    private static int stripe(String topic) {
+        int firstDelimiter = topic.indexOf(DELIMITER_CHAR);
+        String firstLevel = firstDelimiter < 0 ? topic : topic.substring(0, firstDelimiter);
+        return (firstLevel.hashCode() & 0x7FFFFFFF) % STRIPES;
+    }
+
+    private static int[] stripes(String topicFilter) {
+        int firstDelimiter = topicFilter.indexOf(DELIMITER_CHAR);
+        String firstLevel = firstDelimiter < 0 ? topicFilter : topicFilter.substring(0, firstDelimiter);
+        if (firstLevel.equals(SINGLE_WILDCARD) || firstLevel.equals(MULTI_WILDCARD)) {
+            // wildcard at first level may match topics in any stripe
+            return IntStream.range(0, STRIPES).toArray();
+        }
+        return new int[] {stripe(firstLevel)};
+    }
+
+    long expiryNanos() {
+        return expiryNanos;
+    }
+
+    void onPooled(RouteCacheKey key, int deltaBytes) {
+        pooledKeys.add(key);
+        pooledBytes.addAndGet(deltaBytes);
+    }
+
+    void onUnpooled(RouteCacheKey key, int bytes) {
+        pooledKeys.remove(key);
+        pooledBytes.addAndGet(-bytes);
+    }
+
+    void onPoolEviction(RouteCacheKey key, int bytes) {
+        onUnpooled(key, bytes);
+        // unindex the key unless it's loaded again, the loading will index it after put
+        routesCache.asMap().compute(key, (k, cachedMatchings) -> {
+            if (cachedMatchings == null) {
+                index.remove(k.topic, k);
+            }
+            return cachedMatchings;
+        });
+    }
+
+    long pooledBytes() {
+        return pooledBytes.get();
+    }
+
+    void resizeFloor(long floorBytes) {
+        routesCache.policy().eviction().ifPresent(eviction -> eviction.setMaximum(floorBytes));
+    }
+
+    private double hitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 1.0 : (double) hitCount / total;
+    }
+
+    long bytes() {
+        return routesCache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L)
+            + pooledBytes.get();
     }
 
     @Override
     public void destroy() {
-        ITenantMeter.stopGauging(tenantId, TenantMetric.MqttRouteCacheSize);
+        destroyed = true;
+        if (pool != null) {
+            // wait for the ongoing maintenance which may demote routes to the pool
+            routesCache.cleanUp();
+            for (RouteCacheKey key : pooledKeys) {
+                pool.invalidate(this, key);
+            }
+            pool.unregister(this);
+        }
+        ITenantMeter.stopGauging(tenantId, TenantMetric.MqttRouteCacheSize, tags);
+        ITenantMeter.stopGauging(tenantId, TenantMetric.MqttRouteCacheHitRatioGauge, tags);
+        if (pool != null) {
+            ITenantMeter.stopGauging(tenantId, TenantMetric.MqttRouteCacheBytesGauge, tags);
+        }
     }
 }
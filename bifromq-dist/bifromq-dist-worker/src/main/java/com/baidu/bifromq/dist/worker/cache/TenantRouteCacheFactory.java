@@ -14,6 +14,7 @@
 package com.baidu.bifromq.dist.worker.cache;
 
 import com.baidu.bifromq.basekv.store.api.IKVCloseableReader;
+import com.github.benmanes.caffeine.cache.Ticker;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import java.time.Duration;
@@ -21,12 +22,26 @@ import java.util.function.Supplier;
 
 class TenantRouteCacheFactory implements ITenantRouteCacheFactory {
     private final ThreadLocalKVReader threadLocalReader;
+    private final RouteIndex routeIndex;
+    private final RouteCachePool routeCachePool;
+    private final String[] tags;
     private final Timer internalMatchTimer;
     private final Duration expiry;
 
     public TenantRouteCacheFactory(Supplier<IKVCloseableReader> readerSupplier, Duration expiry, String... tags) {
+        this(readerSupplier, null, null, expiry, tags);
+    }
+
+    public TenantRouteCacheFactory(Supplier<IKVCloseableReader> readerSupplier,
+                                   RouteIndex routeIndex,
+                                   RouteCachePool routeCachePool,
+                                   Duration expiry,
+                                   String... tags) {
         this.threadLocalReader = new ThreadLocalKVReader(readerSupplier);
+        this.routeIndex = routeIndex;
+        this.routeCachePool = routeCachePool;
         this.expiry = expiry;
+        this.tags = tags;
         internalMatchTimer = Timer.builder("dist.match.internal")
             .tags(tags)
             .register(Metrics.globalRegistry);
@@ -40,8 +55,10 @@ class TenantRouteCacheFactory implements ITenantRouteCacheFactory {
 
     @Override
     public ITenantRouteCache create(String tenantId) {
-        return new TenantRouteCache(tenantId,
-            new TenantRouteMatcher(tenantId, threadLocalReader, internalMatchTimer), expiry);
+        ITenantRouteMatcher matcher = routeIndex != null
+            ? new InMemTenantRouteMatcher(tenantId, routeIndex, internalMatchTimer)
+            : new TenantRouteMatcher(tenantId, threadLocalReader, internalMatchTimer);
+        return new TenantRouteCache(tenantId, matcher, expiry, routeCachePool, Ticker.systemTicker(), tags);
     }
 
     @Override
@@ -25,11 +25,12 @@ import com.baidu.bifromq.dist.entity.Matching;
 import com.baidu.bifromq.dist.trie.TopicFilterIterator;
 import com.baidu.bifromq.dist.trie.TopicTrieNode;
 import com.baidu.bifromq.util.TopicUtil;
-import com.google.common.collect.Sets;
 import com.google.protobuf.ByteString;
 import io.micrometer.core.instrument.Timer;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Supplier;
 
@@ -46,18 +47,24 @@ class TenantRouteMatcher implements ITenantRouteMatcher {
 
     @Override
     public Set<Matching> match(String topic, Boundary matchRecordBoundary) {
+        return matchAll(Set.of(topic), matchRecordBoundary).get(topic);
+    }
+
+    @Override
+    public Map<String, Set<Matching>> matchAll(Set<String> topics, Boundary matchRecordBoundary) {
         final Timer.Sample sample = Timer.start();
         IKVReader rangeReader = kvReaderSupplier.get();
         rangeReader.refresh();
 
-        TopicTrieNode<String> topicTrie = TopicTrieNode.<String>builder(false)
-            .addTopic(TopicUtil.parse(topic, false), topic)
-            .build();
-        TopicFilterIterator<String> expansionSetItr = new TopicFilterIterator<>(topicTrie);
+        TopicTrieNode.Builder<String> topicTrieBuilder = TopicTrieNode.builder(false);
+        topics.forEach(topic -> topicTrieBuilder.addTopic(TopicUtil.parse(topic, false), topic));
+        TopicFilterIterator<String> expansionSetItr = new TopicFilterIterator<>(topicTrieBuilder.build());
 
-        Set<Matching> matchedRoutes = new HashSet<>();
+        Map<String, Set<Matching>> matchedRoutes = new HashMap<>();
+        topics.forEach(topic -> matchedRoutes.put(topic, new HashSet<>()));
 
-        Set<String> matchedTopicFilters = Sets.newHashSet();
+        // escapedTopicFilter -> the topics it matches
+        Map<String, Set<String>> matchedTopicFilters = new HashMap<>();
         int probe = 0;
         IKVIterator itr = rangeReader.iterator();
         // track seek
@@ -66,14 +73,21 @@ class TenantRouteMatcher implements ITenantRouteMatcher {
             // track itr.key()
             Matching matching = parseMatchRecord(itr.key(), itr.value());
             // key: topic
-            if (!matchedTopicFilters.contains(matching.escapedTopicFilter)) {
+            Set<String> matchedTopics = matchedTopicFilters.get(matching.escapedTopicFilter);
+            if (matchedTopics == null) {
                 List<String> seekTopicFilter = TopicUtil.parse(matching.escapedTopicFilter, true);
                 expansionSetItr.seek(seekTopicFilter);
                 if (expansionSetItr.isValid()) {
                     List<String> topicFilterToMatch = expansionSetItr.key();
                     if (topicFilterToMatch.equals(seekTopicFilter)) {
-                        matchedTopicFilters.add(matching.escapedTopicFilter);
-                        matchedRoutes.add(matching);
+                        matchedTopics = new HashSet<>();
+                        for (Set<String> topicSet : expansionSetItr.value().values()) {
+                            matchedTopics.addAll(topicSet);
+                        }
+                        matchedTopicFilters.put(matching.escapedTopicFilter, matchedTopics);
+                        for (String topic : matchedTopics) {
+                            matchedRoutes.get(topic).add(matching);
+                        }
                         itr.next();
                         probe = 0;
                     } else {
@@ -99,7 +113,9 @@ class TenantRouteMatcher implements ITenantRouteMatcher {
                 }
             } else {
                 itr.next();
-                matchedRoutes.add(matching);
+                for (String topic : matchedTopics) {
+                    matchedRoutes.get(topic).add(matching);
+                }
             }
         }
         sample.stop(timer);
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker;
+
+import static com.baidu.bifromq.dist.entity.EntityUtil.parseMatchRecord;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toNormalMatchRecordKey;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toQInboxId;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import com.baidu.bifromq.deliverer.DeliveryCall;
+import com.baidu.bifromq.deliverer.IMessageDeliverer;
+import com.baidu.bifromq.dist.client.IDistClient;
+import com.baidu.bifromq.dist.entity.NormalMatching;
+import com.baidu.bifromq.plugin.eventcollector.IEventCollector;
+import com.baidu.bifromq.plugin.subbroker.DeliveryResult;
+import com.baidu.bifromq.type.TopicMessagePack;
+import com.google.protobuf.ByteString;
+import io.micrometer.core.instrument.Metrics;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import lombok.SneakyThrows;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class DeliverExecutorTest {
+    private IMessageDeliverer deliverer;
+    private FanOutPlanner planner;
+    private DeliverExecutor[] executors;
+    private final Map<String, List<String>> delivered = new ConcurrentHashMap<>();
+    private final Set<String> deliverThreads = ConcurrentHashMap.newKeySet();
+    private CountDownLatch blockLatch;
+
+    @BeforeMethod
+    public void setup() {
+        delivered.clear();
+        deliverThreads.clear();
+        blockLatch = new CountDownLatch(1);
+        deliverer = mock(IMessageDeliverer.class);
+        when(deliverer.schedule(any())).thenAnswer(invocation -> {
+            DeliveryCall call = invocation.getArgument(0);
+            String topic = call.msgPackWrapper.messagePack.getTopic();
+            if (topic.equals("block")) {
+                blockLatch.await();
+            }
+            deliverThreads.add(Thread.currentThread().getName());
+            delivered.computeIfAbsent(call.matchInfo.getReceiverId(), k -> new CopyOnWriteArrayList<>()).add(topic);
+            return CompletableFuture.completedFuture(DeliveryResult.Code.OK);
+        });
+        planner = new FanOutPlanner();
+        executors = new DeliverExecutor[2];
+        for (int i = 0; i < executors.length; i++) {
+            executors[i] = new DeliverExecutor(i, executors, planner, deliverer, mock(IEventCollector.class),
+                mock(IDistClient.class));
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        for (DeliverExecutor executor : executors) {
+            executor.shutdown();
+        }
+        planner.close();
+    }
+
+    @Test
+    public void sendInOrder() {
+        NormalMatching route = route("inbox1");
+        for (int i = 0; i < 1000; i++) {
+            executors[0].submit(route, msgPack(Integer.toString(i)), false);
+        }
+        await().until(() -> delivered.getOrDefault(route.matchInfo.getReceiverId(), List.of()).size() == 1000);
+        List<String> topics = delivered.get(route.matchInfo.getReceiverId());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(topics.get(i), Integer.toString(i));
+        }
+    }
+
+    @Test
+    public void inlineAfterQueued() {
+        NormalMatching route = route("inbox1");
+        // block the executor with the queued message packs of the route
+        executors[0].submit(route, msgPack("block"), false);
+        executors[0].submit(route, msgPack("queued"), false);
+        // the inline one is queued behind instead of overtaking
+        executors[0].submit(route, msgPack("inline"), true);
+        assertTrue(delivered.getOrDefault(route.matchInfo.getReceiverId(), List.of()).isEmpty());
+        blockLatch.countDown();
+        await().until(() -> delivered.getOrDefault(route.matchInfo.getReceiverId(), List.of())
+            .equals(List.of("block", "queued", "inline")));
+
+        // sent inline right away if nothing is queued for the route
+        NormalMatching idleRoute = route("inbox2");
+        executors[0].submit(idleRoute, msgPack("inline"), true);
+        assertEquals(delivered.get(idleRoute.matchInfo.getReceiverId()), List.of("inline"));
+    }
+
+    @SneakyThrows
+    @Test
+    public void stealRouteQueue() {
+        NormalMatching hotRoute = route("inbox1");
+        NormalMatching route = route("inbox2");
+        // block the home executor by the hot route
+        executors[0].submit(hotRoute, msgPack("block"), false);
+        executors[0].submit(hotRoute, msgPack("hot"), false);
+        for (int i = 0; i < 10; i++) {
+            executors[0].submit(route, msgPack(Integer.toString(i)), false);
+        }
+        // the queued route is stolen by the idle executor
+        await().until(() -> delivered.getOrDefault(route.matchInfo.getReceiverId(), List.of()).size() == 10);
+        assertTrue(deliverThreads.stream().anyMatch(name -> name.startsWith("deliver-executor-1")));
+        List<String> topics = delivered.get(route.matchInfo.getReceiverId());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(topics.get(i), Integer.toString(i));
+        }
+        blockLatch.countDown();
+        await().until(() -> delivered.getOrDefault(hotRoute.matchInfo.getReceiverId(), List.of())
+            .equals(List.of("block", "hot")));
+    }
+
+    @Test
+    public void metersScopedByRange() {
+        DeliverExecutor[] range1Executors = new DeliverExecutor[1];
+        range1Executors[0] = new DeliverExecutor(0, range1Executors, planner, deliverer,
+            mock(IEventCollector.class), mock(IDistClient.class), "rangeId", "range1");
+        DeliverExecutor[] range2Executors = new DeliverExecutor[1];
+        range2Executors[0] = new DeliverExecutor(0, range2Executors, planner, deliverer,
+            mock(IEventCollector.class), mock(IDistClient.class), "rangeId", "range2");
+        range1Executors[0].shutdown();
+        // the meters of the other range are still registered
+        assertNull(Metrics.globalRegistry.find("deliver.executor.route.queued").tag("rangeId", "range1").gauge());
+        assertNotNull(Metrics.globalRegistry.find("deliver.executor.route.queued").tag("rangeId", "range2").gauge());
+        assertNotNull(
+            Metrics.globalRegistry.find("deliver.executor.route.stolen").tag("rangeId", "range2").counter());
+        range2Executors[0].shutdown();
+    }
+
+    private NormalMatching route(String inboxId) {
+        return (NormalMatching) parseMatchRecord(
+            toNormalMatchRecordKey("tenantA", "a/b", toQInboxId(1, inboxId, "deliverer1")), ByteString.EMPTY);
+    }
+
+    private TopicMessagePack msgPack(String topic) {
+        return TopicMessagePack.newBuilder().setTopic(topic).build();
+    }
+}
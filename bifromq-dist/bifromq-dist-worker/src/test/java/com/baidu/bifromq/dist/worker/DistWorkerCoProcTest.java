@@ -48,6 +48,8 @@ import com.baidu.bifromq.dist.rpc.proto.TenantOption;
 import com.baidu.bifromq.dist.worker.cache.ISubscriptionCache;
 import com.baidu.bifromq.type.TopicMessagePack;
 import com.google.protobuf.ByteString;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -165,27 +167,33 @@ public class DistWorkerCoProcTest {
                     .addDistPack(DistPack.newBuilder()
                         .setTenantId("tenant1")
                         .addMsgPack(TopicMessagePack.newBuilder().setTopic("topic1").build())
+                        .addMsgPack(TopicMessagePack.newBuilder().setTopic("topic2").build())
                         .build())
                     .build())
                 .build())
             .build();
 
         // Simulate routes in cache
-        CompletableFuture<Set<Matching>> futureRoutes =
-            CompletableFuture.completedFuture(
-                Set.of(createMatching("tenant1", "topic1", EntityUtil.toQInboxId(1, "inbox1", "deliverer1"))));
-        when(routeCache.get(eq("tenant1"), eq("topic1"))).thenReturn(futureRoutes);
+        CompletableFuture<Map<String, Set<Matching>>> futureRoutes =
+            CompletableFuture.completedFuture(Map.of(
+                "topic1",
+                Set.of(createMatching("tenant1", "topic1", EntityUtil.toQInboxId(1, "inbox1", "deliverer1"))),
+                "topic2", Collections.emptySet()));
+        when(routeCache.get(eq("tenant1"), eq(Set.of("topic1", "topic2")))).thenReturn(futureRoutes);
 
         // Simulate query
         CompletableFuture<ROCoProcOutput> resultFuture = distWorkerCoProc.query(roCoProcInput, reader);
         ROCoProcOutput result = resultFuture.join();
 
-        // Verify the submission to executor group
-        verify(deliverExecutorGroup, times(1)).submit(eq("tenant1"), anySet(), any(TopicMessagePack.class));
+        // Verify topics are matched in one call and submitted to executor group
+        verify(routeCache, times(1)).get(eq("tenant1"), anySet());
+        verify(deliverExecutorGroup, times(2)).submit(eq("tenant1"), anySet(), any(TopicMessagePack.class));
 
         // Check the result output
         BatchDistReply reply = result.getDistService().getBatchDist();
         assertEquals(789, reply.getReqId());
+        assertEquals(reply.getResultMap().get("tenant1").getFanoutMap().get("topic1"), 1);
+        assertEquals(reply.getResultMap().get("tenant1").getFanoutMap().get("topic2"), 0);
     }
 
     @Test
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker;
+
+import static org.testng.Assert.assertEquals;
+
+import com.baidu.bifromq.sysprops.props.DistInlineFanOutThreshold;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class FanOutPlannerTest extends MeterTest {
+    private FanOutPlanner planner;
+
+    @BeforeMethod
+    public void setup() {
+        super.setup();
+        planner = new FanOutPlanner("rangeId", "test");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        planner.close();
+        super.tearDown();
+    }
+
+    @Test
+    public void fallbackToThreshold() {
+        int threshold = DistInlineFanOutThreshold.INSTANCE.get();
+        assertEquals(planner.plan(threshold), 0);
+        assertEquals(planner.plan(threshold + 1), threshold + 1);
+        assertEquals(planCount("async"), 1.0);
+        assertEquals(planCount("inline"), 1.0);
+    }
+
+    @Test
+    public void planByMeasurement() {
+        planner.observeQueueing(1000);
+        planner.observeSend(10, 1000);
+        // 10 routes could be sent inline before queued sends start
+        assertEquals(planner.plan(5), 5);
+        assertEquals(planner.plan(20), 10);
+        assertEquals(planCount("inline"), 1.0);
+        assertEquals(planCount("split"), 1.0);
+
+        planner.observeSend(1, 100000);
+        assertEquals(planner.plan(20), 0);
+        assertEquals(planCount("async"), 1.0);
+    }
+
+    private double planCount(String plan) {
+        Counter counter = Metrics.globalRegistry.find("dist.fanout.plan").tag("rangeId", "test").tag("plan", plan)
+            .counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
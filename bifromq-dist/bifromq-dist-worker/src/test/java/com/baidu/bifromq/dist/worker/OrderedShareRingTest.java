@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker;
+
+import static com.baidu.bifromq.dist.entity.EntityUtil.parseMatchRecord;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toGroupMatchRecordKey;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toQInboxId;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import com.baidu.bifromq.dist.entity.GroupMatching;
+import com.baidu.bifromq.dist.entity.NormalMatching;
+import com.baidu.bifromq.dist.rpc.proto.GroupMatchRecord;
+import com.baidu.bifromq.type.ClientInfo;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.testng.annotations.Test;
+
+public class OrderedShareRingTest {
+    @Test
+    public void emptyGroup() {
+        OrderedShareRing ring = new OrderedShareRing(groupMatching(0, 0));
+        assertNull(ring.get(sender(1)));
+    }
+
+    @Test
+    public void stableAssignment() {
+        GroupMatching groupMatching = groupMatching(0, 10);
+        OrderedShareRing ring = new OrderedShareRing(groupMatching);
+        Set<String> assignedInboxes = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            NormalMatching receiver = ring.get(sender(i));
+            assertTrue(groupMatching.receiverIds.contains(receiver.scopedInboxId));
+            assertEquals(ring.get(sender(i)), receiver);
+            assertEquals(new OrderedShareRing(groupMatching(0, 10)).get(sender(i)), receiver);
+            assignedInboxes.add(receiver.scopedInboxId);
+        }
+        assertEquals(assignedInboxes, groupMatching.receiverIds);
+    }
+
+    @Test
+    public void minimalReassignment() {
+        OrderedShareRing ring = new OrderedShareRing(groupMatching(0, 10));
+        // inbox0 leaves the group
+        OrderedShareRing newRing = new OrderedShareRing(groupMatching(1, 10));
+        for (int i = 0; i < 1000; i++) {
+            NormalMatching receiver = ring.get(sender(i));
+            NormalMatching newReceiver = newRing.get(sender(i));
+            if (receiver.scopedInboxId.equals(qInboxId(0))) {
+                assertNotEquals(newReceiver.scopedInboxId, qInboxId(0));
+            } else {
+                assertEquals(newReceiver.scopedInboxId, receiver.scopedInboxId);
+            }
+        }
+    }
+
+    @Test
+    public void isBuiltFrom() {
+        GroupMatching groupMatching = groupMatching(0, 3);
+        OrderedShareRing ring = new OrderedShareRing(groupMatching);
+        assertTrue(ring.isBuiltFrom(groupMatching));
+        assertTrue(ring.isBuiltFrom(groupMatching(0, 3)));
+        assertFalse(ring.isBuiltFrom(groupMatching(0, 4)));
+    }
+
+    private GroupMatching groupMatching(int from, int to) {
+        List<String> receiverIds = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            receiverIds.add(qInboxId(i));
+        }
+        return (GroupMatching) parseMatchRecord(toGroupMatchRecordKey("tenantA", "$oshare/group/a"),
+            GroupMatchRecord.newBuilder().addAllQReceiverId(receiverIds).build().toByteString());
+    }
+
+    private String qInboxId(int i) {
+        return toQInboxId(1, "inbox" + i, "deliverer1");
+    }
+
+    private ClientInfo sender(int i) {
+        return ClientInfo.newBuilder().setTenantId("tenantA").putMetadata("clientId", "client" + i).build();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker;
+
+import static com.baidu.bifromq.dist.entity.EntityUtil.parseMatchRecord;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toGroupMatchRecordKey;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toQInboxId;
+import static com.google.common.hash.Hashing.murmur3_128;
+
+import com.baidu.bifromq.dist.entity.GroupMatching;
+import com.baidu.bifromq.dist.entity.NormalMatching;
+import com.baidu.bifromq.dist.rpc.proto.GroupMatchRecord;
+import com.baidu.bifromq.type.ClientInfo;
+import com.google.common.hash.HashFunction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compare the cost of assigning a new sender to a member of ordered shared subscription group: building a rendezvous
+ * hash on every assignment versus looking up the prebuilt ring.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class OrderedShareRoutingBenchmark {
+    private static final int SENDER_COUNT = 10000;
+    private static final HashFunction HASHER = murmur3_128();
+
+    @Param({"10", "200"})
+    private int groupSize;
+
+    private GroupMatching groupMatching;
+    private OrderedShareRing ring;
+    private ClientInfo[] senders;
+
+    @Setup
+    public void setup() {
+        GroupMatchRecord.Builder recordBuilder = GroupMatchRecord.newBuilder();
+        for (int i = 0; i < groupSize; i++) {
+            recordBuilder.addQReceiverId(toQInboxId(1, "inbox" + i, "deliverer"));
+        }
+        groupMatching = (GroupMatching) parseMatchRecord(toGroupMatchRecordKey("tenant", "$oshare/group/a/b"),
+            recordBuilder.build().toByteString());
+        ring = new OrderedShareRing(groupMatching);
+        senders = new ClientInfo[SENDER_COUNT];
+        for (int i = 0; i < SENDER_COUNT; i++) {
+            senders[i] = ClientInfo.newBuilder().setTenantId("tenant").putMetadata("clientId", "client" + i).build();
+        }
+    }
+
+    @Benchmark
+    public NormalMatching rendezvousHash() {
+        // the highest random weight among all members, as assigned by the replaced RendezvousHash
+        ClientInfo sender = senders[ThreadLocalRandom.current().nextInt(SENDER_COUNT)];
+        long maxWeight = Long.MIN_VALUE;
+        NormalMatching assigned = null;
+        for (NormalMatching receiver : groupMatching.receiverList) {
+            long weight = HASHER.newHasher()
+                .putInt(sender.hashCode())
+                .putBytes(receiver.scopedInboxId.getBytes())
+                .hash()
+                .asLong();
+            if (weight > maxWeight) {
+                assigned = receiver;
+                maxWeight = weight;
+            }
+        }
+        return assigned;
+    }
+
+    @Benchmark
+    public NormalMatching orderedShareRing() {
+        return ring.get(senders[ThreadLocalRandom.current().nextInt(SENDER_COUNT)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(OrderedShareRoutingBenchmark.class.getSimpleName())
+            .build();
+        new Runner(opt).run();
+    }
+}
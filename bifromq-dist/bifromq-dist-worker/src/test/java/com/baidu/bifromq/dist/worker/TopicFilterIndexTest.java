@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TopicFilterIndexTest {
+    private TopicFilterIndex<String> topicFilterIndex;
+
+    @BeforeMethod
+    public void setUp() {
+        topicFilterIndex = new TopicFilterIndex<>();
+    }
+
+    @Test
+    public void testMatch() {
+        add("#", "+", "+/#", "+/+", "/+", "/#", "a", "a/", "a/+", "a/#", "a/b/c", "$a/#", "$a/+").join();
+        assertMatch(topicFilterIndex.match("/"), "#", "+/#", "+/+", "/+", "/#");
+        assertMatch(topicFilterIndex.match("/a"), "#", "+/#", "+/+", "/+", "/#");
+        assertMatch(topicFilterIndex.match("a"), "#", "+", "+/#", "a", "a/#");
+        assertMatch(topicFilterIndex.match("a/"), "#", "+/#", "+/+", "a/", "a/+", "a/#");
+        assertMatch(topicFilterIndex.match("a/b"), "#", "+/#", "+/+", "a/+", "a/#");
+        assertMatch(topicFilterIndex.match("a/b/c"), "#", "+/#", "a/#", "a/b/c");
+        assertMatch(topicFilterIndex.match("b/c/d"), "#", "+/#");
+
+        assertMatch(topicFilterIndex.match("$a"), "$a/#");
+        assertMatch(topicFilterIndex.match("$a/"), "$a/#", "$a/+");
+        assertMatch(topicFilterIndex.match("$a/b/c"), "$a/#");
+        assertMatch(topicFilterIndex.match("$b"));
+    }
+
+    @Test
+    public void testRemove() {
+        add("#", "+", "a", "a/#", "a/+").join();
+        topicFilterIndex.remove("#", "#");
+        assertMatch(topicFilterIndex.match("a"), "+", "a", "a/#");
+        topicFilterIndex.remove("a", "a");
+        assertMatch(topicFilterIndex.match("a"), "+", "a/#");
+        topicFilterIndex.remove("a/#", "a/#");
+        assertMatch(topicFilterIndex.match("a"), "+");
+        assertMatch(topicFilterIndex.match("a/b"), "a/+");
+        topicFilterIndex.remove("a/+", "a/+");
+        assertMatch(topicFilterIndex.match("a/b"));
+        topicFilterIndex.remove("+", "+");
+        assertMatch(topicFilterIndex.match("a"));
+    }
+
+    @Test
+    public void testMultipleValues() {
+        topicFilterIndex.add("a/+", "v1");
+        topicFilterIndex.add("a/+", "v2");
+        topicFilterIndex.add("a/b", "v3");
+        assertMatch(topicFilterIndex.match("a/b"), "v1", "v2", "v3");
+        topicFilterIndex.remove("a/+", "v1");
+        assertMatch(topicFilterIndex.match("a/b"), "v2", "v3");
+    }
+
+    private CompletableFuture<Void> add(String... topicFilters) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (String topicFilter : topicFilters) {
+            futures.add(CompletableFuture.runAsync(() -> topicFilterIndex.add(topicFilter, topicFilter)));
+        }
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+    }
+
+    private void assertMatch(List<String> matches, String... expected) {
+        assertEquals(new HashSet<>(matches), Set.of(expected));
+    }
+}
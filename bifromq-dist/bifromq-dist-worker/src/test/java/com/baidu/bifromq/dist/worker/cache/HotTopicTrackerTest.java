@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import org.testng.annotations.Test;
+
+public class HotTopicTrackerTest {
+    @Test
+    public void sampleAccesses() {
+        HotTopicTracker hotTopics = new HotTopicTracker(100);
+        for (int i = 0; i < 50; i++) {
+            hotTopics.record("tenantA", "cold" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            hotTopics.record("tenantA", "hot");
+        }
+        List<HotTopicTracker.TenantTopic> hottest = hotTopics.hottest(tenantId -> true, 100);
+        assertTrue(hottest.contains(new HotTopicTracker.TenantTopic("tenantA", "hot")));
+        // most of the topics accessed once are not sampled
+        assertTrue(hottest.size() < 25);
+    }
+
+    @Test
+    public void hottestOfTenant() {
+        HotTopicTracker hotTopics = new HotTopicTracker(100, 1);
+        hotTopics.record("tenantA", "topicA");
+        hotTopics.record("tenantB", "topicB");
+        assertEquals(hotTopics.hottest("tenantB"::equals, 10),
+            List.of(new HotTopicTracker.TenantTopic("tenantB", "topicB")));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker.cache;
+
+import static com.baidu.bifromq.dist.entity.EntityUtil.parseMatchRecord;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toGroupMatchRecordKey;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toNormalMatchRecordKey;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toQInboxId;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import com.baidu.bifromq.dist.entity.Matching;
+import com.baidu.bifromq.dist.rpc.proto.GroupMatchRecord;
+import com.baidu.bifromq.dist.worker.MeterTest;
+import com.baidu.bifromq.metrics.TenantMetric;
+import com.google.protobuf.ByteString;
+import java.util.Map;
+import java.util.Set;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class RouteBloomFilterTest extends MeterTest {
+    private final String tenantId = "tenantA";
+    private RouteBloomFilter routeFilter;
+
+    @BeforeMethod
+    public void setup() {
+        super.setup();
+        routeFilter = new RouteBloomFilter("id", "range1");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        routeFilter.close();
+        super.tearDown();
+    }
+
+    @Test
+    public void loadAndReset() {
+        routeFilter.load(normalKey("a/b/+/d"), ByteString.EMPTY);
+        routeFilter.load(normalKey("x/y"), ByteString.EMPTY);
+        assertFalse(routeFilter.mightHaveRoutes(tenantId, "a/b/c/d"));
+
+        routeFilter.reset();
+        assertTrue(routeFilter.mightHaveRoutes(tenantId, "a/b/c/d"));
+        assertTrue(routeFilter.mightHaveRoutes(tenantId, "x/y"));
+        assertTrue(routeFilter.mightHaveRoutes(tenantId, "x/y/z"));
+        assertFalse(routeFilter.mightHaveRoutes(tenantId, "a/c/d"));
+        assertFalse(routeFilter.mightHaveRoutes(tenantId, "x"));
+        assertFalse(routeFilter.mightHaveRoutes("tenantB", "a/b/c/d"));
+        assertGauge(tenantId, TenantMetric.MqttRouteFilterSizeGauge);
+        assertGauge(tenantId, TenantMetric.MqttRouteFilterFPPGauge);
+
+        routeFilter.reset();
+        assertFalse(routeFilter.mightHaveRoutes(tenantId, "a/b/c/d"));
+        assertNoGauge(tenantId, TenantMetric.MqttRouteFilterSizeGauge);
+    }
+
+    @Test
+    public void addAndRemoveNormalMatch() {
+        Matching matching = parseMatchRecord(normalKey("a/#"), ByteString.EMPTY);
+        routeFilter.addAllMatch(tenantId, Map.of("a/#", Set.of(matching)));
+        assertTrue(routeFilter.mightHaveRoutes(tenantId, "a"));
+        assertTrue(routeFilter.mightHaveRoutes(tenantId, "a/b/c"));
+        assertFalse(routeFilter.mightHaveRoutes(tenantId, "b"));
+
+        routeFilter.removeAllMatch(tenantId, Map.of("a/#", Set.of(matching)));
+        assertFalse(routeFilter.mightHaveRoutes(tenantId, "a/b/c"));
+        assertNoGauge(tenantId, TenantMetric.MqttRouteFilterSizeGauge);
+    }
+
+    @Test
+    public void wildcardAtFirstLevel() {
+        Matching matching = parseMatchRecord(normalKey("+/b"), ByteString.EMPTY);
+        routeFilter.addAllMatch(tenantId, Map.of("+/b", Set.of(matching)));
+        assertTrue(routeFilter.mightHaveRoutes(tenantId, "x/y"));
+
+        routeFilter.removeAllMatch(tenantId, Map.of("+/b", Set.of(matching)));
+        assertFalse(routeFilter.mightHaveRoutes(tenantId, "x/y"));
+    }
+
+    @Test
+    public void growNewTenant() {
+        int prefixes = 10000;
+        for (int i = 0; i < prefixes; i++) {
+            String topicFilter = "a" + i + "/#";
+            routeFilter.addAllMatch(tenantId,
+                Map.of(topicFilter, Set.of(parseMatchRecord(normalKey(topicFilter), ByteString.EMPTY))));
+        }
+        for (int i = 0; i < prefixes; i++) {
+            assertTrue(routeFilter.mightHaveRoutes(tenantId, "a" + i + "/b"));
+        }
+        // the filter is resized as routes added, so the false positive rate stays low
+        int falsePositives = 0;
+        for (int i = 0; i < prefixes; i++) {
+            if (routeFilter.mightHaveRoutes(tenantId, "b" + i + "/b")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < prefixes * 0.02, "false positives: " + falsePositives);
+        assertGauge(tenantId, TenantMetric.MqttRouteFilterSizeGauge);
+
+        for (int i = 0; i < prefixes; i++) {
+            String topicFilter = "a" + i + "/#";
+            routeFilter.removeAllMatch(tenantId,
+                Map.of(topicFilter, Set.of(parseMatchRecord(normalKey(topicFilter), ByteString.EMPTY))));
+        }
+        assertFalse(routeFilter.mightHaveRoutes(tenantId, "a0/b"));
+        assertNoGauge(tenantId, TenantMetric.MqttRouteFilterSizeGauge);
+    }
+
+    @Test
+    public void groupMatch() {
+        ByteString groupKey = toGroupMatchRecordKey(tenantId, "$share/group/a/b");
+        routeFilter.addAllMatch(tenantId,
+            Map.of("a/b", Set.of(parseMatchRecord(groupKey, groupRecord("inbox1", "inbox2")))));
+        routeFilter.removeAllMatch(tenantId, Map.of("a/b", Set.of(parseMatchRecord(groupKey, groupRecord("inbox1")))));
+        assertTrue(routeFilter.mightHaveRoutes(tenantId, "a/b"));
+
+        routeFilter.removeAllMatch(tenantId, Map.of("a/b", Set.of(parseMatchRecord(groupKey, groupRecord("inbox2")))));
+        assertFalse(routeFilter.mightHaveRoutes(tenantId, "a/b"));
+    }
+
+    private ByteString normalKey(String topicFilter) {
+        return toNormalMatchRecordKey(tenantId, topicFilter, toQInboxId(1, "inbox1", "deliverer1"));
+    }
+
+    private ByteString groupRecord(String... inboxIds) {
+        GroupMatchRecord.Builder builder = GroupMatchRecord.newBuilder();
+        for (String inboxId : inboxIds) {
+            builder.addQReceiverId(toQInboxId(1, inboxId, "deliverer1"));
+        }
+        return builder.build().toByteString();
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker.cache;
+
+import static com.baidu.bifromq.basekv.utils.BoundaryUtil.FULL_BOUNDARY;
+import static com.baidu.bifromq.dist.entity.EntityUtil.parseMatchRecord;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toNormalMatchRecordKey;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toQInboxId;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import com.baidu.bifromq.basekv.proto.KVRangeId;
+import com.baidu.bifromq.dist.entity.Matching;
+import com.baidu.bifromq.dist.worker.MeterTest;
+import com.baidu.bifromq.metrics.TenantMetric;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.ByteString;
+import io.micrometer.core.instrument.Gauge;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class RouteCachePoolTest extends MeterTest {
+    private final String tenantId = "tenantA";
+    private final Duration expiry = Duration.ofMinutes(1);
+    private ITenantRouteMatcher matcher;
+    private RouteCachePool pool;
+
+    @BeforeMethod
+    public void setup() {
+        super.setup();
+        matcher = mock(ITenantRouteMatcher.class);
+        when(matcher.match(anyString(), any())).thenAnswer(
+            invocation -> Set.of(matching(invocation.getArgument(0), "inbox1")));
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+        super.tearDown();
+    }
+
+    @Test
+    public void demoteBeyondFloor() {
+        pool = new RouteCachePool(Long.MAX_VALUE);
+        TenantRouteCache cache = newCache(tenantId);
+        for (int i = 0; i < 1000; i++) {
+            cache.get("a/" + i, FULL_BOUNDARY);
+        }
+        // all routes are still cached either in the tenant cache or in the pool
+        await().until(() -> cache.pooledBytes() > 0 && allCached(cache, 1000));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(cache.getIfPresent("a/" + i, FULL_BOUNDARY), Set.of(matching("a/" + i, "inbox1")));
+        }
+        assertTrue(gaugeValue(tenantId, TenantMetric.MqttRouteCacheBytesGauge) > cache.pooledBytes());
+        assertTrue(gaugeValue(tenantId, TenantMetric.MqttRouteCacheHitRatioGauge) >= 0.5);
+        cache.destroy();
+    }
+
+    @Test
+    public void updatePooledRoutes() {
+        pool = new RouteCachePool(Long.MAX_VALUE);
+        TenantRouteCache cache = newCache(tenantId);
+        for (int i = 0; i < 1000; i++) {
+            cache.get("a/" + i, FULL_BOUNDARY);
+        }
+        await().until(() -> cache.pooledBytes() > 0 && allCached(cache, 1000));
+        Matching newMatching = matching("a/+", "inbox2");
+        cache.addAllMatch(Map.of("a/+", Set.of(newMatching)));
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(cache.getIfPresent("a/" + i, FULL_BOUNDARY).contains(newMatching));
+        }
+        cache.removeAllMatch(Map.of("a/+", Set.of(newMatching)));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(cache.getIfPresent("a/" + i, FULL_BOUNDARY), Set.of(matching("a/" + i, "inbox1")));
+        }
+        cache.destroy();
+    }
+
+    @Test
+    public void evictAcrossTenants() {
+        pool = new RouteCachePool(64 * 1024, 16 * 1024);
+        TenantRouteCache busyCache = newCache(tenantId);
+        TenantRouteCache idleCache = newCache("tenantB");
+        for (int i = 0; i < 1000; i++) {
+            idleCache.get("b/" + i, FULL_BOUNDARY);
+        }
+        await().until(() -> idleCache.pooledBytes() > 0);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 1000; i++) {
+                busyCache.get("a/" + i, FULL_BOUNDARY);
+            }
+        }
+        // the pool is bounded by its budget
+        await().until(() -> busyCache.pooledBytes() + idleCache.pooledBytes() <= 64 * 1024);
+        busyCache.destroy();
+        idleCache.destroy();
+    }
+
+    @Test
+    public void reserveFloorsInBudget() {
+        long maxBytes = 256 * 1024;
+        pool = new RouteCachePool(maxBytes, 16 * 1024);
+        List<TenantRouteCache> caches = new ArrayList<>();
+        for (int t = 0; t < 100; t++) {
+            TenantRouteCache cache = newCache("tenant" + t);
+            caches.add(cache);
+            for (int i = 0; i < 200; i++) {
+                cache.get("a/" + i, FULL_BOUNDARY);
+            }
+        }
+        // the floors are shrunk to fit in the budget along with the pool
+        assertTrue(pool.tenantFloorBytes() * caches.size() <= maxBytes);
+        await().until(() -> caches.stream().mapToLong(TenantRouteCache::bytes).sum() <= maxBytes);
+        assertTrue(pool.bytes() > 0);
+
+        caches.forEach(TenantRouteCache::destroy);
+        assertEquals(pool.tenantFloorBytes(), 16 * 1024);
+    }
+
+    @Test
+    public void destroyReleasePooledRoutes() {
+        pool = new RouteCachePool(Long.MAX_VALUE);
+        TenantRouteCache cache = newCache(tenantId);
+        for (int i = 0; i < 1000; i++) {
+            cache.get("a/" + i, FULL_BOUNDARY);
+        }
+        await().until(() -> cache.pooledBytes() > 0);
+        cache.destroy();
+        assertEquals(cache.pooledBytes(), 0);
+        assertNull(pool.getIfPresent(cache, new TenantRouteCache.RouteCacheKey("a/0", FULL_BOUNDARY, false)));
+        assertNoGauge(tenantId, TenantMetric.MqttRouteCacheBytesGauge);
+    }
+
+    @Test
+    public void closeRangeReleasePooledRoutes() {
+        pool = new RouteCachePool(Long.MAX_VALUE);
+        ITenantRouteCacheFactory factory = mock(ITenantRouteCacheFactory.class);
+        when(factory.expiry()).thenReturn(expiry);
+        when(factory.create(anyString())).thenAnswer(invocation -> newCache(invocation.getArgument(0)));
+        SubscriptionCache rangeCache =
+            new SubscriptionCache(mock(KVRangeId.class), factory, MoreExecutors.directExecutor(),
+                Ticker.systemTicker());
+        rangeCache.reset(FULL_BOUNDARY);
+        for (int i = 0; i < 1000; i++) {
+            rangeCache.get(tenantId, "a/" + i).join();
+        }
+        await().until(() -> pool.bytes() > 0);
+        rangeCache.close();
+        await().until(() -> pool.bytes() == 0);
+        assertNoGauge(tenantId, TenantMetric.MqttRouteCacheBytesGauge);
+        assertNoGauge(tenantId, TenantMetric.MqttRouteCacheHitRatioGauge);
+    }
+
+    private boolean allCached(TenantRouteCache cache, int count) {
+        for (int i = 0; i < count; i++) {
+            if (cache.getIfPresent("a/" + i, FULL_BOUNDARY) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private TenantRouteCache newCache(String tenantId) {
+        return new TenantRouteCache(tenantId, matcher, expiry, pool, Ticker.systemTicker());
+    }
+
+    private double gaugeValue(String tenantId, TenantMetric metric) {
+        return ((Gauge) getGauge(tenantId, metric).get()).value();
+    }
+
+    private Matching matching(String topicFilter, String inboxId) {
+        return parseMatchRecord(toNormalMatchRecordKey(tenantId, topicFilter, toQInboxId(1, inboxId, "deliverer1")),
+            ByteString.EMPTY);
+    }
+}
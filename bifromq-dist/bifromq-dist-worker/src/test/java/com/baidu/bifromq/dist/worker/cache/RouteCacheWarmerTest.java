@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker.cache;
+
+import static com.baidu.bifromq.dist.entity.EntityUtil.toNormalMatchRecordKey;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toQInboxId;
+import static org.awaitility.Awaitility.await;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import com.google.protobuf.ByteString;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import lombok.SneakyThrows;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class RouteCacheWarmerTest {
+    private final String tenantId = "tenantA";
+    private ExecutorService executor;
+    private Map<String, Set<String>> warmedTopics;
+    private List<Set<String>> warmUpSteps;
+    private BiConsumer<String, Set<String>> warmUpFunc;
+
+    @BeforeMethod
+    public void setup() {
+        executor = Executors.newSingleThreadExecutor();
+        warmedTopics = new ConcurrentHashMap<>();
+        warmUpSteps = new CopyOnWriteArrayList<>();
+        warmUpFunc = (tenantId, topics) -> {
+            warmUpSteps.add(topics);
+            warmedTopics.computeIfAbsent(tenantId, k -> ConcurrentHashMap.newKeySet()).addAll(topics);
+        };
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void warmUpTopicsHavingMostRoutes() {
+        RouteCacheWarmer warmer = new RouteCacheWarmer(null, 2, 1000, executor);
+        load(warmer, "a", "inbox1", "inbox2", "inbox3");
+        load(warmer, "a/+", "inbox1", "inbox2", "inbox3", "inbox4");
+        load(warmer, "b", "inbox1");
+        load(warmer, "c", "inbox1", "inbox2");
+        warmer.warmUp(tenantId -> true, warmUpFunc);
+
+        await().until(() -> warmedTopics.containsKey(tenantId));
+        assertEquals(warmedTopics.get(tenantId), Set.of("a", "c"));
+    }
+
+    @Test
+    public void warmUpHotTopicsFirst() {
+        HotTopicTracker hotTopics = new HotTopicTracker(100, 1);
+        hotTopics.record(tenantId, "hot");
+        hotTopics.record("tenantB", "hot");
+        RouteCacheWarmer warmer = new RouteCacheWarmer(hotTopics, 2, 1000, executor);
+        load(warmer, "a", "inbox1", "inbox2");
+        load(warmer, "b", "inbox1");
+        warmer.warmUp(tenantId::equals, warmUpFunc);
+
+        await().until(() -> warmedTopics.containsKey(tenantId));
+        assertEquals(warmedTopics.get(tenantId), Set.of("hot", "a"));
+        assertFalse(warmedTopics.containsKey("tenantB"));
+    }
+
+    @Test
+    public void warmUpInRate() {
+        RouteCacheWarmer warmer = new RouteCacheWarmer(null, 10, 10, executor);
+        for (int i = 0; i < 3; i++) {
+            load(warmer, "topic" + i, "inbox1");
+        }
+        warmer.warmUp(tenantId -> true, warmUpFunc);
+
+        await().until(() -> warmedTopics.getOrDefault(tenantId, Set.of()).size() == 3);
+        assertEquals(warmUpSteps.size(), 3);
+        warmUpSteps.forEach(topics -> assertEquals(topics.size(), 1));
+    }
+
+    @SneakyThrows
+    @Test
+    public void cancelWarmUp() {
+        RouteCacheWarmer warmer = new RouteCacheWarmer(null, 10, 10, executor);
+        for (int i = 0; i < 10; i++) {
+            load(warmer, "topic" + i, "inbox1");
+        }
+        warmer.warmUp(tenantId -> true, warmUpFunc);
+        await().until(() -> !warmUpSteps.isEmpty());
+        warmer.cancel();
+        int steps = warmUpSteps.size();
+        Thread.sleep(500);
+        assertTrue(warmUpSteps.size() <= steps + 1);
+    }
+
+    private void load(RouteCacheWarmer warmer, String topicFilter, String... inboxIds) {
+        for (String inboxId : inboxIds) {
+            warmer.load(toNormalMatchRecordKey(tenantId, topicFilter, toQInboxId(1, inboxId, "deliverer1")),
+                ByteString.EMPTY);
+        }
+    }
+}
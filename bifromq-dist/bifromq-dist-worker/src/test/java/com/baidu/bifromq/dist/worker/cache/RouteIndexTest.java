@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker.cache;
+
+import static com.baidu.bifromq.basekv.utils.BoundaryUtil.FULL_BOUNDARY;
+import static com.baidu.bifromq.dist.entity.EntityUtil.matchRecordKeyPrefix;
+import static com.baidu.bifromq.dist.entity.EntityUtil.parseMatchRecord;
+import static com.baidu.bifromq.dist.entity.EntityUtil.tenantUpperBound;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toGroupMatchRecordKey;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toNormalMatchRecordKey;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toQInboxId;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import com.baidu.bifromq.basekv.proto.Boundary;
+import com.baidu.bifromq.dist.entity.GroupMatching;
+import com.baidu.bifromq.dist.entity.Matching;
+import com.baidu.bifromq.dist.rpc.proto.GroupMatchRecord;
+import com.google.protobuf.ByteString;
+import java.util.Map;
+import java.util.Set;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class RouteIndexTest {
+    private final String tenantId = "tenantA";
+    private RouteIndex routeIndex;
+
+    @BeforeMethod
+    public void setup() {
+        routeIndex = new RouteIndex();
+    }
+
+    @Test
+    public void loadAndReset() {
+        ByteString normalKey = toNormalMatchRecordKey(tenantId, "a/+", toQInboxId(1, "inbox1", "deliverer1"));
+        ByteString groupKey = toGroupMatchRecordKey(tenantId, "$share/group/a/#");
+        routeIndex.load(normalKey, ByteString.EMPTY);
+        routeIndex.load(groupKey, groupRecord("inbox2", "inbox3"));
+        assertTrue(routeIndex.match(tenantId, "a/b", FULL_BOUNDARY).isEmpty());
+
+        routeIndex.reset();
+        Set<Matching> matchings = routeIndex.match(tenantId, "a/b", FULL_BOUNDARY);
+        assertEquals(matchings.size(), 2);
+        assertTrue(matchings.contains(parseMatchRecord(normalKey, ByteString.EMPTY)));
+        assertTrue(matchings.contains(parseMatchRecord(groupKey, groupRecord("inbox2", "inbox3"))));
+        assertEquals(routeIndex.match(tenantId, "a", FULL_BOUNDARY).size(), 1);
+        assertTrue(routeIndex.match("tenantB", "a/b", FULL_BOUNDARY).isEmpty());
+
+        routeIndex.reset();
+        assertTrue(routeIndex.match(tenantId, "a/b", FULL_BOUNDARY).isEmpty());
+    }
+
+    @Test
+    public void addAndRemoveNormalMatch() {
+        Matching matching = parseMatchRecord(
+            toNormalMatchRecordKey(tenantId, "a/#", toQInboxId(1, "inbox1", "deliverer1")), ByteString.EMPTY);
+        routeIndex.addAllMatch(tenantId, Map.of("a/#", Set.of(matching)));
+        assertEquals(routeIndex.match(tenantId, "a/b/c", FULL_BOUNDARY), Set.of(matching));
+
+        routeIndex.removeAllMatch(tenantId, Map.of("a/#", Set.of(matching)));
+        assertTrue(routeIndex.match(tenantId, "a/b/c", FULL_BOUNDARY).isEmpty());
+    }
+
+    @Test
+    public void addAndRemoveGroupMatch() {
+        ByteString groupKey = toGroupMatchRecordKey(tenantId, "$oshare/group/a");
+        routeIndex.addAllMatch(tenantId, Map.of("a", Set.of(parseMatchRecord(groupKey, groupRecord("inbox1")))));
+        routeIndex.addAllMatch(tenantId, Map.of("a", Set.of(parseMatchRecord(groupKey, groupRecord("inbox2")))));
+        GroupMatching matched = (GroupMatching) routeIndex.match(tenantId, "a", FULL_BOUNDARY).iterator().next();
+        assertEquals(matched.receiverIds, Set.of(qInboxId("inbox1"), qInboxId("inbox2")));
+
+        // matched group matching is a snapshot
+        routeIndex.removeAllMatch(tenantId, Map.of("a", Set.of(parseMatchRecord(groupKey, groupRecord("inbox1")))));
+        assertEquals(matched.receiverIds.size(), 2);
+
+        matched = (GroupMatching) routeIndex.match(tenantId, "a", FULL_BOUNDARY).iterator().next();
+        assertEquals(matched.receiverIds, Set.of(qInboxId("inbox2")));
+
+        routeIndex.removeAllMatch(tenantId, Map.of("a", Set.of(parseMatchRecord(groupKey, groupRecord("inbox2")))));
+        assertTrue(routeIndex.match(tenantId, "a", FULL_BOUNDARY).isEmpty());
+    }
+
+    @Test
+    public void matchWithinBoundary() {
+        ByteString key1 = toNormalMatchRecordKey(tenantId, "a/b", toQInboxId(1, "inbox1", "deliverer1"));
+        ByteString key2 = toNormalMatchRecordKey(tenantId, "a/+", toQInboxId(1, "inbox2", "deliverer1"));
+        routeIndex.load(key1, ByteString.EMPTY);
+        routeIndex.load(key2, ByteString.EMPTY);
+        routeIndex.reset();
+
+        Boundary boundary = Boundary.newBuilder()
+            .setStartKey(matchRecordKeyPrefix(tenantId))
+            .setEndKey(tenantUpperBound(tenantId))
+            .build();
+        assertEquals(routeIndex.match(tenantId, "a/b", boundary).size(), 2);
+        // split at key1
+        Boundary left = boundary.toBuilder().setEndKey(key1).build();
+        Boundary right = boundary.toBuilder().setStartKey(key1).build();
+        assertEquals(routeIndex.match(tenantId, "a/b", left), Set.of(parseMatchRecord(key2, ByteString.EMPTY)));
+        assertEquals(routeIndex.match(tenantId, "a/b", right), Set.of(parseMatchRecord(key1, ByteString.EMPTY)));
+    }
+
+    private String qInboxId(String inboxId) {
+        return toQInboxId(1, inboxId, "deliverer1");
+    }
+
+    private ByteString groupRecord(String... inboxIds) {
+        GroupMatchRecord.Builder builder = GroupMatchRecord.newBuilder();
+        for (String inboxId : inboxIds) {
+            builder.addQReceiverId(qInboxId(inboxId));
+        }
+        return builder.build().toByteString();
+    }
+}
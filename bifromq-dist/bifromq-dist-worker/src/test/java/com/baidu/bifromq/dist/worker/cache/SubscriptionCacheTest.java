@@ -14,12 +14,16 @@
 package com.baidu.bifromq.dist.worker.cache;
 
 import static com.baidu.bifromq.basekv.utils.BoundaryUtil.FULL_BOUNDARY;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toNormalMatchRecordKey;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toQInboxId;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anySet;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
@@ -103,6 +107,84 @@ public class SubscriptionCacheTest {
         verify(tenantRouteCacheMock).get(eq(topic), any(Boundary.class));
     }
 
+    @Test
+    public void skipLookupOfTopicWithoutRoutes() {
+        String tenantId = "tenant1";
+        RouteBloomFilter routeFilter = new RouteBloomFilter();
+        routeFilter.load(toNormalMatchRecordKey(tenantId, "home/+/temperature", toQInboxId(1, "inbox1", "d1")),
+            ByteString.EMPTY);
+        SubscriptionCache cache = new SubscriptionCache(kvRangeIdMock, tenantRouteCacheFactoryMock, null,
+            routeFilter, null, matchExecutor, tickerMock);
+        cache.reset(FULL_BOUNDARY);
+
+        Set<Matching> mockMatchings = new HashSet<>();
+        when(tenantRouteCacheMock.getIfPresent(eq("home/sensor/temperature"), any(Boundary.class)))
+            .thenReturn(mockMatchings);
+        Map<String, Set<Matching>> result =
+            cache.get(tenantId, Set.of("home/sensor/temperature", "office/sensor/temperature")).join();
+        assertEquals(result.get("home/sensor/temperature"), mockMatchings);
+        assertTrue(result.get("office/sensor/temperature").isEmpty());
+        assertTrue(cache.get("tenant2", "home/sensor/temperature").join().isEmpty());
+        verify(tenantRouteCacheMock, never()).getIfPresent(eq("office/sensor/temperature"), any(Boundary.class));
+        verify(tenantRouteCacheFactoryMock, never()).create("tenant2");
+        cache.close();
+    }
+
+    @Test
+    public void warmUpAfterReset() {
+        String tenantId = "tenant1";
+        RouteCacheWarmer warmer = new RouteCacheWarmer(null, 10, 1000, matchExecutor);
+        SubscriptionCache cache = new SubscriptionCache(kvRangeIdMock, tenantRouteCacheFactoryMock, null,
+            null, warmer, matchExecutor, tickerMock);
+        cache.load(toNormalMatchRecordKey(tenantId, "home/sensor/temperature", toQInboxId(1, "inbox1", "d1")),
+            ByteString.EMPTY);
+        cache.load(toNormalMatchRecordKey(tenantId, "home/+/temperature", toQInboxId(1, "inbox1", "d1")),
+            ByteString.EMPTY);
+        cache.reset(FULL_BOUNDARY);
+
+        verify(tenantRouteCacheMock, timeout(5000))
+            .getAll(eq(Set.of("home/sensor/temperature")), any(Boundary.class));
+        cache.close();
+    }
+
+    @Test
+    public void getAllTopics() {
+        String tenantId = "tenant1";
+        String cachedTopic = "home/sensor/temperature";
+        String missedTopic1 = "home/sensor/humidity";
+        String missedTopic2 = "home/sensor/pressure";
+
+        Set<Matching> cachedMatchings = new HashSet<>();
+        Set<Matching> missedMatchings = new HashSet<>();
+        when(tenantRouteCacheMock.getIfPresent(eq(cachedTopic), any(Boundary.class))).thenReturn(cachedMatchings);
+        when(tenantRouteCacheMock.getIfPresent(eq(missedTopic1), any(Boundary.class))).thenReturn(null);
+        when(tenantRouteCacheMock.getIfPresent(eq(missedTopic2), any(Boundary.class))).thenReturn(null);
+        when(tenantRouteCacheMock.getAll(eq(Set.of(missedTopic1, missedTopic2)), any(Boundary.class)))
+            .thenReturn(Map.of(missedTopic1, missedMatchings, missedTopic2, missedMatchings));
+
+        Map<String, Set<Matching>> result = cache.get(tenantId, Set.of(cachedTopic, missedTopic1, missedTopic2)).join();
+        assertEquals(result.size(), 3);
+        assertEquals(result.get(cachedTopic), cachedMatchings);
+        assertEquals(result.get(missedTopic1), missedMatchings);
+        assertEquals(result.get(missedTopic2), missedMatchings);
+        verify(tenantRouteCacheMock, times(1)).getAll(anySet(), any(Boundary.class));
+        verify(tenantRouteCacheMock, never()).get(anyString(), any(Boundary.class));
+    }
+
+    @Test
+    public void getAllTopicsCacheHit() {
+        String tenantId = "tenant1";
+        String topic = "home/sensor/temperature";
+
+        Set<Matching> mockMatchings = new HashSet<>();
+        when(tenantRouteCacheMock.getIfPresent(eq(topic), any(Boundary.class))).thenReturn(mockMatchings);
+
+        CompletableFuture<Map<String, Set<Matching>>> result = cache.get(tenantId, Set.of(topic));
+        assertTrue(result.isDone());
+        assertEquals(result.join().get(topic), mockMatchings);
+        verify(tenantRouteCacheMock, never()).getAll(anySet(), any(Boundary.class));
+    }
+
     @Test
     public void addAllMatch() {
         String tenantId = "tenant1";
@@ -26,6 +26,7 @@ import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 import com.baidu.bifromq.dist.entity.EntityUtil;
@@ -37,11 +38,18 @@ import com.baidu.bifromq.metrics.TenantMetric;
 import com.github.benmanes.caffeine.cache.Ticker;
 import com.google.common.collect.Sets;
 import com.google.protobuf.ByteString;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.SneakyThrows;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -82,6 +90,24 @@ public class TenantRouteCacheTest extends MeterTest {
         assertTrue(cachedMatchings.contains(normalMatching));
     }
 
+    @Test
+    public void getAll() {
+        String cachedTopic = "home/sensor/temperature";
+        String missedTopic = "home/sensor/humidity";
+        Matching normalMatching = mock(Matching.class);
+        Matching normalMatching1 = mock(Matching.class);
+        when(mockMatcher.match(eq(cachedTopic), eq(FULL_BOUNDARY))).thenReturn(Set.of(normalMatching));
+        cache.get(cachedTopic, FULL_BOUNDARY);
+
+        when(mockMatcher.matchAll(eq(Set.of(missedTopic)), eq(FULL_BOUNDARY)))
+            .thenReturn(Map.of(missedTopic, Set.of(normalMatching1)));
+        Map<String, Set<Matching>> matchings = cache.getAll(Set.of(cachedTopic, missedTopic), FULL_BOUNDARY);
+        assertEquals(matchings.get(cachedTopic), Set.of(normalMatching));
+        assertEquals(matchings.get(missedTopic), Set.of(normalMatching1));
+        assertEquals(cache.getIfPresent(missedTopic, FULL_BOUNDARY), Set.of(normalMatching1));
+        verify(mockMatcher, times(1)).matchAll(any(), any());
+    }
+
     @Test
     public void addAllMatch() {
         String topic = "home/sensor/temperature";
@@ -226,6 +252,113 @@ public class TenantRouteCacheTest extends MeterTest {
         assertTrue(cachedMatchings.isEmpty());
     }
 
+    @Test
+    public void cachedMatchingsIsSnapshot() {
+        String topic = "home/sensor/temperature";
+        Matching normalMatching = mock(Matching.class);
+        when(normalMatching.type()).thenReturn(Matching.Type.Normal);
+        when(mockMatcher.match(eq(topic), eq(FULL_BOUNDARY))).thenReturn(Sets.newHashSet(normalMatching));
+        Set<Matching> cachedMatchings = cache.get(topic, FULL_BOUNDARY);
+
+        Matching normalMatching1 = mock(Matching.class);
+        when(normalMatching1.type()).thenReturn(Matching.Type.Normal);
+        cache.addAllMatch(Map.of(topic, Set.of(normalMatching1)));
+        assertEquals(cachedMatchings, Set.of(normalMatching));
+        assertEquals(cache.getIfPresent(topic, FULL_BOUNDARY), Set.of(normalMatching, normalMatching1));
+
+        cache.removeAllMatch(Map.of("home/#", Set.of(normalMatching)));
+        assertEquals(cachedMatchings, Set.of(normalMatching));
+        assertEquals(cache.getIfPresent(topic, FULL_BOUNDARY), Set.of(normalMatching1));
+    }
+
+    @Test
+    public void groupMatchingSnapshot() {
+        String topic = "home/sensor/temperature";
+        ByteString key = EntityUtil.toGroupMatchRecordKey(tenantId, "$oshare/group1/home/#");
+        GroupMatching groupMatching = (GroupMatching) EntityUtil.parseMatchRecord(key, GroupMatchRecord.newBuilder()
+            .addQReceiverId(toQInboxId(1, "inbox1", "deliverer1"))
+            .build().toByteString());
+        when(mockMatcher.match(eq(topic), eq(FULL_BOUNDARY))).thenReturn(Sets.newHashSet(groupMatching));
+        GroupMatching cachedGroupMatching = (GroupMatching) cache.get(topic, FULL_BOUNDARY).iterator().next();
+
+        GroupMatching newGroupMatching = (GroupMatching) EntityUtil.parseMatchRecord(key, GroupMatchRecord.newBuilder()
+            .addQReceiverId(toQInboxId(1, "inbox2", "deliverer1"))
+            .build().toByteString());
+        cache.addAllMatch(Map.of("home/#", Set.of(newGroupMatching)));
+        assertEquals(cachedGroupMatching.receiverIds, Set.of(toQInboxId(1, "inbox1", "deliverer1")));
+        GroupMatching updated = (GroupMatching) cache.getIfPresent(topic, FULL_BOUNDARY).iterator().next();
+        assertEquals(updated.receiverIds,
+            Set.of(toQInboxId(1, "inbox1", "deliverer1"), toQInboxId(1, "inbox2", "deliverer1")));
+        // the matching passed in is not touched
+        assertEquals(newGroupMatching.receiverIds, Set.of(toQInboxId(1, "inbox2", "deliverer1")));
+    }
+
+    @Test
+    public void updateOnlyAffectedTopics() {
+        Matching matchingA = mock(Matching.class);
+        when(matchingA.type()).thenReturn(Matching.Type.Normal);
+        Matching matchingB = mock(Matching.class);
+        when(matchingB.type()).thenReturn(Matching.Type.Normal);
+        when(mockMatcher.match(eq("a/b"), eq(FULL_BOUNDARY))).thenReturn(Set.of(matchingA));
+        when(mockMatcher.match(eq("b/c"), eq(FULL_BOUNDARY))).thenReturn(Set.of(matchingB));
+        Set<Matching> cachedB = cache.get("b/c", FULL_BOUNDARY);
+        cache.get("a/b", FULL_BOUNDARY);
+
+        Matching matchingA1 = mock(Matching.class);
+        when(matchingA1.type()).thenReturn(Matching.Type.Normal);
+        cache.addAllMatch(Map.of("a/+", Set.of(matchingA1)));
+        assertEquals(cache.getIfPresent("a/b", FULL_BOUNDARY), Set.of(matchingA, matchingA1));
+        assertSame(cache.getIfPresent("b/c", FULL_BOUNDARY), cachedB);
+    }
+
+    @SneakyThrows
+    @Test
+    public void concurrentUpdateAndLoad() {
+        RouteIndex routeIndex = new RouteIndex();
+        TenantRouteCache cache = new TenantRouteCache(tenantId,
+            new InMemTenantRouteMatcher(tenantId, routeIndex, Timer.builder("test").register(new SimpleMeterRegistry())),
+            expiryDuration);
+        List<String> topics = List.of("a/b", "a/c", "b/c", "c/d");
+        List<String> topicFilters = List.of("a/b", "a/+", "+/c", "#", "b/#", "c/d");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch latch = new CountDownLatch(2);
+        executor.submit(() -> {
+            // simulate the mutation thread which updates the index before the cache
+            for (int i = 0; i < 1000; i++) {
+                String topicFilter = topicFilters.get(i % topicFilters.size());
+                Matching matching = EntityUtil.parseMatchRecord(EntityUtil.toNormalMatchRecordKey(tenantId,
+                    topicFilter, toQInboxId(1, "inbox" + (i % 7), "deliverer1")), ByteString.EMPTY);
+                if (i % 3 == 2) {
+                    routeIndex.removeAllMatch(tenantId, Map.of(topicFilter, Set.of(matching)));
+                    cache.removeAllMatch(Map.of(topicFilter, Set.of(matching)));
+                } else {
+                    routeIndex.addAllMatch(tenantId, Map.of(topicFilter, Set.of(matching)));
+                    cache.addAllMatch(Map.of(topicFilter, Set.of(matching)));
+                }
+            }
+            latch.countDown();
+        });
+        executor.submit(() -> {
+            for (int i = 0; i < 1000; i++) {
+                if (i % 10 == 0) {
+                    cache.getAll(Set.copyOf(topics), FULL_BOUNDARY);
+                } else {
+                    cache.get(topics.get(i % topics.size()), FULL_BOUNDARY);
+                }
+            }
+            latch.countDown();
+        });
+        latch.await();
+        executor.shutdown();
+        for (String topic : topics) {
+            Set<Matching> cached = cache.getIfPresent(topic, FULL_BOUNDARY);
+            if (cached != null) {
+                assertEquals(cached, routeIndex.match(tenantId, topic, FULL_BOUNDARY));
+            }
+        }
+        cache.destroy();
+    }
+
     @Test
     public void refreshExpiryOnGet() {
         when(mockTicker.read()).thenReturn(0L);
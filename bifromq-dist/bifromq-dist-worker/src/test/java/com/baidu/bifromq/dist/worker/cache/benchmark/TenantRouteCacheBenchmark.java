@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.dist.worker.cache.benchmark;
+
+import static com.baidu.bifromq.basekv.utils.BoundaryUtil.FULL_BOUNDARY;
+import static com.baidu.bifromq.dist.entity.EntityUtil.parseMatchRecord;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toNormalMatchRecordKey;
+import static com.baidu.bifromq.dist.entity.EntityUtil.toQInboxId;
+
+import com.baidu.bifromq.basekv.utils.KVRangeIdUtil;
+import com.baidu.bifromq.dist.entity.Matching;
+import com.baidu.bifromq.dist.worker.cache.HotTopicTracker;
+import com.baidu.bifromq.dist.worker.cache.RouteCachePool;
+import com.baidu.bifromq.dist.worker.cache.SubscriptionCache;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.ByteString;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Mixed workload of route cache: 9 lookup threads against 1 route-updating thread. Routes are matched in memory, the
+ * route bloom filter and the cache warm-up are disabled.
+ */
+@State(Scope.Group)
+@Fork(value = 1, jvmArgsAppend = {
+    "-Ddist_worker_route_bloom_filter=false",
+    "-Ddist_worker_route_cache_warmup_topics=0"
+})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TenantRouteCacheBenchmark {
+    private static final String TENANT_ID = "tenant";
+    private static final int TOPIC_COUNT = 1000;
+    private static final int INBOX_COUNT = 100;
+
+    private RouteCachePool routeCachePool;
+    private SubscriptionCache cache;
+
+    @Setup
+    public void setup() {
+        routeCachePool = new RouteCachePool(Long.MAX_VALUE);
+        // the routes are matched in memory, so no reader is needed
+        cache = new SubscriptionCache(KVRangeIdUtil.generate(), () -> {
+            throw new UnsupportedOperationException();
+        }, new HotTopicTracker(TOPIC_COUNT), routeCachePool, MoreExecutors.directExecutor());
+        for (int i = 0; i < TOPIC_COUNT; i++) {
+            cache.load(toNormalMatchRecordKey(TENANT_ID, topic(i), toQInboxId(1, "inbox" + i, "deliverer")),
+                ByteString.EMPTY);
+        }
+        cache.reset(FULL_BOUNDARY);
+        for (int i = 0; i < TOPIC_COUNT; i++) {
+            cache.get(TENANT_ID, topic(i)).join();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.close();
+        routeCachePool.close();
+    }
+
+    @Benchmark
+    @Group("ReadWrite")
+    @GroupThreads(9)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Set<Matching> get() {
+        return cache.get(TENANT_ID, topic(ThreadLocalRandom.current().nextInt(TOPIC_COUNT))).join();
+    }
+
+    @Benchmark
+    @Group("ReadWrite")
+    @GroupThreads(1)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void update() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String topicFilter = random.nextBoolean()
+            ? topic(random.nextInt(TOPIC_COUNT)) : "level" + random.nextInt(10) + "/+/+";
+        Matching matching = parseMatchRecord(toNormalMatchRecordKey(TENANT_ID, topicFilter,
+            toQInboxId(1, "sub" + random.nextInt(INBOX_COUNT), "deliverer")), ByteString.EMPTY);
+        Map<String, Map<String, Set<Matching>>> routes = Map.of(TENANT_ID, Map.of(topicFilter, Set.of(matching)));
+        if (random.nextBoolean()) {
+            cache.addAllMatch(routes);
+        } else {
+            cache.removeAllMatch(routes);
+        }
+    }
+
+    private static String topic(int i) {
+        return "level" + (i % 10) + "/sub" + (i % 100) + "/" + i;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(TenantRouteCacheBenchmark.class.getSimpleName())
+            .build();
+        new Runner(opt).run();
+    }
+}
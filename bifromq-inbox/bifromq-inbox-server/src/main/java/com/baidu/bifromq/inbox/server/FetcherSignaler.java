@@ -14,6 +14,7 @@
 package com.baidu.bifromq.inbox.server;
 
 import com.baidu.bifromq.inbox.records.ScopedInbox;
+import com.baidu.bifromq.inbox.storage.proto.Fetched;
 
 public class FetcherSignaler implements InboxWriterPipeline.IWriteCallback {
     private final IInboxFetcherRegistry registry;
@@ -23,9 +24,22 @@ public class FetcherSignaler implements InboxWriterPipeline.IWriteCallback {
     }
 
     @Override
-    public void afterWrite(ScopedInbox scopedInbox, String delivererKey) {
+    public boolean isPushable(ScopedInbox scopedInbox, String delivererKey) {
         for (IInboxFetcher fetcher : registry.get(scopedInbox.tenantId(), delivererKey)) {
-            if (fetcher.signalFetch(scopedInbox.inboxId(), scopedInbox.incarnation())) {
+            if (fetcher.isPushable(scopedInbox.inboxId(), scopedInbox.incarnation())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void afterWrite(ScopedInbox scopedInbox, String delivererKey, Fetched inserted) {
+        for (IInboxFetcher fetcher : registry.get(scopedInbox.tenantId(), delivererKey)) {
+            boolean signaled = inserted != null
+                ? fetcher.push(scopedInbox.inboxId(), scopedInbox.incarnation(), inserted)
+                : fetcher.signalFetch(scopedInbox.inboxId(), scopedInbox.incarnation());
+            if (signaled) {
                 break;
             }
         }
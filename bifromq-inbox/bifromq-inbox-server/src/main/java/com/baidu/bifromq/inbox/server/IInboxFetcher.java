@@ -13,6 +13,8 @@
 
 package com.baidu.bifromq.inbox.server;
 
+import com.baidu.bifromq.inbox.storage.proto.Fetched;
+
 public interface IInboxFetcher {
     String id();
 
@@ -22,5 +24,25 @@ public interface IInboxFetcher {
 
     boolean signalFetch(String inboxId, long incarnation);
 
+    /**
+     * Check if the inbox has fetch session with downstream capacity.
+     *
+     * @param inboxId     the inboxId
+     * @param incarnation the incarnation
+     * @return true if there is fetch session able to receive pushed messages
+     */
+    boolean isPushable(String inboxId, long incarnation);
+
+    /**
+     * Push the inserted messages to the fetch sessions of the inbox, the session which could not take them directly
+     * will be signaled to fetch.
+     *
+     * @param inboxId     the inboxId
+     * @param incarnation the incarnation
+     * @param inserted    the inserted messages
+     * @return true if the inbox has fetch session
+     */
+    boolean push(String inboxId, long incarnation, Fetched inserted);
+
     void close();
 }
@@ -127,12 +127,92 @@ final class InboxFetchPipeline extends AckStream<InboxFetchHint, InboxFetched> i
         return !sessionIds.isEmpty();
     }
 
+    @Override
+    public boolean isPushable(String inboxId, long incarnation) {
+        Set<Long> sessionIds = inboxSessionMap.getOrDefault(new InboxId(inboxId, incarnation), Collections.emptySet());
+        for (Long sessionId : sessionIds) {
+            FetchState fetchState = inboxFetchSessions.get(sessionId);
+            if (fetchState != null && fetchState.downStreamCapacity.get() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean push(String inboxId, long incarnation, Fetched inserted) {
+        log.trace("Push inserted: tenantId={}, inboxId={}", tenantId, inboxId);
+        Set<Long> sessionIds = inboxSessionMap.getOrDefault(new InboxId(inboxId, incarnation), Collections.emptySet());
+        for (Long sessionId : sessionIds) {
+            FetchState fetchState = inboxFetchSessions.get(sessionId);
+            if (fetchState != null && !push(fetchState, inserted)) {
+                // fallback to fetch
+                fetchState.hasMore.set(true);
+                fetchState.signalFetchTS.set(System.nanoTime());
+                fetch(fetchState);
+            }
+        }
+        return !sessionIds.isEmpty();
+    }
+
     @Override
     public void close() {
         super.close();
         disposable.dispose();
     }
 
+    private boolean push(FetchState fetchState, Fetched inserted) {
+        if (closed) {
+            return true;
+        }
+        // pushing is exclusive with fetching, so that messages are sent in order
+        if (!fetchState.fetching.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            if (!canPush(fetchState, inserted)) {
+                return false;
+            }
+            send(InboxFetched.newBuilder()
+                .setSessionId(fetchState.sessionId)
+                .setInboxId(fetchState.inboxId)
+                .setIncarnation(fetchState.incarnation)
+                .setFetched(inserted)
+                .build());
+            if (inserted.getQos0MsgCount() > 0) {
+                fetchState.lastFetchQoS0Seq.set(inserted.getQos0Msg(inserted.getQos0MsgCount() - 1).getSeq());
+            }
+            if (inserted.getSendBufferMsgCount() > 0) {
+                fetchState.downStreamCapacity.accumulateAndGet(inserted.getSendBufferMsgCount(),
+                    (a, b) -> a == NOT_KNOWN_CAPACITY ? a : Math.max(a - b, 0));
+                fetchState.lastFetchSendBufferSeq.set(
+                    inserted.getSendBufferMsg(inserted.getSendBufferMsgCount() - 1).getSeq());
+            }
+            return true;
+        } catch (Throwable t) {
+            log.debug("Send error", t);
+            return true;
+        } finally {
+            fetchState.fetching.set(false);
+        }
+    }
+
+    private boolean canPush(FetchState fetchState, Fetched inserted) {
+        // the inserted messages could be pushed only if nothing left to fetch before them and downstream has capacity
+        int capacity = fetchState.downStreamCapacity.get();
+        if (fetchState.hasMore.get()
+            || capacity < inserted.getQos0MsgCount()
+            || capacity < inserted.getSendBufferMsgCount()) {
+            return false;
+        }
+        if (inserted.getQos0MsgCount() > 0
+            && inserted.getQos0Msg(0).getSeq() != fetchState.lastFetchQoS0Seq.get() + 1) {
+            return false;
+        }
+        return inserted.getSendBufferMsgCount() == 0
+            || inserted.getSendBufferMsg(0).getSeq() == fetchState.lastFetchSendBufferSeq.get() + 1;
+    }
+
     private void fetch(long sessionId) {
         FetchState fetchState = inboxFetchSessions.get(sessionId);
         if (fetchState != null) {
@@ -25,6 +25,7 @@ import com.baidu.bifromq.inbox.storage.proto.SubMessagePack;
 import com.baidu.bifromq.plugin.subbroker.DeliveryPack;
 import com.baidu.bifromq.plugin.subbroker.DeliveryReply;
 import com.baidu.bifromq.plugin.subbroker.DeliveryResult;
+import com.baidu.bifromq.sysprops.props.InboxPushDelivery;
 import com.baidu.bifromq.type.MatchInfo;
 import com.baidu.bifromq.type.TopicMessagePack;
 import java.util.HashMap;
@@ -37,6 +38,7 @@ import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class InboxWriter implements InboxWriterPipeline.ISendRequestHandler {
+    private static final boolean PUSH_DELIVERY = InboxPushDelivery.INSTANCE.get();
     private final IInboxInsertScheduler insertScheduler;
 
     public InboxWriter(IInboxInsertScheduler insertScheduler) {
@@ -44,7 +46,9 @@ public class InboxWriter implements InboxWriterPipeline.ISendRequestHandler {
     }
 
     @Override
-    public CompletableFuture<SendReply> handle(SendRequest request) {
+    public CompletableFuture<SendReply> handle(SendRequest request,
+                                               String delivererKey,
+                                               InboxWriterPipeline.IWriteCallback writeCallback) {
         // scopedInbox -> topicFilter -> messagePack
         Map<ScopedInbox, Map<String, List<TopicMessagePack>>> msgsByInbox = new HashMap<>();
         // group messages by inboxId
@@ -63,6 +67,7 @@ public class InboxWriter implements InboxWriterPipeline.ISendRequestHandler {
                     .setTenantId(entry.getKey().tenantId())
                     .setInboxId(entry.getKey().inboxId())
                     .setIncarnation(entry.getKey().incarnation())
+                    .setReturnInserted(PUSH_DELIVERY && writeCallback.isPushable(entry.getKey(), delivererKey))
                     .addAllMessagePack(entry.getValue().entrySet().stream()
                         .map(e -> SubMessagePack.newBuilder()
                             .setTopicFilter(e.getKey())
@@ -90,10 +95,16 @@ public class InboxWriter implements InboxWriterPipeline.ISendRequestHandler {
                         tenantMatchResultMap.computeIfAbsent(scopedInbox.tenantId(), k -> new HashMap<>());
                     switch (result.getCode()) {
                         case OK -> {
+                            boolean written = false;
                             for (BatchInsertReply.InsertionResult insertionResult : result.getInsertionResultList()) {
                                 matchResultMap.putIfAbsent(scopedInbox.convertTo(insertionResult.getTopicFilter()),
                                     insertionResult.getRejected() ? DeliveryResult.Code.NO_SUB :
                                         DeliveryResult.Code.OK);
+                                written |= !insertionResult.getRejected();
+                            }
+                            if (written) {
+                                writeCallback.afterWrite(scopedInbox, delivererKey,
+                                    result.hasInserted() ? result.getInserted() : null);
                             }
                         }
                         case NO_INBOX -> {
@@ -19,7 +19,7 @@ import com.baidu.bifromq.baserpc.ResponsePipeline;
 import com.baidu.bifromq.inbox.records.ScopedInbox;
 import com.baidu.bifromq.inbox.rpc.proto.SendReply;
 import com.baidu.bifromq.inbox.rpc.proto.SendRequest;
-import com.baidu.bifromq.plugin.subbroker.DeliveryResult;
+import com.baidu.bifromq.inbox.storage.proto.Fetched;
 import com.baidu.bifromq.sysprops.props.IngressSlowDownDirectMemoryUsage;
 import com.baidu.bifromq.sysprops.props.IngressSlowDownHeapMemoryUsage;
 import com.baidu.bifromq.sysprops.props.MaxSlowDownTimeoutSeconds;
@@ -35,11 +35,27 @@ class InboxWriterPipeline extends ResponsePipeline<SendRequest, SendReply> {
     private static final Duration SLOWDOWN_TIMEOUT = Duration.ofSeconds(MaxSlowDownTimeoutSeconds.INSTANCE.get());
 
     interface IWriteCallback {
-        void afterWrite(ScopedInbox scopedInbox, String delivererKey);
+        /**
+         * Check if the inbox has attached fetch session able to receive the inserted messages directly.
+         *
+         * @param scopedInbox  the inbox
+         * @param delivererKey the deliverer key
+         * @return true if the inserted messages could be pushed
+         */
+        boolean isPushable(ScopedInbox scopedInbox, String delivererKey);
+
+        /**
+         * Callback after messages were written into the inbox.
+         *
+         * @param scopedInbox  the inbox
+         * @param delivererKey the deliverer key
+         * @param inserted     the inserted messages to push, or null if not returned
+         */
+        void afterWrite(ScopedInbox scopedInbox, String delivererKey, Fetched inserted);
     }
 
     interface ISendRequestHandler {
-        CompletableFuture<SendReply> handle(SendRequest request);
+        CompletableFuture<SendReply> handle(SendRequest request, String delivererKey, IWriteCallback writeCallback);
     }
 
     private final IWriteCallback writeCallback;
@@ -59,15 +75,6 @@ class InboxWriterPipeline extends ResponsePipeline<SendRequest, SendReply> {
     @Override
     protected CompletableFuture<SendReply> handleRequest(String ignore, SendRequest request) {
         log.trace("Received inbox write request: deliverer={}, \n{}", delivererKey, request);
-        return handler.handle(request).thenApply(v -> {
-            v.getReply().getResultMap().forEach((tenantId, deliveryResults) -> {
-                deliveryResults.getResultList().forEach(result -> {
-                    if (result.getCode() == DeliveryResult.Code.OK) {
-                        writeCallback.afterWrite(ScopedInbox.from(tenantId, result.getMatchInfo()), delivererKey);
-                    }
-                });
-            });
-            return v;
-        });
+        return handler.handle(request, delivererKey, writeCallback);
     }
 }
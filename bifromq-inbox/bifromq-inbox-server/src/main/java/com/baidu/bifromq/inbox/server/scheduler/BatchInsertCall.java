@@ -26,25 +26,41 @@ import com.baidu.bifromq.inbox.storage.proto.BatchInsertRequest;
 import com.baidu.bifromq.inbox.storage.proto.InboxServiceRWCoProcInput;
 import com.baidu.bifromq.inbox.storage.proto.InboxSubMessagePack;
 import java.time.Duration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
+/**
+ * The batch call of inserting messages into inboxes of the same range, the whole batch is proposed as one mutation.
+ * The message packs bound for the same inbox are coalesced into one, so that a busy inbox receiving several packs
+ * within the batching window will not split the batch into more proposals.
+ */
 public class BatchInsertCall extends BatchMutationCall<InboxSubMessagePack, BatchInsertReply.Result> {
     protected BatchInsertCall(KVRangeId rangeId, IBaseKVStoreClient storeClient, Duration pipelineExpiryTime) {
         super(rangeId, storeClient, pipelineExpiryTime);
     }
 
-    @Override
-    protected MutationCallTaskBatch<InboxSubMessagePack, BatchInsertReply.Result> newBatch(String storeId, long ver) {
-        return new BatchInsertCallTask(storeId, ver);
-    }
-
     @Override
     protected RWCoProcInput makeBatch(Iterator<InboxSubMessagePack> messagePackIterator) {
+        Map<ScopedInbox, InboxSubMessagePack.Builder> coalesced = new LinkedHashMap<>();
+        while (messagePackIterator.hasNext()) {
+            InboxSubMessagePack messagePack = messagePackIterator.next();
+            InboxSubMessagePack.Builder packBuilder = coalesced.computeIfAbsent(toScopedInbox(messagePack),
+                k -> InboxSubMessagePack.newBuilder()
+                    .setTenantId(messagePack.getTenantId())
+                    .setInboxId(messagePack.getInboxId())
+                    .setIncarnation(messagePack.getIncarnation()));
+            packBuilder.addAllMessagePack(messagePack.getMessagePackList());
+            if (messagePack.getReturnInserted()) {
+                packBuilder.setReturnInserted(true);
+            }
+        }
         BatchInsertRequest.Builder reqBuilder = BatchInsertRequest.newBuilder();
-        messagePackIterator.forEachRemaining(reqBuilder::addInboxSubMsgPack);
+        coalesced.values().forEach(reqBuilder::addInboxSubMsgPack);
         long reqId = System.nanoTime();
         return RWCoProcInput.newBuilder()
             .setInboxService(InboxServiceRWCoProcInput.newBuilder()
@@ -58,11 +74,23 @@ public class BatchInsertCall extends BatchMutationCall<InboxSubMessagePack, Batc
     protected void handleOutput(
         Queue<ICallTask<InboxSubMessagePack, BatchInsertReply.Result, MutationCallBatcherKey>> batchedTasks,
         RWCoProcOutput output) {
-        assert batchedTasks.size() == output.getInboxService().getBatchInsert().getResultCount();
+        // the results are in the same order as the coalesced packs
+        Map<ScopedInbox, Integer> resultIndexes = new HashMap<>();
+        for (ICallTask<InboxSubMessagePack, BatchInsertReply.Result, MutationCallBatcherKey> task : batchedTasks) {
+            resultIndexes.putIfAbsent(toScopedInbox(task.call()), resultIndexes.size());
+        }
+        assert resultIndexes.size() == output.getInboxService().getBatchInsert().getResultCount();
+        Set<ScopedInbox> insertedReturned = new HashSet<>();
         ICallTask<InboxSubMessagePack, BatchInsertReply.Result, MutationCallBatcherKey> task;
-        int i = 0;
         while ((task = batchedTasks.poll()) != null) {
-            task.resultPromise().complete(output.getInboxService().getBatchInsert().getResult(i++));
+            ScopedInbox scopedInbox = toScopedInbox(task.call());
+            BatchInsertReply.Result result = output.getInboxService().getBatchInsert()
+                .getResult(resultIndexes.get(scopedInbox));
+            if (result.hasInserted() && !insertedReturned.add(scopedInbox)) {
+                // the inserted messages of coalesced pack are returned to the first call only
+                result = result.toBuilder().clearInserted().build();
+            }
+            task.resultPromise().complete(ownResult(task.call(), result));
         }
     }
 
@@ -74,31 +102,22 @@ public class BatchInsertCall extends BatchMutationCall<InboxSubMessagePack, Batc
             BatchInsertReply.Result.newBuilder().setCode(BatchInsertReply.Code.ERROR).build());
     }
 
-    private static class BatchInsertCallTask extends
-        MutationCallTaskBatch<InboxSubMessagePack, BatchInsertReply.Result> {
-        private final Set<ScopedInbox> inboxes = new HashSet<>();
-
-        private BatchInsertCallTask(String storeId, long ver) {
-            super(storeId, ver);
-        }
-
-        @Override
-        protected void add(ICallTask<InboxSubMessagePack, BatchInsertReply.Result, MutationCallBatcherKey> callTask) {
-            super.add(callTask);
-            inboxes.add(new ScopedInbox(
-                callTask.call().getTenantId(),
-                callTask.call().getInboxId(),
-                callTask.call().getIncarnation())
-            );
-        }
+    private ScopedInbox toScopedInbox(InboxSubMessagePack messagePack) {
+        return new ScopedInbox(messagePack.getTenantId(), messagePack.getInboxId(), messagePack.getIncarnation());
+    }
 
-        @Override
-        protected boolean isBatchable(
-            ICallTask<InboxSubMessagePack, BatchInsertReply.Result, MutationCallBatcherKey> callTask) {
-            return !inboxes.contains(new ScopedInbox(
-                callTask.call().getTenantId(),
-                callTask.call().getInboxId(),
-                callTask.call().getIncarnation()));
+    private BatchInsertReply.Result ownResult(InboxSubMessagePack messagePack, BatchInsertReply.Result result) {
+        if (result.getInsertionResultCount() <= messagePack.getMessagePackCount()) {
+            return result;
         }
+        // the result of coalesced pack may contain the topic filters of other packs
+        Set<String> topicFilters = new HashSet<>();
+        messagePack.getMessagePackList().forEach(subMessagePack -> topicFilters.add(subMessagePack.getTopicFilter()));
+        return result.toBuilder()
+            .clearInsertionResult()
+            .addAllInsertionResult(result.getInsertionResultList().stream()
+                .filter(insertionResult -> topicFilters.contains(insertionResult.getTopicFilter()))
+                .toList())
+            .build();
     }
 }
@@ -45,7 +45,8 @@ public class InboxFetchScheduler extends InboxReadScheduler<IInboxFetchScheduler
 
     @Override
     protected int selectQueue(InboxFetch request) {
-        int idx = Objects.hash(request.tenantId, request.inboxId, request.incarnation) % queuesPerRange;
+        // spread the fetches of a tenant over queues, the store serves each batch in the order of inbox keys
+        int idx = Objects.hash(request.tenantId, request.inboxId) % queuesPerRange;
         if (idx < 0) {
             idx += queuesPerRange;
         }
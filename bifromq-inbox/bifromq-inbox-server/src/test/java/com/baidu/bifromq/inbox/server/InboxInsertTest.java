@@ -14,6 +14,8 @@
 package com.baidu.bifromq.inbox.server;
 
 import static com.baidu.bifromq.inbox.records.ScopedInbox.distInboxId;
+import static com.baidu.bifromq.inbox.util.DelivererKeyUtil.getDelivererKey;
+import static org.awaitility.Awaitility.await;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
@@ -24,6 +26,7 @@ import com.baidu.bifromq.inbox.rpc.proto.CreateRequest;
 import com.baidu.bifromq.inbox.rpc.proto.SubReply;
 import com.baidu.bifromq.inbox.rpc.proto.SubRequest;
 import com.baidu.bifromq.inbox.storage.proto.Fetched;
+import com.baidu.bifromq.inbox.storage.proto.InboxMessage;
 import com.baidu.bifromq.inbox.storage.proto.TopicFilterOption;
 import com.baidu.bifromq.plugin.subbroker.DeliveryPack;
 import com.baidu.bifromq.plugin.subbroker.DeliveryPackage;
@@ -36,7 +39,10 @@ import com.baidu.bifromq.type.MatchInfo;
 import com.baidu.bifromq.type.Message;
 import com.baidu.bifromq.type.QoS;
 import com.baidu.bifromq.type.TopicMessagePack;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -225,4 +231,83 @@ public class InboxInsertTest extends InboxServiceTest {
         reader.close();
         writer.close();
     }
+
+    @Test(groups = "integration")
+    public void insertToAttachedReader() throws InterruptedException {
+        long now = HLC.INST.getPhysical();
+        String tenantId = "tenant-" + now;
+        String inboxId = "insert_inbox-" + now;
+        long incarnation = HLC.INST.getPhysical();
+        ClientInfo clientInfo = ClientInfo.newBuilder().setTenantId(tenantId).build();
+        long reqId = System.nanoTime();
+        CreateReply createReply = inboxClient.create(CreateRequest.newBuilder()
+            .setReqId(reqId)
+            .setInboxId(inboxId)
+            .setIncarnation(incarnation)
+            .setKeepAliveSeconds(5)
+            .setExpirySeconds(5)
+            .setLimit(10)
+            .setClient(clientInfo)
+            .setNow(now)
+            .build()).join();
+        assertEquals(createReply.getCode(), CreateReply.Code.OK);
+        SubReply subReply = inboxClient.sub(SubRequest.newBuilder()
+            .setReqId(reqId)
+            .setTenantId(tenantId)
+            .setInboxId(inboxId)
+            .setIncarnation(incarnation)
+            .setVersion(0)
+            .setTopicFilter("topic")
+            .setOption(TopicFilterOption.newBuilder().setQos(QoS.AT_LEAST_ONCE).build())
+            .setNow(now)
+            .build()).join();
+        assertEquals(subReply.getCode(), SubReply.Code.OK);
+
+        // the reader is attached before messages inserted
+        IInboxClient.IInboxReader reader = inboxClient.openInboxReader(tenantId, inboxId, incarnation);
+        CountDownLatch attachLatch = new CountDownLatch(1);
+        List<InboxMessage> received = new CopyOnWriteArrayList<>();
+        reader.fetch(fetched -> {
+            received.addAll(fetched.getSendBufferMsgList());
+            attachLatch.countDown();
+        });
+        reader.hint(100);
+        assertTrue(attachLatch.await(5, TimeUnit.SECONDS));
+
+        IDeliverer writer = inboxClient.open(getDelivererKey(inboxId));
+        MatchInfo matchInfo = MatchInfo.newBuilder()
+            .setReceiverId(distInboxId(inboxId, incarnation))
+            .setTopicFilter("topic")
+            .build();
+        List<Message> msgs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Message msg = Message.newBuilder()
+                .setMessageId(i)
+                .setPubQoS(QoS.AT_LEAST_ONCE)
+                .build();
+            msgs.add(msg);
+            DeliveryReply reply = writer.deliver(DeliveryRequest.newBuilder()
+                .putPackage(tenantId, DeliveryPackage.newBuilder()
+                    .addPack(DeliveryPack.newBuilder()
+                        .setMessagePack(TopicMessagePack.newBuilder()
+                            .setTopic("topic")
+                            .addMessage(TopicMessagePack.PublisherPack.newBuilder()
+                                .addMessage(msg)
+                                .build())
+                            .build())
+                        .addMatchInfo(matchInfo)
+                        .build())
+                    .build())
+                .build()).join();
+            assertEquals(reply.getResultMap().get(tenantId).getResult(0).getCode(), DeliveryResult.Code.OK);
+        }
+
+        await().until(() -> received.size() == 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(received.get(i).getSeq(), i);
+            assertEquals(received.get(i).getMsg().getMessage(), msgs.get(i));
+        }
+        reader.close();
+        writer.close();
+    }
 }
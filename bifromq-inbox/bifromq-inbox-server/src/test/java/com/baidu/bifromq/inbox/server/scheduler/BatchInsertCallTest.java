@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.inbox.server.scheduler;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import com.baidu.bifromq.basekv.client.IBaseKVStoreClient;
+import com.baidu.bifromq.basekv.client.scheduler.MutationCallBatcherKey;
+import com.baidu.bifromq.basekv.proto.KVRangeId;
+import com.baidu.bifromq.basekv.store.proto.RWCoProcInput;
+import com.baidu.bifromq.basekv.store.proto.RWCoProcOutput;
+import com.baidu.bifromq.basescheduler.ICallTask;
+import com.baidu.bifromq.inbox.storage.proto.BatchInsertReply;
+import com.baidu.bifromq.inbox.storage.proto.BatchInsertRequest;
+import com.baidu.bifromq.inbox.storage.proto.Fetched;
+import com.baidu.bifromq.inbox.storage.proto.InboxMessage;
+import com.baidu.bifromq.inbox.storage.proto.InboxServiceRWCoProcOutput;
+import com.baidu.bifromq.inbox.storage.proto.InboxSubMessagePack;
+import com.baidu.bifromq.inbox.storage.proto.SubMessagePack;
+import com.baidu.bifromq.type.TopicMessagePack;
+import java.time.Duration;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BatchInsertCallTest {
+    private BatchInsertCall batchInsertCall;
+
+    @BeforeMethod
+    void setUp() {
+        KVRangeId rangeId = KVRangeId.newBuilder().setId(1).build();
+        batchInsertCall = new BatchInsertCall(rangeId, mock(IBaseKVStoreClient.class), Duration.ofMinutes(1));
+    }
+
+    @Test
+    void testMakeBatch() {
+        InboxSubMessagePack pack1 = pack("inbox1", "filter1", "topic1");
+        InboxSubMessagePack pack2 = pack("inbox2", "filter1", "topic2");
+        InboxSubMessagePack pack3 = pack("inbox1", "filter2", "topic3");
+
+        RWCoProcInput input = batchInsertCall.makeBatch(List.of(pack1, pack2, pack3).iterator());
+
+        // packs of the same inbox are coalesced in order
+        BatchInsertRequest batchRequest = input.getInboxService().getBatchInsert();
+        assertEquals(batchRequest.getInboxSubMsgPackCount(), 2);
+        InboxSubMessagePack coalesced = batchRequest.getInboxSubMsgPack(0);
+        assertEquals(coalesced.getInboxId(), "inbox1");
+        assertEquals(coalesced.getMessagePackCount(), 2);
+        assertEquals(coalesced.getMessagePack(0), pack1.getMessagePack(0));
+        assertEquals(coalesced.getMessagePack(1), pack3.getMessagePack(0));
+        assertEquals(batchRequest.getInboxSubMsgPack(1), pack2);
+    }
+
+    @Test
+    void testHandleOutput() {
+        ICallTask<InboxSubMessagePack, BatchInsertReply.Result, MutationCallBatcherKey> task1 =
+            task(pack("inbox1", "filter1", "topic1"));
+        ICallTask<InboxSubMessagePack, BatchInsertReply.Result, MutationCallBatcherKey> task2 =
+            task(pack("inbox2", "filter1", "topic2"));
+        ICallTask<InboxSubMessagePack, BatchInsertReply.Result, MutationCallBatcherKey> task3 =
+            task(pack("inbox1", "filter2", "topic3"));
+        Queue<ICallTask<InboxSubMessagePack, BatchInsertReply.Result, MutationCallBatcherKey>> batchedTasks =
+            new LinkedList<>(List.of(task1, task2, task3));
+
+        BatchInsertReply.Result result1 = BatchInsertReply.Result.newBuilder()
+            .setCode(BatchInsertReply.Code.OK)
+            .addInsertionResult(insertionResult("filter1", false))
+            .addInsertionResult(insertionResult("filter2", true))
+            .build();
+        BatchInsertReply.Result result2 = BatchInsertReply.Result.newBuilder()
+            .setCode(BatchInsertReply.Code.NO_INBOX)
+            .build();
+        RWCoProcOutput output = RWCoProcOutput.newBuilder()
+            .setInboxService(InboxServiceRWCoProcOutput.newBuilder()
+                .setBatchInsert(BatchInsertReply.newBuilder()
+                    .addResult(result1)
+                    .addResult(result2)
+                    .build())
+                .build())
+            .build();
+
+        batchInsertCall.handleOutput(batchedTasks, output);
+
+        assertEquals(task1.resultPromise().join(), BatchInsertReply.Result.newBuilder()
+            .setCode(BatchInsertReply.Code.OK)
+            .addInsertionResult(insertionResult("filter1", false))
+            .build());
+        assertEquals(task2.resultPromise().join(), result2);
+        assertEquals(task3.resultPromise().join(), BatchInsertReply.Result.newBuilder()
+            .setCode(BatchInsertReply.Code.OK)
+            .addInsertionResult(insertionResult("filter2", true))
+            .build());
+    }
+
+    @Test
+    void testReturnInserted() {
+        InboxSubMessagePack pack1 = pack("inbox1", "filter1", "topic1");
+        InboxSubMessagePack pack2 = pack("inbox1", "filter2", "topic2").toBuilder().setReturnInserted(true).build();
+        RWCoProcInput input = batchInsertCall.makeBatch(List.of(pack1, pack2).iterator());
+        assertTrue(input.getInboxService().getBatchInsert().getInboxSubMsgPack(0).getReturnInserted());
+
+        ICallTask<InboxSubMessagePack, BatchInsertReply.Result, MutationCallBatcherKey> task1 = task(pack1);
+        ICallTask<InboxSubMessagePack, BatchInsertReply.Result, MutationCallBatcherKey> task2 = task(pack2);
+        Fetched inserted = Fetched.newBuilder()
+            .addSendBufferMsg(InboxMessage.newBuilder().setSeq(0).build())
+            .addSendBufferMsg(InboxMessage.newBuilder().setSeq(1).build())
+            .build();
+        RWCoProcOutput output = RWCoProcOutput.newBuilder()
+            .setInboxService(InboxServiceRWCoProcOutput.newBuilder()
+                .setBatchInsert(BatchInsertReply.newBuilder()
+                    .addResult(BatchInsertReply.Result.newBuilder()
+                        .setCode(BatchInsertReply.Code.OK)
+                        .setInserted(inserted)
+                        .build())
+                    .build())
+                .build())
+            .build();
+
+        batchInsertCall.handleOutput(new LinkedList<>(List.of(task1, task2)), output);
+
+        // the inserted messages of coalesced pack are returned once
+        assertEquals(task1.resultPromise().join().getInserted(), inserted);
+        assertFalse(task2.resultPromise().join().hasInserted());
+    }
+
+    @Test
+    void testHandleException() {
+        ICallTask<InboxSubMessagePack, BatchInsertReply.Result, MutationCallBatcherKey> task =
+            task(pack("inbox1", "filter1", "topic1"));
+
+        batchInsertCall.handleException(task, new RuntimeException("Test exception"));
+
+        assertEquals(task.resultPromise().join().getCode(), BatchInsertReply.Code.ERROR);
+    }
+
+    private InboxSubMessagePack pack(String inboxId, String topicFilter, String topic) {
+        return InboxSubMessagePack.newBuilder()
+            .setTenantId("tenant1")
+            .setInboxId(inboxId)
+            .setIncarnation(1)
+            .addMessagePack(SubMessagePack.newBuilder()
+                .setTopicFilter(topicFilter)
+                .addMessages(TopicMessagePack.newBuilder().setTopic(topic).build())
+                .build())
+            .build();
+    }
+
+    private BatchInsertReply.InsertionResult insertionResult(String topicFilter, boolean rejected) {
+        return BatchInsertReply.InsertionResult.newBuilder()
+            .setTopicFilter(topicFilter)
+            .setRejected(rejected)
+            .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ICallTask<InboxSubMessagePack, BatchInsertReply.Result, MutationCallBatcherKey> task(
+        InboxSubMessagePack pack) {
+        ICallTask<InboxSubMessagePack, BatchInsertReply.Result, MutationCallBatcherKey> task = mock(ICallTask.class);
+        CompletableFuture<BatchInsertReply.Result> resultPromise = new CompletableFuture<>();
+        when(task.call()).thenReturn(pack);
+        when(task.resultPromise()).thenReturn(resultPromise);
+        return task;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.inbox.store;
+
+import com.baidu.bifromq.inbox.storage.proto.InboxMetadata;
+import lombok.SneakyThrows;
+
+/**
+ * The compact in-memory form of an inbox's metadata. Only the fields accessed on hot paths, i.e. fetching and gc
+ * scanning, are kept as primitives, the full metadata including the topic filters, client info and lwt is kept in its
+ * serialized form and decoded on demand. Compared to keeping the parsed {@link InboxMetadata}, this avoids tens of
+ * objects per persistent session on heap.
+ */
+final class CompactInboxMetadata {
+    final String inboxId;
+    final long incarnation;
+    final long version;
+    final long lastActiveTime;
+    final int keepAliveSeconds;
+    final int expirySeconds;
+    final int limit;
+    final boolean dropOldest;
+    final int topicFiltersCount;
+    final long qos0StartSeq;
+    final long qos0NextSeq;
+    final long sendBufferStartSeq;
+    final long sendBufferNextSeq;
+    private final byte[] bytes;
+
+    CompactInboxMetadata(String inboxId, InboxMetadata metadata) {
+        this.inboxId = inboxId;
+        this.incarnation = metadata.getIncarnation();
+        this.version = metadata.getVersion();
+        this.lastActiveTime = metadata.getLastActiveTime();
+        this.keepAliveSeconds = metadata.getKeepAliveSeconds();
+        this.expirySeconds = metadata.getExpirySeconds();
+        this.limit = metadata.getLimit();
+        this.dropOldest = metadata.getDropOldest();
+        this.topicFiltersCount = metadata.getTopicFiltersCount();
+        this.qos0StartSeq = metadata.getQos0StartSeq();
+        this.qos0NextSeq = metadata.getQos0NextSeq();
+        this.sendBufferStartSeq = metadata.getSendBufferStartSeq();
+        this.sendBufferNextSeq = metadata.getSendBufferNextSeq();
+        this.bytes = metadata.toByteArray();
+    }
+
+    /**
+     * The time when the inbox expires if no more activity, i.e. 1.5 * keepAlive + expirySeconds since last active time.
+     *
+     * @return the expiry time in milliseconds
+     */
+    long expireAt() {
+        return lastActiveTime + (long) (keepAliveSeconds * 1000L * 1.5) + expirySeconds * 1000L;
+    }
+
+    /**
+     * Decode the full metadata.
+     *
+     * @return the inbox metadata
+     */
+    @SneakyThrows
+    InboxMetadata decode() {
+        return InboxMetadata.parseFrom(bytes);
+    }
+}
@@ -13,6 +13,7 @@
 
 package com.baidu.bifromq.inbox.store;
 
+import static com.baidu.bifromq.basekv.utils.BoundaryUtil.compare;
 import static com.baidu.bifromq.inbox.util.KeyUtil.bufferMsgKey;
 import static com.baidu.bifromq.inbox.util.KeyUtil.hasInboxKeyPrefix;
 import static com.baidu.bifromq.inbox.util.KeyUtil.inboxKeyPrefix;
@@ -87,10 +88,18 @@ import com.baidu.bifromq.type.Message;
 import com.baidu.bifromq.type.QoS;
 import com.baidu.bifromq.type.TopicMessage;
 import com.baidu.bifromq.type.TopicMessagePack;
+import com.google.common.util.concurrent.RateLimiter;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -99,9 +108,11 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import lombok.SneakyThrows;
@@ -111,12 +122,16 @@ import lombok.extern.slf4j.Slf4j;
 final class InboxStoreCoProc implements IKVRangeCoProc {
     // make it configurable?
     private static final int MAX_GC_BATCH_SIZE = 10000;
-    private static long initTime;
+    private final long initTime;
     private final KVRangeId id;
     private final ISettingProvider settingProvider;
     private final IEventCollector eventCollector;
     private final TenantsState tenantStates;
     private final Supplier<IKVCloseableReader> rangeReaderProvider;
+    private final DistributionSummary gcScanWorkSummary;
+    // null for loading tenant states before serving
+    private final Executor loadExecutor;
+    private final RateLimiter loadRateLimiter;
 
     InboxStoreCoProc(String clusterId,
                      String storeId,
@@ -124,13 +139,29 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
                      ISettingProvider settingProvider,
                      IEventCollector eventCollector,
                      Supplier<IKVCloseableReader> rangeReaderProvider) {
+        this(clusterId, storeId, id, settingProvider, eventCollector, rangeReaderProvider, null, null);
+    }
+
+    InboxStoreCoProc(String clusterId,
+                     String storeId,
+                     KVRangeId id,
+                     ISettingProvider settingProvider,
+                     IEventCollector eventCollector,
+                     Supplier<IKVCloseableReader> rangeReaderProvider,
+                     Executor loadExecutor,
+                     RateLimiter loadRateLimiter) {
         this.id = id;
+        this.loadExecutor = loadExecutor;
+        this.loadRateLimiter = loadRateLimiter;
         initTime = HLC.INST.getPhysical();
         this.settingProvider = settingProvider;
         this.eventCollector = eventCollector;
         this.rangeReaderProvider = rangeReaderProvider;
-        this.tenantStates = new TenantsState(eventCollector, rangeReaderProvider.get(),
+        this.tenantStates = new TenantsState(eventCollector, rangeReaderProvider.get(), initTime,
             "clusterId", clusterId, "storeId", storeId, "rangeId", KVRangeIdUtil.toString(id));
+        gcScanWorkSummary = DistributionSummary.builder("inbox.gc.scan.work")
+            .tags("clusterId", clusterId, "storeId", storeId, "rangeId", KVRangeIdUtil.toString(id))
+            .register(Metrics.globalRegistry);
         log.debug("Loading tenant states: rangeId={}", KVRangeIdUtil.toString(id));
         load();
     }
@@ -225,6 +256,7 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
     @Override
     public void close() {
         tenantStates.close();
+        Metrics.globalRegistry.remove(gcScanWorkSummary);
     }
 
     @SneakyThrows
@@ -232,9 +264,11 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
         BatchGetReply.Builder replyBuilder = BatchGetReply.newBuilder();
         for (BatchGetRequest.Params params : request.getParamsList()) {
             BatchGetReply.Result.Builder resultBuilder = BatchGetReply.Result.newBuilder();
-            Collection<InboxMetadata> inboxInstances = tenantStates.getAll(params.getTenantId(), params.getInboxId());
-            for (InboxMetadata metadata : inboxInstances) {
-                if (!hasExpired(metadata, params.getNow())) {
+            Collection<CompactInboxMetadata> inboxInstances =
+                tenantStates.getAll(params.getTenantId(), params.getInboxId(), reader);
+            for (CompactInboxMetadata compact : inboxInstances) {
+                if (!hasExpired(compact, params.getNow())) {
+                    InboxMetadata metadata = compact.decode();
                     InboxVersion.Builder inboxVerBuilder = InboxVersion.newBuilder()
                         .setIncarnation(metadata.getIncarnation())
                         .setVersion(metadata.getVersion())
@@ -253,80 +287,111 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
     }
 
     private BatchFetchReply batchFetch(BatchFetchRequest request, IKVReader reader) {
-        BatchFetchReply.Builder replyBuilder = BatchFetchReply.newBuilder();
-        for (BatchFetchRequest.Params params : request.getParamsList()) {
-            replyBuilder.addResult(fetch(params, reader));
+        // the borrowed reader may be stale, refresh it to see the messages of latest metadata
+        reader.refresh();
+        IKVIterator itr = reader.iterator();
+        List<BatchFetchRequest.Params> paramsList = request.getParamsList();
+        ByteString[] inboxKeyPrefixes = new ByteString[paramsList.size()];
+        Integer[] fetchOrder = new Integer[paramsList.size()];
+        for (int i = 0; i < paramsList.size(); i++) {
+            BatchFetchRequest.Params params = paramsList.get(i);
+            inboxKeyPrefixes[i] = inboxKeyPrefix(params.getTenantId(), params.getInboxId(), params.getIncarnation());
+            fetchOrder[i] = i;
         }
-        return replyBuilder.build();
+        // fetch inboxes in the order of their keys, so the shared iterator moves forward through adjacent keys
+        Arrays.sort(fetchOrder,
+            (a, b) -> ByteString.unsignedLexicographicalComparator().compare(inboxKeyPrefixes[a], inboxKeyPrefixes[b]));
+        Fetched[] results = new Fetched[paramsList.size()];
+        for (int i : fetchOrder) {
+            results[i] = fetch(paramsList.get(i), inboxKeyPrefixes[i], itr, reader);
+        }
+        return BatchFetchReply.newBuilder().addAllResult(Arrays.asList(results)).build();
     }
 
-    private Fetched fetch(BatchFetchRequest.Params params, IKVReader reader) {
+    private Fetched fetch(BatchFetchRequest.Params params,
+                          ByteString metadataKey,
+                          IKVIterator itr,
+                          IKVReader reader) {
         Fetched.Builder replyBuilder = Fetched.newBuilder();
         int fetchCount = params.getMaxFetch();
         try {
-            Optional<InboxMetadata> inboxMetadataOpt =
-                tenantStates.get(params.getTenantId(), params.getInboxId(), params.getIncarnation());
+            Optional<CompactInboxMetadata> inboxMetadataOpt =
+                tenantStates.getCompact(params.getTenantId(), params.getInboxId(), params.getIncarnation(), reader);
             if (inboxMetadataOpt.isEmpty()) {
                 replyBuilder.setResult(Fetched.Result.NO_INBOX);
                 return replyBuilder.build();
             }
-            InboxMetadata metadata = inboxMetadataOpt.get();
-            ByteString metadataKey = inboxKeyPrefix(params.getTenantId(), params.getInboxId(), params.getIncarnation());
+            CompactInboxMetadata metadata = inboxMetadataOpt.get();
             // deal with qos0 queue
             long startFetchFromSeq = !params.hasQos0StartAfter()
-                ? metadata.getQos0StartSeq()
-                : Math.max(params.getQos0StartAfter() + 1, metadata.getQos0StartSeq());
-            fetchFromInbox(metadataKey, Integer.MAX_VALUE, metadata.getQos0StartSeq(), startFetchFromSeq,
-                metadata.getQos0NextSeq(),
-                KeyUtil::qos0InboxMsgKey, Fetched.Builder::addQos0Msg, reader,
+                ? metadata.qos0StartSeq
+                : Math.max(params.getQos0StartAfter() + 1, metadata.qos0StartSeq);
+            fetchFromInbox(metadataKey, Integer.MAX_VALUE,
+                startFetchFromSeq,
+                metadata.qos0NextSeq,
+                KeyUtil::qos0InboxPrefix, KeyUtil::qos0InboxMsgKey, Fetched.Builder::addQos0Msg, itr,
                 replyBuilder);
             // deal with qos12 queue
             startFetchFromSeq = !params.hasSendBufferStartAfter()
-                ? metadata.getSendBufferStartSeq()
-                : Math.max(params.getSendBufferStartAfter() + 1, metadata.getSendBufferStartSeq());
-            fetchFromInbox(metadataKey, fetchCount, metadata.getSendBufferStartSeq(), startFetchFromSeq,
-                metadata.getSendBufferNextSeq(),
-                KeyUtil::bufferMsgKey, Fetched.Builder::addSendBufferMsg, reader,
+                ? metadata.sendBufferStartSeq
+                : Math.max(params.getSendBufferStartAfter() + 1, metadata.sendBufferStartSeq);
+            fetchFromInbox(metadataKey, fetchCount,
+                startFetchFromSeq,
+                metadata.sendBufferNextSeq,
+                KeyUtil::sendBufferPrefix, KeyUtil::bufferMsgKey, Fetched.Builder::addSendBufferMsg, itr,
                 replyBuilder);
             return replyBuilder.setResult(Fetched.Result.OK).build();
-        } catch (InvalidProtocolBufferException e) {
+        } catch (IOException e) {
             return replyBuilder.setResult(Fetched.Result.ERROR).build();
         }
     }
 
     private void fetchFromInbox(ByteString inboxKeyPrefix,
                                 int fetchCount,
-                                long startSeq,
                                 long startFetchFromSeq,
                                 long nextSeq,
+                                Function<ByteString, ByteString> queuePrefixGenerator,
                                 BiFunction<ByteString, Long, ByteString> keyGenerator,
                                 BiConsumer<Fetched.Builder, InboxMessage> messageConsumer,
-                                IKVReader reader,
-                                Fetched.Builder replyBuilder) throws InvalidProtocolBufferException {
-        if (startFetchFromSeq < nextSeq) {
-            while (startSeq < nextSeq && fetchCount > 0) {
-                ByteString startKey = keyGenerator.apply(inboxKeyPrefix, startSeq);
-                Optional<ByteString> msgListData = reader.get(startKey);
-                // the startSeq may not reflect the latest seq of the first message when query is non-linearized
-                // it may point to the message was committed.
-                if (msgListData.isEmpty()) {
-                    startSeq++;
+                                IKVIterator itr,
+                                Fetched.Builder replyBuilder) throws IOException {
+        if (startFetchFromSeq >= nextSeq) {
+            return;
+        }
+        ByteString queuePrefix = queuePrefixGenerator.apply(inboxKeyPrefix);
+        // message list is keyed by the seq of its first message, so the list containing startFetchFromSeq is the last
+        // one keyed no greater than it. The startSeq in metadata may not reflect the latest seq of the first message
+        // when query is non-linearized, so no point-get is made from it.
+        itr.seekForPrev(keyGenerator.apply(inboxKeyPrefix, startFetchFromSeq));
+        if (!itr.isValid() || !itr.key().startsWith(queuePrefix)) {
+            itr.seek(queuePrefix);
+        }
+        for (; fetchCount > 0 && itr.isValid() && itr.key().startsWith(queuePrefix); itr.next()) {
+            long firstSeq = parseSeq(inboxKeyPrefix, itr.key());
+            if (firstSeq >= nextSeq) {
+                break;
+            }
+            // seqs in message list are consecutive, so the messages before startFetchFromSeq are skipped unparsed
+            CodedInputStream input = itr.value().newCodedInput();
+            long skipCount = Math.max(0, startFetchFromSeq - firstSeq);
+            int tag;
+            while (fetchCount > 0 && (tag = input.readTag()) != 0) {
+                if (WireFormat.getTagFieldNumber(tag) != InboxMessageList.MESSAGE_FIELD_NUMBER) {
+                    input.skipField(tag);
                     continue;
                 }
-                List<InboxMessage> messageList = InboxMessageList.parseFrom(msgListData.get()).getMessageList();
-                long lastSeq = messageList.get(messageList.size() - 1).getSeq();
-                if (lastSeq >= startFetchFromSeq) {
-                    for (InboxMessage inboxMsg : messageList) {
-                        if (inboxMsg.getSeq() >= startFetchFromSeq) {
-                            messageConsumer.accept(replyBuilder, inboxMsg);
-                            fetchCount--;
-                            if (fetchCount == 0) {
-                                break;
-                            }
-                        }
-                    }
+                if (skipCount > 0) {
+                    input.skipField(tag);
+                    skipCount--;
+                    continue;
                 }
-                startSeq = lastSeq + 1;
+                InboxMessage inboxMsg =
+                    input.readMessage(InboxMessage.parser(), ExtensionRegistryLite.getEmptyRegistry());
+                if (inboxMsg.getSeq() >= nextSeq) {
+                    return;
+                }
+                messageConsumer.accept(replyBuilder, inboxMsg);
+                fetchCount--;
             }
         }
     }
@@ -338,7 +403,8 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
         Map<String, Set<InboxMetadata>> toBeCached = new HashMap<>();
         for (BatchCreateRequest.Params params : request.getParamsList()) {
             Optional<InboxMetadata> existing =
-                tenantStates.get(params.getClient().getTenantId(), params.getInboxId(), params.getIncarnation());
+                tenantStates.get(params.getClient().getTenantId(), params.getInboxId(), params.getIncarnation(),
+                    reader);
             if (existing.isPresent()) {
                 replyBuilder.addSucceed(false);
                 continue;
@@ -374,7 +440,8 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
         Map<String, Set<InboxMetadata>> toBeCached = new HashMap<>();
         for (BatchAttachRequest.Params params : request.getParamsList()) {
             Optional<InboxMetadata> metadataOpt =
-                tenantStates.get(params.getClient().getTenantId(), params.getInboxId(), params.getIncarnation());
+                tenantStates.get(params.getClient().getTenantId(), params.getInboxId(), params.getIncarnation(),
+                    reader);
             if (metadataOpt.isEmpty()) {
                 replyBuilder.addResult(
                     BatchAttachReply.Result.newBuilder().setCode(BatchAttachReply.Code.NO_INBOX).build());
@@ -417,7 +484,7 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
         Map<String, Set<InboxMetadata>> toBeCached = new HashMap<>();
         for (BatchDetachRequest.Params params : request.getParamsList()) {
             Optional<InboxMetadata> metadataOpt =
-                tenantStates.get(params.getTenantId(), params.getInboxId(), params.getIncarnation());
+                tenantStates.get(params.getTenantId(), params.getInboxId(), params.getIncarnation(), reader);
             if (metadataOpt.isEmpty()) {
                 replyBuilder.addResult(
                     BatchDetachReply.Result.newBuilder().setCode(BatchDetachReply.Code.NO_INBOX).build());
@@ -459,7 +526,7 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
         Map<String, Set<InboxMetadata>> toBeCached = new HashMap<>();
         for (BatchTouchRequest.Params params : request.getParamsList()) {
             Optional<InboxMetadata> metadataOpt =
-                tenantStates.get(params.getTenantId(), params.getInboxId(), params.getIncarnation());
+                tenantStates.get(params.getTenantId(), params.getInboxId(), params.getIncarnation(), reader);
             if (metadataOpt.isEmpty()) {
                 replyBuilder.addCode(BatchTouchReply.Code.NO_INBOX);
                 continue;
@@ -491,7 +558,7 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
         for (BatchDeleteRequest.Params params : request.getParamsList()) {
             ByteString metadataKey = inboxKeyPrefix(params.getTenantId(), params.getInboxId(), params.getIncarnation());
             Optional<InboxMetadata> metadataOpt =
-                tenantStates.get(params.getTenantId(), params.getInboxId(), params.getIncarnation());
+                tenantStates.get(params.getTenantId(), params.getInboxId(), params.getIncarnation(), reader);
             if (metadataOpt.isEmpty()) {
                 replyBuilder.addResult(BatchDeleteReply.Result
                     .newBuilder()
@@ -526,7 +593,7 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
         Map<String, Set<InboxMetadata>> toBeCached = new HashMap<>();
         for (BatchSubRequest.Params params : request.getParamsList()) {
             Optional<InboxMetadata> metadataOpt =
-                tenantStates.get(params.getTenantId(), params.getInboxId(), params.getIncarnation());
+                tenantStates.get(params.getTenantId(), params.getInboxId(), params.getIncarnation(), reader);
             if (metadataOpt.isEmpty()) {
                 replyBuilder.addCode(BatchSubReply.Code.NO_INBOX);
                 continue;
@@ -567,7 +634,7 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
         Map<String, Set<InboxMetadata>> toBeCached = new HashMap<>();
         for (BatchUnsubRequest.Params params : request.getParamsList()) {
             Optional<InboxMetadata> metadataOpt =
-                tenantStates.get(params.getTenantId(), params.getInboxId(), params.getIncarnation());
+                tenantStates.get(params.getTenantId(), params.getInboxId(), params.getIncarnation(), reader);
             if (metadataOpt.isEmpty()) {
                 replyBuilder.addCode(BatchUnsubReply.Code.NO_INBOX);
                 continue;
@@ -619,46 +686,61 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
     @SneakyThrows
     private GCReply gcScan(GCRequest request, IKVReader reader) {
         GCReply.Builder replyBuilder = GCReply.newBuilder().setCode(GCReply.Code.OK);
+        int scanned = 0;
         if (request.hasTenantId()) {
-            Collection<InboxMetadata> inboxInstances = tenantStates.getAll(request.getTenantId());
-            for (InboxMetadata metadata : inboxInstances) {
+            Collection<CompactInboxMetadata> inboxInstances = tenantStates.getAll(request.getTenantId(), reader);
+            for (CompactInboxMetadata metadata : inboxInstances) {
+                scanned++;
                 if (isGCable(metadata, request)) {
                     if (replyBuilder.getCandidateCount() < MAX_GC_BATCH_SIZE) {
-                        replyBuilder.addCandidate(GCReply.GCCandidate.newBuilder()
-                            .setInboxId(metadata.getInboxId())
-                            .setIncarnation(metadata.getIncarnation())
-                            .setVersion(metadata.getVersion())
-                            .setExpirySeconds(metadata.getExpirySeconds())
-                            .setClient(metadata.getClient())
-                            .build());
+                        replyBuilder.addCandidate(toGCCandidate(metadata));
                     } else {
                         break;
                     }
                 }
             }
-        } else {
+        } else if (request.hasExpirySeconds()) {
             out:
             for (String tenantId : tenantStates.getAllTenantIds()) {
-                for (InboxMetadata metadata : tenantStates.getAll(tenantId)) {
+                for (CompactInboxMetadata metadata : tenantStates.getAll(tenantId)) {
+                    scanned++;
                     if (isGCable(metadata, request)) {
                         if (replyBuilder.getCandidateCount() < MAX_GC_BATCH_SIZE) {
-                            replyBuilder.addCandidate(GCReply.GCCandidate.newBuilder()
-                                .setInboxId(metadata.getInboxId())
-                                .setIncarnation(metadata.getIncarnation())
-                                .setVersion(metadata.getVersion())
-                                .setExpirySeconds(metadata.getExpirySeconds())
-                                .setClient(metadata.getClient())
-                                .build());
+                            replyBuilder.addCandidate(toGCCandidate(metadata));
                         } else {
                             break out;
                         }
                     }
                 }
             }
+        } else {
+            // visit the expired inboxes only via expiry index
+            for (TenantsState.ExpiryEntry entry : tenantStates.getAllByExpiry()) {
+                if (entry.gcAt() >= request.getNow() || replyBuilder.getCandidateCount() >= MAX_GC_BATCH_SIZE) {
+                    break;
+                }
+                scanned++;
+                if (isGCable(entry.metadata(), request)) {
+                    replyBuilder.addCandidate(toGCCandidate(entry.metadata()));
+                }
+            }
+        }
+        if (replyBuilder.getCandidateCount() > 0) {
+            gcScanWorkSummary.record((double) scanned / replyBuilder.getCandidateCount());
         }
         return replyBuilder.build();
     }
 
+    private GCReply.GCCandidate toGCCandidate(CompactInboxMetadata metadata) {
+        return GCReply.GCCandidate.newBuilder()
+            .setInboxId(metadata.inboxId)
+            .setIncarnation(metadata.incarnation)
+            .setVersion(metadata.version)
+            .setExpirySeconds(metadata.expirySeconds)
+            .setClient(metadata.decode().getClient())
+            .build();
+    }
+
     private record SubMessage(String topicFilter,
                               TopicFilterOption option,
                               String topic,
@@ -676,7 +758,7 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
 
         for (InboxSubMessagePack params : request.getInboxSubMsgPackList()) {
             Optional<InboxMetadata> metadataOpt =
-                tenantStates.get(params.getTenantId(), params.getInboxId(), params.getIncarnation());
+                tenantStates.get(params.getTenantId(), params.getInboxId(), params.getIncarnation(), reader);
             if (metadataOpt.isEmpty()) {
                 replyBuilder.addResult(BatchInsertReply.Result.newBuilder()
                     .setCode(BatchInsertReply.Code.NO_INBOX)
@@ -730,6 +812,15 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
                     inboxKeyPrefix(params.getTenantId(), params.getInboxId(), params.getIncarnation());
                 Map<QoS, Integer> dropCounts = insertInbox(metadataKey, qos0MsgList, bufferMsgList,
                     metadataBuilder, reader, writer);
+                if (params.getReturnInserted()) {
+                    resBuilder.setInserted(Fetched.newBuilder()
+                        .setResult(Fetched.Result.OK)
+                        .addAllQos0Msg(toInserted(qos0MsgList, metadata.getQos0NextSeq(),
+                            metadataBuilder.getQos0StartSeq(), metadataBuilder.getQos0NextSeq()))
+                        .addAllSendBufferMsg(toInserted(bufferMsgList, metadata.getSendBufferNextSeq(),
+                            metadataBuilder.getSendBufferStartSeq(), metadataBuilder.getSendBufferNextSeq()))
+                        .build());
+                }
                 metadata = metadataBuilder.build();
                 replyBuilder.addResult(resBuilder.build());
                 writer.put(metadataKey, metadata.toByteString());
@@ -814,9 +905,9 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
         if (dropOldest) {
             if (dropCount > 0) {
                 if (dropCount >= currCount) {
-                    // drop all
+                    // drop all, the first message list may begin before startSeq
                     writer.clear(Boundary.newBuilder()
-                        .setStartKey(keyGenerator.apply(inboxKeyPrefix, startSeq))
+                        .setStartKey(keyGenerator.apply(inboxKeyPrefix, 0L))
                         .setEndKey(keyGenerator.apply(inboxKeyPrefix, nextSeq))
                         .build());
                     // and trim if needed
@@ -826,37 +917,19 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
                     writer.insert(keyGenerator.apply(inboxKeyPrefix, startSeq + dropCount),
                         buildInboxMessageList(startSeq + dropCount, messages).toByteString());
                 } else {
+                    // drop partially: the dropped messages are skipped by advancing startSeq, only the message lists
+                    // entirely before new startSeq are deleted, and the new messages are appended as a new list.
+                    // The message list containing new startSeq is kept as is.
                     reader.refresh();
                     IKVIterator itr = reader.iterator();
-                    // drop partially
                     itr.seekForPrev(keyGenerator.apply(inboxKeyPrefix, startSeq + dropCount));
                     long beginSeq = parseSeq(inboxKeyPrefix, itr.key());
-                    List<InboxMessage> msgList = InboxMessageList.parseFrom(itr.value()).getMessageList();
-                    InboxMessageList.Builder msgListBuilder = InboxMessageList.newBuilder();
-                    List<InboxMessage> subMsgList =
-                        msgList.subList((int) (startSeq + dropCount - beginSeq), msgList.size());
-                    if (!subMsgList.isEmpty()) {
-                        msgListBuilder
-                            .addAllMessage(subMsgList)
-                            .addAllMessage(buildInboxMessageList(subMsgList.get(subMsgList.size() - 1).getSeq() + 1,
-                                messages).getMessageList());
-                    } else {
-                        msgListBuilder.addAllMessage(
-                            buildInboxMessageList(startSeq + dropCount, messages).getMessageList());
-                    }
                     writer.clear(Boundary.newBuilder()
-                        .setStartKey(keyGenerator.apply(inboxKeyPrefix, startSeq))
-                        .setEndKey(keyGenerator.apply(inboxKeyPrefix, startSeq + dropCount))
+                        .setStartKey(keyGenerator.apply(inboxKeyPrefix, 0L))
+                        .setEndKey(keyGenerator.apply(inboxKeyPrefix, beginSeq))
                         .build());
-                    if (beginSeq == startSeq + dropCount) {
-                        // override existing key
-                        writer.put(keyGenerator.apply(inboxKeyPrefix, startSeq + dropCount),
-                            msgListBuilder.build().toByteString());
-                    } else {
-                        // insert new key
-                        writer.insert(keyGenerator.apply(inboxKeyPrefix, startSeq + dropCount),
-                            msgListBuilder.build().toByteString());
-                    }
+                    writer.insert(keyGenerator.apply(inboxKeyPrefix, nextSeq),
+                        buildInboxMessageList(nextSeq, messages).toByteString());
                 }
                 startSeq += dropCount;
             } else {
@@ -880,6 +953,28 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
         return Math.max(dropCount, 0);
     }
 
+    private List<InboxMessage> toInserted(List<SubMessage> subMessages,
+                                          long beginSeq,
+                                          long startSeq,
+                                          long nextSeq) {
+        // the messages are assigned with seqs in order since beginSeq, the dropped ones are out of [startSeq, nextSeq)
+        List<InboxMessage> inserted = new ArrayList<>();
+        for (long seq = Math.max(beginSeq, startSeq); seq < nextSeq; seq++) {
+            SubMessage subMessage = subMessages.get((int) (seq - beginSeq));
+            inserted.add(InboxMessage.newBuilder()
+                .setSeq(seq)
+                .setTopicFilter(subMessage.topicFilter)
+                .setOption(subMessage.option)
+                .setMsg(TopicMessage.newBuilder()
+                    .setTopic(subMessage.topic)
+                    .setPublisher(subMessage.publisher)
+                    .setMessage(subMessage.message)
+                    .build())
+                .build());
+        }
+        return inserted;
+    }
+
     private InboxMessageList buildInboxMessageList(long beginSeq, List<SubMessage> subMessages) {
         InboxMessageList.Builder listBuilder = InboxMessageList.newBuilder();
         for (SubMessage subMessage : subMessages) {
@@ -905,7 +1000,7 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
         Map<String, Set<InboxMetadata>> toBeCached = new HashMap<>();
         for (BatchCommitRequest.Params params : request.getParamsList()) {
             Optional<InboxMetadata> metadataOpt =
-                tenantStates.get(params.getTenantId(), params.getInboxId(), params.getIncarnation());
+                tenantStates.get(params.getTenantId(), params.getInboxId(), params.getIncarnation(), reader);
             if (metadataOpt.isEmpty()) {
                 replyBuilder.addCode(BatchCommitReply.Code.NO_INBOX);
                 continue;
@@ -967,8 +1062,16 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
                                IKVReader reader,
                                IKVWriter writer) throws InvalidProtocolBufferException {
         if (startSeq <= commitSeq && commitSeq < nextSeq) {
+            // the first message list may begin before startSeq if its head was dropped by dropOldest
+            reader.refresh();
+            IKVIterator itr = reader.iterator();
+            itr.seekForPrev(keyGenerator.apply(scopedInboxId, startSeq));
+            if (!itr.isValid() || compare(itr.key(), keyGenerator.apply(scopedInboxId, 0L)) < 0) {
+                return;
+            }
+            long beginSeq = parseSeq(scopedInboxId, itr.key());
             while (startSeq <= commitSeq) {
-                ByteString msgKey = keyGenerator.apply(scopedInboxId, startSeq);
+                ByteString msgKey = keyGenerator.apply(scopedInboxId, beginSeq);
                 Optional<ByteString> msgListData = reader.get(msgKey);
                 if (msgListData.isEmpty()) {
                     break;
@@ -978,9 +1081,10 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
                 if (lastSeq <= commitSeq) {
                     writer.delete(msgKey);
                     startSeq = lastSeq + 1;
+                    beginSeq = startSeq;
                 } else {
                     writer.delete(msgKey);
-                    msgList = msgList.subList((int) (commitSeq - startSeq + 1), msgList.size());
+                    msgList = msgList.subList((int) (commitSeq - beginSeq + 1), msgList.size());
                     writer.insert(keyGenerator.apply(scopedInboxId, commitSeq + 1),
                         InboxMessageList.newBuilder().addAllMessage(msgList).build().toByteString());
                     startSeq = commitSeq + 1;
@@ -992,44 +1096,72 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
     }
 
     private void load() {
-        try (IKVCloseableReader reader = rangeReaderProvider.get()) {
-            IKVIterator itr = reader.iterator();
-            int probe = 0;
-            for (itr.seekToFirst(); itr.isValid(); ) {
-                if (isMetadataKey(itr.key())) {
-                    probe = 0;
-                    try {
-                        tenantStates.upsert(parseTenantId(itr.key()), InboxMetadata.parseFrom(itr.value()));
-                    } catch (InvalidProtocolBufferException e) {
-                        log.error("Unexpected error", e);
-                    } finally {
-                        itr.next();
-                        probe++;
+        if (loadExecutor == null) {
+            try (IKVCloseableReader reader = rangeReaderProvider.get()) {
+                load(reader, (tenantId, metadata) -> {
+                    tenantStates.upsert(tenantId, metadata);
+                    return true;
+                });
+            }
+            log.debug("Tenant states loaded: rangeId={}", KVRangeIdUtil.toString(id));
+            return;
+        }
+        // serve the range right away, the inboxes are read from range on demand until they are loaded in background
+        long gen = tenantStates.startLoading();
+        loadExecutor.execute(() -> {
+            try (IKVCloseableReader reader = rangeReaderProvider.get()) {
+                boolean completed = load(reader, (tenantId, metadata) -> {
+                    loadRateLimiter.acquire();
+                    return tenantStates.load(gen, tenantId, metadata);
+                });
+                if (completed && tenantStates.finishLoading(gen)) {
+                    log.debug("Tenant states loaded in background: rangeId={}", KVRangeIdUtil.toString(id));
+                }
+            } catch (Throwable e) {
+                log.error("Failed to load tenant states: rangeId={}", KVRangeIdUtil.toString(id), e);
+            }
+        });
+    }
+
+    private boolean load(IKVReader reader, BiPredicate<String, InboxMetadata> loader) {
+        IKVIterator itr = reader.iterator();
+        int probe = 0;
+        for (itr.seekToFirst(); itr.isValid(); ) {
+            if (isMetadataKey(itr.key())) {
+                probe = 0;
+                try {
+                    if (!loader.test(parseTenantId(itr.key()), InboxMetadata.parseFrom(itr.value()))) {
+                        return false;
                     }
+                } catch (InvalidProtocolBufferException e) {
+                    log.error("Unexpected error", e);
+                } finally {
+                    itr.next();
+                    probe++;
+                }
+            } else {
+                if (probe < 20) {
+                    itr.next();
+                    probe++;
                 } else {
-                    if (probe < 20) {
+                    if (hasInboxKeyPrefix(itr.key())) {
+                        itr.seek(inboxKeyUpperBound(parseInboxKeyPrefix(itr.key())));
+                    } else {
                         itr.next();
                         probe++;
-                    } else {
-                        if (hasInboxKeyPrefix(itr.key())) {
-                            itr.seek(inboxKeyUpperBound(parseInboxKeyPrefix(itr.key())));
-                        } else {
-                            itr.next();
-                            probe++;
-                        }
                     }
                 }
             }
-            log.debug("Tenant states loaded: rangeId={}", KVRangeIdUtil.toString(id));
         }
+        return true;
     }
 
-    private boolean hasExpired(InboxMetadata metadata, long nowTS) {
-        return hasExpired(metadata, metadata.getExpirySeconds(), nowTS);
+    private boolean hasExpired(CompactInboxMetadata metadata, long nowTS) {
+        return hasExpired(metadata.lastActiveTime, metadata.keepAliveSeconds, metadata.expirySeconds, nowTS);
     }
 
-    private boolean hasExpired(InboxMetadata metadata, int expirySeconds, long nowTS) {
-        Duration lastActiveTime = Duration.ofMillis(metadata.getLastActiveTime());
+    private boolean hasExpired(long lastActiveTS, int keepAliveSeconds, int expirySeconds, long nowTS) {
+        Duration lastActiveTime = Duration.ofMillis(lastActiveTS);
         if (Duration.ofMillis(initTime).compareTo(lastActiveTime) > 0) {
             // if lastActiveTime is before boot time, it may be expired
             // detach operation will refresh lastActiveTime
@@ -1038,17 +1170,16 @@ final class InboxStoreCoProc implements IKVRangeCoProc {
         Duration now = Duration.ofMillis(nowTS);
         // now > 1.5 * keepAlive + expirySeconds since last active time
         Duration expireAt = lastActiveTime
-            .plus(Duration.ofMillis((long) (Duration.ofSeconds(metadata.getKeepAliveSeconds()).toMillis() * 1.5)))
+            .plus(Duration.ofMillis((long) (Duration.ofSeconds(keepAliveSeconds).toMillis() * 1.5)))
             .plus(Duration.ofSeconds(expirySeconds));
         return now.compareTo(expireAt) > 0;
     }
 
-    private boolean isGCable(InboxMetadata metadata, GCRequest request) {
-        if (request.hasTenantId() && !request.getTenantId().equals(metadata.getClient().getTenantId())) {
-            return false;
-        }
+    private boolean isGCable(CompactInboxMetadata metadata, GCRequest request) {
+        // the metadata is held by the state of its tenant, so no need to check tenantId here
         if (request.hasExpirySeconds()) {
-            return hasExpired(metadata, request.getExpirySeconds(), request.getNow());
+            return hasExpired(metadata.lastActiveTime, metadata.keepAliveSeconds, request.getExpirySeconds(),
+                request.getNow());
         }
         return hasExpired(metadata, request.getNow());
     }
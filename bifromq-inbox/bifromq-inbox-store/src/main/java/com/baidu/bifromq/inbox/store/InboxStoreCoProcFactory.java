@@ -17,6 +17,7 @@ import static com.baidu.bifromq.basekv.utils.BoundaryUtil.upperBound;
 import static com.baidu.bifromq.inbox.util.KeyUtil.isInboxKey;
 import static com.baidu.bifromq.inbox.util.KeyUtil.parseInboxPrefix;
 
+import com.baidu.bifromq.baseenv.EnvProvider;
 import com.baidu.bifromq.basekv.proto.KVRangeId;
 import com.baidu.bifromq.basekv.store.api.IKVCloseableReader;
 import com.baidu.bifromq.basekv.store.api.IKVRangeCoProc;
@@ -27,17 +28,26 @@ import com.baidu.bifromq.basekv.store.range.hinter.MutationKVLoadBasedSplitHinte
 import com.baidu.bifromq.basekv.utils.KVRangeIdUtil;
 import com.baidu.bifromq.plugin.eventcollector.IEventCollector;
 import com.baidu.bifromq.plugin.settingprovider.ISettingProvider;
+import com.baidu.bifromq.sysprops.props.InboxStoreLazyLoad;
+import com.baidu.bifromq.sysprops.props.InboxStoreLazyLoadRate;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.RateLimiter;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 public class InboxStoreCoProcFactory implements IKVRangeCoProcFactory {
     private final ISettingProvider settingProvider;
     private final IEventCollector eventCollector;
     private final Duration loadEstWindow;
-
+    // the ranges are loaded in background one by one, sharing the load rate limit
+    private final ExecutorService loadExecutor;
+    private final RateLimiter loadRateLimiter;
 
     public InboxStoreCoProcFactory(ISettingProvider settingProvider,
                                    IEventCollector eventCollector,
@@ -45,6 +55,14 @@ public class InboxStoreCoProcFactory implements IKVRangeCoProcFactory {
         this.settingProvider = settingProvider;
         this.eventCollector = eventCollector;
         this.loadEstWindow = loadEstimateWindow;
+        if (InboxStoreLazyLoad.INSTANCE.get()) {
+            loadExecutor = Executors.newSingleThreadExecutor(
+                EnvProvider.INSTANCE.newThreadFactory("inbox-store-loader", true));
+            loadRateLimiter = RateLimiter.create(InboxStoreLazyLoadRate.INSTANCE.get());
+        } else {
+            loadExecutor = null;
+            loadRateLimiter = null;
+        }
     }
 
     @Override
@@ -63,9 +81,13 @@ public class InboxStoreCoProcFactory implements IKVRangeCoProcFactory {
                                        String storeId,
                                        KVRangeId id,
                                        Supplier<IKVCloseableReader> rangeReaderProvider) {
-        return new InboxStoreCoProc(clusterId, storeId, id, settingProvider, eventCollector, rangeReaderProvider);
+        return new InboxStoreCoProc(clusterId, storeId, id, settingProvider, eventCollector, rangeReaderProvider,
+            loadExecutor, loadRateLimiter);
     }
 
     public void close() {
+        if (loadExecutor != null) {
+            MoreExecutors.shutdownAndAwaitTermination(loadExecutor, 5, TimeUnit.SECONDS);
+        }
     }
 }
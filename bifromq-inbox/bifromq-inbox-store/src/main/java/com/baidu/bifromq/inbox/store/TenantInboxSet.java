@@ -23,16 +23,11 @@ import com.baidu.bifromq.metrics.ITenantMeter;
 import com.baidu.bifromq.plugin.eventcollector.IEventCollector;
 import com.baidu.bifromq.plugin.eventcollector.session.MQTTSessionStart;
 import com.baidu.bifromq.plugin.eventcollector.session.MQTTSessionStop;
-import com.google.common.collect.Sets;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -41,10 +36,12 @@ import java.util.stream.Collectors;
  * TenantInboxSet is used to hold all persistent session metadata in memory belonging to a tenant.
  */
 class TenantInboxSet {
+    private static final CompactInboxMetadata[] EMPTY = new CompactInboxMetadata[0];
     private final IEventCollector eventCollector;
     private final LongAdder totalSubCount = new LongAdder();
-    // inboxId -> incarnation -> inboxMetadata
-    private final Map<String, SortedMap<Long, InboxMetadata>> inboxMetadataMap = new ConcurrentHashMap<>();
+    // inboxId -> inboxMetadata sorted by incarnation, it's rare to have more than one incarnation for an inbox, so
+    // a copy-on-write array is used instead of sorted map
+    private final Map<String, CompactInboxMetadata[]> inboxMetadataMap = new ConcurrentHashMap<>();
     private final String tenantId;
     private final String[] tags;
 
@@ -62,54 +59,61 @@ class TenantInboxSet {
 
     void upsert(InboxMetadata metadata) {
         inboxMetadataMap.compute(metadata.getInboxId(), (k, v) -> {
+            CompactInboxMetadata compact = new CompactInboxMetadata(k, metadata);
             if (v == null) {
                 // persistent session's lifetime is bounded by its corresponding inbox replicas
                 // so for 3 replicas inbox setting, a logical persistent session will have triple session lifetime
                 eventCollector.report(getLocal(MQTTSessionStart.class)
                     .sessionId(metadata.getInboxId())
                     .clientInfo(metadata.getClient()));
-                v = new TreeMap<>();
+                v = EMPTY;
             }
-            v.compute(metadata.getIncarnation(), (k1, v1) -> {
-                if (v1 == null) {
-                    totalSubCount.add(metadata.getTopicFiltersCount());
-                } else {
-                    // update the total sub count and used space with delta
-                    totalSubCount.add(metadata.getTopicFiltersCount() - v1.getTopicFiltersCount());
-                }
-                return metadata;
-            });
-            return v;
+            int idx = indexOf(v, metadata.getIncarnation());
+            if (idx >= 0) {
+                // update the total sub count and used space with delta
+                totalSubCount.add(compact.topicFiltersCount - v[idx].topicFiltersCount);
+                CompactInboxMetadata[] updated = v.clone();
+                updated[idx] = compact;
+                return updated;
+            }
+            totalSubCount.add(compact.topicFiltersCount);
+            int insertAt = -(idx + 1);
+            CompactInboxMetadata[] updated = new CompactInboxMetadata[v.length + 1];
+            System.arraycopy(v, 0, updated, 0, insertAt);
+            updated[insertAt] = compact;
+            System.arraycopy(v, insertAt, updated, insertAt + 1, v.length - insertAt);
+            return updated;
         });
     }
 
     void remove(String inboxId, long incarnation) {
-        inboxMetadataMap.computeIfPresent(inboxId, (k, m) -> {
-            AtomicReference<InboxMetadata> removed = new AtomicReference<>();
-            m.computeIfPresent(incarnation, (k1, v1) -> {
-                // update the total sub count and used space with delta
-                totalSubCount.add(-v1.getTopicFiltersCount());
-                removed.set(v1);
-                return null;
-            });
-            if (m.isEmpty()) {
+        inboxMetadataMap.computeIfPresent(inboxId, (k, v) -> {
+            int idx = indexOf(v, incarnation);
+            if (idx < 0) {
+                return v;
+            }
+            // update the total sub count and used space with delta
+            totalSubCount.add(-v[idx].topicFiltersCount);
+            if (v.length == 1) {
                 eventCollector.report(getLocal(MQTTSessionStop.class)
                     .sessionId(inboxId)
-                    .clientInfo(removed.get().getClient()));
+                    .clientInfo(v[idx].decode().getClient()));
                 return null;
             }
-            return m;
+            CompactInboxMetadata[] updated = new CompactInboxMetadata[v.length - 1];
+            System.arraycopy(v, 0, updated, 0, idx);
+            System.arraycopy(v, idx + 1, updated, idx, v.length - idx - 1);
+            return updated;
         });
     }
 
     void removeAll() {
-        for (Map.Entry<String, SortedMap<Long, InboxMetadata>> entry : inboxMetadataMap.entrySet()) {
+        for (Map.Entry<String, CompactInboxMetadata[]> entry : inboxMetadataMap.entrySet()) {
             String inboxId = entry.getKey();
-            SortedMap<Long, InboxMetadata> map = entry.getValue();
-            assert !map.isEmpty();
-            Set<Long> keys = Sets.newHashSet(map.keySet());
-            for (Long incarnation : keys) {
-                remove(inboxId, incarnation);
+            CompactInboxMetadata[] metadataList = entry.getValue();
+            assert metadataList.length > 0;
+            for (CompactInboxMetadata metadata : metadataList) {
+                remove(inboxId, metadata.incarnation);
             }
         }
     }
@@ -119,16 +123,21 @@ class TenantInboxSet {
     }
 
     Optional<InboxMetadata> get(String inboxId, long incarnation) {
-        return Optional.ofNullable(
-            inboxMetadataMap.getOrDefault(inboxId, Collections.emptySortedMap()).get(incarnation));
+        return getCompact(inboxId, incarnation).map(CompactInboxMetadata::decode);
     }
 
-    Collection<InboxMetadata> getAll() {
-        return inboxMetadataMap.values().stream().flatMap(map -> map.values().stream()).collect(Collectors.toList());
+    Optional<CompactInboxMetadata> getCompact(String inboxId, long incarnation) {
+        CompactInboxMetadata[] metadataList = inboxMetadataMap.getOrDefault(inboxId, EMPTY);
+        int idx = indexOf(metadataList, incarnation);
+        return idx >= 0 ? Optional.of(metadataList[idx]) : Optional.empty();
     }
 
-    Collection<InboxMetadata> getAll(String inboxId) {
-        return inboxMetadataMap.getOrDefault(inboxId, Collections.emptySortedMap()).values();
+    Collection<CompactInboxMetadata> getAll() {
+        return inboxMetadataMap.values().stream().flatMap(Arrays::stream).collect(Collectors.toList());
+    }
+
+    Collection<CompactInboxMetadata> getAll(String inboxId) {
+        return Arrays.asList(inboxMetadataMap.getOrDefault(inboxId, EMPTY));
     }
 
     void destroy() {
@@ -136,4 +145,21 @@ class TenantInboxSet {
         ITenantMeter.stopGauging(tenantId, MqttPersistentSessionNumGauge, tags);
         ITenantMeter.stopGauging(tenantId, MqttPersistentSessionSpaceGauge, tags);
     }
+
+    private static int indexOf(CompactInboxMetadata[] metadataList, long incarnation) {
+        int low = 0;
+        int high = metadataList.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midIncarnation = metadataList[mid].incarnation;
+            if (midIncarnation < incarnation) {
+                low = mid + 1;
+            } else if (midIncarnation > incarnation) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
 }
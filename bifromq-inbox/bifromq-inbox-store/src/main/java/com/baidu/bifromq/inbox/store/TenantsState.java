@@ -15,38 +15,96 @@ package com.baidu.bifromq.inbox.store;
 
 import static com.baidu.bifromq.basekv.utils.BoundaryUtil.intersect;
 import static com.baidu.bifromq.basekv.utils.BoundaryUtil.upperBound;
+import static com.baidu.bifromq.inbox.util.KeyUtil.hasInboxKeyPrefix;
+import static com.baidu.bifromq.inbox.util.KeyUtil.inboxKeyPrefix;
+import static com.baidu.bifromq.inbox.util.KeyUtil.inboxKeyUpperBound;
+import static com.baidu.bifromq.inbox.util.KeyUtil.inboxPrefix;
+import static com.baidu.bifromq.inbox.util.KeyUtil.isMetadataKey;
+import static com.baidu.bifromq.inbox.util.KeyUtil.parseInboxId;
+import static com.baidu.bifromq.inbox.util.KeyUtil.parseInboxKeyPrefix;
 import static com.baidu.bifromq.inbox.util.KeyUtil.tenantPrefix;
 
 import com.baidu.bifromq.basekv.proto.Boundary;
 import com.baidu.bifromq.basekv.store.api.IKVCloseableReader;
+import com.baidu.bifromq.basekv.store.api.IKVIterator;
+import com.baidu.bifromq.basekv.store.api.IKVReader;
+import com.baidu.bifromq.inbox.records.ScopedInbox;
 import com.baidu.bifromq.inbox.storage.proto.InboxMetadata;
 import com.baidu.bifromq.plugin.eventcollector.IEventCollector;
+import com.baidu.bifromq.sysprops.props.InboxStoreDecodedMetadataCacheSize;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 class TenantsState {
+    /**
+     * The entry of expiry index, the inboxes last active before boot time are indexed by their last active time, since
+     * they may have expired already.
+     *
+     * @param gcAt     the time since when the inbox is gc-able
+     * @param tenantId the tenantId
+     * @param metadata the metadata of the inbox
+     */
+    record ExpiryEntry(long gcAt, String tenantId, CompactInboxMetadata metadata) {
+    }
+
+    private static final Comparator<ExpiryEntry> EXPIRY_ORDER = Comparator.comparingLong(ExpiryEntry::gcAt)
+        .thenComparing(ExpiryEntry::tenantId)
+        .thenComparing(e -> e.metadata.inboxId)
+        .thenComparingLong(e -> e.metadata.incarnation);
     private final Map<String, TenantInboxSet> tenantStates = new ConcurrentHashMap<>();
+    private final NavigableSet<ExpiryEntry> expiryIndex = new ConcurrentSkipListSet<>(EXPIRY_ORDER);
+    // the decoded metadata of recently mutated inboxes, keyed by the identity of the compact metadata which is replaced
+    // on every upsert, so a cached entry is never stale
+    private final Cache<CompactInboxMetadata, InboxMetadata> decodedCache;
     private final IEventCollector eventCollector;
     private final IKVCloseableReader reader;
+    private final long bootTime;
     private final String[] tags;
+    // the inboxes changed since loading started, whose state in range may be newer than the one seen by loader
+    private final Set<ScopedInbox> changedInLoading = ConcurrentHashMap.newKeySet();
+    private volatile boolean loading;
+    private long loadingGen;
     private transient Boundary boundary;
 
     TenantsState(IEventCollector eventCollector, IKVCloseableReader reader, String... tags) {
+        this(eventCollector, reader, 0, tags);
+    }
+
+    TenantsState(IEventCollector eventCollector, IKVCloseableReader reader, long bootTime, String... tags) {
+        this(eventCollector, reader, bootTime, InboxStoreDecodedMetadataCacheSize.INSTANCE.get(), tags);
+    }
+
+    TenantsState(IEventCollector eventCollector,
+                 IKVCloseableReader reader,
+                 long bootTime,
+                 int decodedCacheSize,
+                 String... tags) {
         this.eventCollector = eventCollector;
         this.reader = reader;
+        this.bootTime = bootTime;
         this.tags = tags;
+        this.decodedCache = Caffeine.newBuilder().maximumSize(decodedCacheSize).build();
         boundary = reader.boundary();
     }
 
-    Collection<InboxMetadata> getAll(String tenantId) {
+    Collection<CompactInboxMetadata> getAll(String tenantId) {
         TenantInboxSet inboxSet = tenantStates.get(tenantId);
         if (inboxSet == null) {
             return Collections.emptyList();
@@ -54,7 +112,7 @@ class TenantsState {
         return inboxSet.getAll();
     }
 
-    Collection<InboxMetadata> getAll(String tenantId, String inboxId) {
+    Collection<CompactInboxMetadata> getAll(String tenantId, String inboxId) {
         TenantInboxSet inboxSet = tenantStates.get(tenantId);
         if (inboxSet == null) {
             return Collections.emptyList();
@@ -63,24 +121,166 @@ class TenantsState {
     }
 
     Optional<InboxMetadata> get(String tenantId, String inboxId, long incarnation) {
+        return getCompact(tenantId, inboxId, incarnation)
+            .map(compact -> decodedCache.get(compact, CompactInboxMetadata::decode));
+    }
+
+    Optional<CompactInboxMetadata> getCompact(String tenantId, String inboxId, long incarnation) {
         TenantInboxSet inboxSet = tenantStates.get(tenantId);
         if (inboxSet == null) {
             return Optional.empty();
         }
-        return inboxSet.get(inboxId, incarnation);
+        return inboxSet.getCompact(inboxId, incarnation);
+    }
+
+    /**
+     * Get the inbox metadata, which is read from range if it's not loaded yet.
+     *
+     * @param tenantId    the tenantId
+     * @param inboxId     the inboxId
+     * @param incarnation the incarnation
+     * @param reader      the reader of range
+     * @return the inbox metadata
+     */
+    Optional<InboxMetadata> get(String tenantId, String inboxId, long incarnation, IKVReader reader) {
+        Optional<InboxMetadata> metadata = get(tenantId, inboxId, incarnation);
+        if (metadata.isPresent() || !loading) {
+            return metadata;
+        }
+        return reader.get(inboxKeyPrefix(tenantId, inboxId, incarnation)).map(this::parse);
+    }
+
+    Optional<CompactInboxMetadata> getCompact(String tenantId, String inboxId, long incarnation, IKVReader reader) {
+        Optional<CompactInboxMetadata> metadata = getCompact(tenantId, inboxId, incarnation);
+        if (metadata.isPresent() || !loading) {
+            return metadata;
+        }
+        return reader.get(inboxKeyPrefix(tenantId, inboxId, incarnation))
+            .map(value -> new CompactInboxMetadata(inboxId, parse(value)));
+    }
+
+    Collection<CompactInboxMetadata> getAll(String tenantId, String inboxId, IKVReader reader) {
+        if (!loading) {
+            return getAll(tenantId, inboxId);
+        }
+        return scan(inboxPrefix(tenantId, inboxId), reader);
+    }
+
+    Collection<CompactInboxMetadata> getAll(String tenantId, IKVReader reader) {
+        if (!loading) {
+            return getAll(tenantId);
+        }
+        return scan(tenantPrefix(tenantId), reader);
     }
 
     Collection<String> getAllTenantIds() {
         return tenantStates.keySet();
     }
 
+    /**
+     * Get the inboxes of all tenants in the order of the time since when they are gc-able.
+     *
+     * @return the expiry index
+     */
+    Iterable<ExpiryEntry> getAllByExpiry() {
+        return expiryIndex;
+    }
+
+    /**
+     * Start loading inboxes in background, the inboxes not loaded yet will be read from range on demand until loading
+     * finished.
+     *
+     * @return the generation of the loading
+     */
+    synchronized long startLoading() {
+        loading = true;
+        changedInLoading.clear();
+        return ++loadingGen;
+    }
+
+    /**
+     * Load the inbox metadata read by loader, unless it's changed since loading started.
+     *
+     * @param gen      the generation of the loading
+     * @param tenantId the tenantId
+     * @param metadata the inbox metadata
+     * @return false if the loading has been aborted
+     */
+    synchronized boolean load(long gen, String tenantId, InboxMetadata metadata) {
+        if (gen != loadingGen) {
+            return false;
+        }
+        if (!changedInLoading.contains(
+            new ScopedInbox(tenantId, metadata.getInboxId(), metadata.getIncarnation()))) {
+            doUpsert(tenantId, metadata, false);
+        }
+        return true;
+    }
+
+    /**
+     * Finish the loading.
+     *
+     * @param gen the generation of the loading
+     * @return false if the loading has been aborted
+     */
+    synchronized boolean finishLoading(long gen) {
+        if (gen != loadingGen) {
+            return false;
+        }
+        loading = false;
+        changedInLoading.clear();
+        return true;
+    }
+
+    boolean isLoading() {
+        return loading;
+    }
+
     void upsert(String tenantId, InboxMetadata metadata) {
-        tenantStates.computeIfAbsent(tenantId, k ->
-            new TenantInboxSet(eventCollector, tenantId, getTenantUsedSpace(tenantId), tags)).upsert(metadata);
+        if (loading) {
+            synchronized (this) {
+                changedInLoading.add(new ScopedInbox(tenantId, metadata.getInboxId(), metadata.getIncarnation()));
+                doUpsert(tenantId, metadata, true);
+            }
+            return;
+        }
+        doUpsert(tenantId, metadata, true);
+    }
+
+    private void doUpsert(String tenantId, InboxMetadata metadata, boolean cacheDecoded) {
+        TenantInboxSet inboxSet = tenantStates.computeIfAbsent(tenantId, k ->
+            new TenantInboxSet(eventCollector, tenantId, getTenantUsedSpace(tenantId), tags));
+        inboxSet.getCompact(metadata.getInboxId(), metadata.getIncarnation()).ifPresent(prev -> {
+            expiryIndex.remove(toExpiryEntry(tenantId, prev));
+            decodedCache.invalidate(prev);
+        });
+        inboxSet.upsert(metadata);
+        inboxSet.getCompact(metadata.getInboxId(), metadata.getIncarnation()).ifPresent(compact -> {
+            expiryIndex.add(toExpiryEntry(tenantId, compact));
+            if (cacheDecoded) {
+                // the inbox mutated is likely to be mutated again soon, e.g. by the next insert or commit
+                decodedCache.put(compact, metadata);
+            }
+        });
     }
 
     void remove(String tenantId, String inboxId, long incarnation) {
+        if (loading) {
+            synchronized (this) {
+                changedInLoading.add(new ScopedInbox(tenantId, inboxId, incarnation));
+                doRemove(tenantId, inboxId, incarnation);
+            }
+            return;
+        }
+        doRemove(tenantId, inboxId, incarnation);
+    }
+
+    private void doRemove(String tenantId, String inboxId, long incarnation) {
         tenantStates.computeIfPresent(tenantId, (k, v) -> {
+            v.getCompact(inboxId, incarnation).ifPresent(prev -> {
+                expiryIndex.remove(toExpiryEntry(tenantId, prev));
+                decodedCache.invalidate(prev);
+            });
             v.remove(inboxId, incarnation);
             if (v.isEmpty()) {
                 v.destroy();
@@ -90,10 +290,16 @@ class TenantsState {
         });
     }
 
-    void reset() {
+    synchronized void reset() {
+        // abort the ongoing loading
+        loadingGen++;
+        loading = false;
+        changedInLoading.clear();
         tenantStates.values().forEach(TenantInboxSet::removeAll);
         tenantStates.values().forEach(TenantInboxSet::destroy);
         tenantStates.clear();
+        expiryIndex.clear();
+        decodedCache.invalidateAll();
         boundary = reader.boundary();
     }
 
@@ -102,6 +308,35 @@ class TenantsState {
         reader.close();
     }
 
+    private Collection<CompactInboxMetadata> scan(ByteString prefix, IKVReader reader) {
+        List<CompactInboxMetadata> metadataList = new ArrayList<>();
+        IKVIterator itr = reader.iterator();
+        for (itr.seek(prefix); itr.isValid() && itr.key().startsWith(prefix); ) {
+            if (isMetadataKey(itr.key())) {
+                metadataList.add(new CompactInboxMetadata(parseInboxId(itr.key()), parse(itr.value())));
+                itr.seek(inboxKeyUpperBound(itr.key()));
+            } else if (hasInboxKeyPrefix(itr.key())) {
+                itr.seek(inboxKeyUpperBound(parseInboxKeyPrefix(itr.key())));
+            } else {
+                itr.next();
+            }
+        }
+        return metadataList;
+    }
+
+    private InboxMetadata parse(ByteString value) {
+        try {
+            return InboxMetadata.parseFrom(value);
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException("Unable to parse inbox metadata", e);
+        }
+    }
+
+    private ExpiryEntry toExpiryEntry(String tenantId, CompactInboxMetadata metadata) {
+        long gcAt = metadata.lastActiveTime < bootTime ? metadata.lastActiveTime : metadata.expireAt();
+        return new ExpiryEntry(gcAt, tenantId, metadata);
+    }
+
     private Supplier<Number> getTenantUsedSpace(String tenantId) {
         return () -> {
             try {
@@ -36,6 +36,7 @@ import com.baidu.bifromq.plugin.eventcollector.inboxservice.Overflowed;
 import com.baidu.bifromq.type.ClientInfo;
 import com.baidu.bifromq.type.QoS;
 import com.baidu.bifromq.type.TopicMessagePack;
+import java.util.List;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import org.mockito.ArgumentCaptor;
@@ -151,6 +152,63 @@ public class InboxInsertTest extends InboxStoreTest {
         assertEquals(fetched, fetched1);
     }
 
+    protected void fetchMultipleInboxes(QoS qos) {
+        long now = 0;
+        String tenantId = "tenantId-" + System.nanoTime();
+        long incarnation = System.nanoTime();
+        String topicFilter = "/a/b/c";
+        ClientInfo client = ClientInfo.newBuilder().setTenantId(tenantId).build();
+        // inboxes are listed in reverse order of their keys
+        String[] inboxIds = {"inboxId-c", "inboxId-b", "inboxId-a"};
+        BatchFetchRequest.Params[] fetchParams = new BatchFetchRequest.Params[inboxIds.length];
+        for (int i = 0; i < inboxIds.length; i++) {
+            requestCreate(BatchCreateRequest.Params.newBuilder()
+                .setInboxId(inboxIds[i])
+                .setIncarnation(incarnation)
+                .setKeepAliveSeconds(2)
+                .setExpirySeconds(2)
+                .setLimit(10)
+                .setClient(client)
+                .setNow(now)
+                .build());
+            requestSub(BatchSubRequest.Params.newBuilder()
+                .setTenantId(tenantId)
+                .setInboxId(inboxIds[i])
+                .setIncarnation(incarnation)
+                .setVersion(0)
+                .setTopicFilter(topicFilter)
+                .setOption(TopicFilterOption.newBuilder().setQos(qos).build())
+                .setNow(now)
+                .build());
+            requestInsert(InboxSubMessagePack.newBuilder()
+                .setTenantId(tenantId)
+                .setInboxId(inboxIds[i])
+                .setIncarnation(incarnation)
+                .addMessagePack(SubMessagePack.newBuilder()
+                    .setTopicFilter(topicFilter)
+                    .addMessages(TopicMessagePack.newBuilder()
+                        .setTopic(topicFilter)
+                        .addMessage(message(qos, inboxIds[i]))
+                        .build())
+                    .build())
+                .build());
+            fetchParams[i] = BatchFetchRequest.Params.newBuilder()
+                .setTenantId(tenantId)
+                .setInboxId(inboxIds[i])
+                .setIncarnation(incarnation)
+                .setMaxFetch(10)
+                .build();
+        }
+        List<Fetched> fetched = requestFetch(fetchParams);
+        assertEquals(fetched.size(), inboxIds.length);
+        for (int i = 0; i < inboxIds.length; i++) {
+            assertEquals(fetched.get(i).getResult(), Fetched.Result.OK);
+            assertEquals(msgCountGetter(qos).apply(fetched.get(i)), 1);
+            assertEquals(msgGetter(qos).apply(fetched.get(i), 0).getMsg().getMessage().getPayload().toStringUtf8(),
+                inboxIds[i]);
+        }
+    }
+
     protected void fetchWithMaxLimit(QoS qos) {
         long now = 0;
         String tenantId = "tenantId-" + System.nanoTime();
@@ -671,6 +729,144 @@ public class InboxInsertTest extends InboxStoreTest {
         assertEquals(msgGetter(qos).apply(fetched, 1).getMsg().getMessage(), msg2.getMessage(0));
     }
 
+    protected void insertDropOldestPartially(QoS qos) {
+        long now = 0;
+        String tenantId = "tenantId-" + System.nanoTime();
+        String inboxId = "inboxId-" + System.nanoTime();
+        long incarnation = System.nanoTime();
+        String topicFilter = "/a/b/c";
+        ClientInfo client = ClientInfo.newBuilder().setTenantId(tenantId).build();
+        requestCreate(BatchCreateRequest.Params.newBuilder()
+            .setInboxId(inboxId)
+            .setIncarnation(incarnation)
+            .setKeepAliveSeconds(2)
+            .setExpirySeconds(2)
+            .setDropOldest(true)
+            .setLimit(3)
+            .setClient(client)
+            .setNow(now)
+            .build());
+        requestSub(BatchSubRequest.Params.newBuilder()
+            .setTenantId(tenantId)
+            .setInboxId(inboxId)
+            .setIncarnation(incarnation)
+            .setVersion(0)
+            .setTopicFilter(topicFilter)
+            .setOption(TopicFilterOption.newBuilder().setQos(qos).build())
+            .setNow(now)
+            .build());
+        // seq 0-2 are stored in one message list
+        insert(tenantId, inboxId, incarnation, topicFilter, qos, "a", "b", "c");
+        // the head of the first message list is dropped
+        insert(tenantId, inboxId, incarnation, topicFilter, qos, "d");
+        insert(tenantId, inboxId, incarnation, topicFilter, qos, "e");
+        assertPayloads(fetch(tenantId, inboxId, incarnation), qos, 2, "c", "d", "e");
+
+        BatchCommitRequest.Params.Builder paramsBuilder = BatchCommitRequest.Params.newBuilder()
+            .setTenantId(tenantId)
+            .setInboxId(inboxId)
+            .setIncarnation(incarnation)
+            .setVersion(0)
+            .setNow(now);
+        switch (qos) {
+            case AT_MOST_ONCE -> paramsBuilder.setQos0UpToSeq(2);
+            case AT_LEAST_ONCE, EXACTLY_ONCE -> paramsBuilder.setSendBufferUpToSeq(2);
+        }
+        // the first message list is committed as a whole
+        assertEquals(requestCommit(paramsBuilder.build()).get(0), BatchCommitReply.Code.OK);
+        assertPayloads(fetch(tenantId, inboxId, incarnation), qos, 3, "d", "e");
+
+        insert(tenantId, inboxId, incarnation, topicFilter, qos, "f", "g");
+        assertPayloads(fetch(tenantId, inboxId, incarnation), qos, 4, "e", "f", "g");
+    }
+
+    protected void insertReturnInserted(QoS qos) {
+        long now = 0;
+        String tenantId = "tenantId-" + System.nanoTime();
+        String inboxId = "inboxId-" + System.nanoTime();
+        long incarnation = System.nanoTime();
+        String topicFilter = "/a/b/c";
+        ClientInfo client = ClientInfo.newBuilder().setTenantId(tenantId).build();
+        requestCreate(BatchCreateRequest.Params.newBuilder()
+            .setInboxId(inboxId)
+            .setIncarnation(incarnation)
+            .setKeepAliveSeconds(2)
+            .setExpirySeconds(2)
+            .setLimit(3)
+            .setClient(client)
+            .setNow(now)
+            .build());
+        requestSub(BatchSubRequest.Params.newBuilder()
+            .setTenantId(tenantId)
+            .setInboxId(inboxId)
+            .setIncarnation(incarnation)
+            .setVersion(0)
+            .setTopicFilter(topicFilter)
+            .setOption(TopicFilterOption.newBuilder().setQos(qos).build())
+            .setNow(now)
+            .build());
+        BatchInsertReply.Result result = insert(tenantId, inboxId, incarnation, topicFilter, qos, true, "a", "b");
+        assertPayloads(result.getInserted(), qos, 0, "a", "b");
+
+        // the dropped youngest message is not returned
+        result = insert(tenantId, inboxId, incarnation, topicFilter, qos, true, "c", "d");
+        assertPayloads(result.getInserted(), qos, 2, "c");
+
+        result = insert(tenantId, inboxId, incarnation, topicFilter, qos, false, "e");
+        assertFalse(result.hasInserted());
+    }
+
+    private void insert(String tenantId,
+                        String inboxId,
+                        long incarnation,
+                        String topicFilter,
+                        QoS qos,
+                        String... payloads) {
+        insert(tenantId, inboxId, incarnation, topicFilter, qos, false, payloads);
+    }
+
+    private BatchInsertReply.Result insert(String tenantId,
+                                           String inboxId,
+                                           long incarnation,
+                                           String topicFilter,
+                                           QoS qos,
+                                           boolean returnInserted,
+                                           String... payloads) {
+        TopicMessagePack.Builder msgPackBuilder = TopicMessagePack.newBuilder().setTopic(topicFilter);
+        for (String payload : payloads) {
+            msgPackBuilder.addMessage(message(qos, payload));
+        }
+        return requestInsert(InboxSubMessagePack.newBuilder()
+            .setTenantId(tenantId)
+            .setInboxId(inboxId)
+            .setIncarnation(incarnation)
+            .setReturnInserted(returnInserted)
+            .addMessagePack(SubMessagePack.newBuilder()
+                .setTopicFilter(topicFilter)
+                .addMessages(msgPackBuilder.build())
+                .build())
+            .build()).get(0);
+    }
+
+    private Fetched fetch(String tenantId, String inboxId, long incarnation) {
+        return requestFetch(BatchFetchRequest.Params.newBuilder()
+            .setTenantId(tenantId)
+            .setInboxId(inboxId)
+            .setIncarnation(incarnation)
+            .setMaxFetch(10)
+            .build())
+            .get(0);
+    }
+
+    private void assertPayloads(Fetched fetched, QoS qos, long beginSeq, String... payloads) {
+        assertEquals(msgCountGetter(qos).apply(fetched), payloads.length);
+        for (int i = 0; i < payloads.length; i++) {
+            InboxMessage inboxMsg = msgGetter(qos).apply(fetched, i);
+            assertEquals(inboxMsg.getSeq(), beginSeq + i);
+            assertEquals(inboxMsg.getMsg().getMessage().getPayload().toStringUtf8(), payloads[i]);
+        }
+    }
+
     protected void insertDropYoungest(QoS qos) {
         clearInvocations(eventCollector);
         long now = 0;
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.inbox.store;
+
+import com.baidu.bifromq.inbox.storage.proto.InboxMetadata;
+import com.baidu.bifromq.inbox.storage.proto.TopicFilterOption;
+import com.baidu.bifromq.type.ClientInfo;
+import com.baidu.bifromq.type.QoS;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.SneakyThrows;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compare the retained heap of holding inbox metadata in parsed form, which is the previous layout of
+ * {@link TenantInboxSet}, and in compact form. The inboxes held and their retained heap bytes are reported as the
+ * secondary results.
+ */
+@State(Scope.Benchmark)
+public class InboxMetadataHeapBenchmark {
+    private static final String TENANT_ID = "tenant";
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    @Param({"100000"})
+    private int inboxCount;
+
+    @Param({"10"})
+    private int topicFiltersPerInbox;
+
+    private InboxMetadata[] metadataList;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class HeapCounter {
+        public long inboxes;
+        public long retainedBytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        metadataList = new InboxMetadata[inboxCount];
+        for (int i = 0; i < inboxCount; i++) {
+            InboxMetadata.Builder builder = InboxMetadata.newBuilder()
+                .setInboxId("inbox-" + i)
+                .setIncarnation(System.nanoTime())
+                .setVersion(1)
+                .setLastActiveTime(System.currentTimeMillis())
+                .setKeepAliveSeconds(60)
+                .setExpirySeconds(3600)
+                .setLimit(1000)
+                .setClient(ClientInfo.newBuilder()
+                    .setTenantId(TENANT_ID)
+                    .setType("mqtt")
+                    .putMetadata("clientId", "client-" + i)
+                    .putMetadata("userId", "user-" + i)
+                    .putMetadata("address", "127.0.0.1:" + i)
+                    .build());
+            for (int j = 0; j < topicFiltersPerInbox; j++) {
+                builder.putTopicFilters("device/" + i + "/topic/" + j,
+                    TopicFilterOption.newBuilder().setQos(QoS.AT_LEAST_ONCE).build());
+            }
+            // make every inbox hold its own copy of strings as if they were parsed from storage
+            metadataList[i] = parse(builder.build());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public void parsed(HeapCounter counter, Blackhole blackhole) {
+        long before = usedHeap();
+        Map<String, SortedMap<Long, InboxMetadata>> inboxMetadataMap = new ConcurrentHashMap<>();
+        for (InboxMetadata metadata : metadataList) {
+            InboxMetadata copy = parse(metadata);
+            inboxMetadataMap.computeIfAbsent(copy.getInboxId(), k -> new TreeMap<>()).put(copy.getIncarnation(), copy);
+        }
+        counter.inboxes = inboxCount;
+        counter.retainedBytes = usedHeap() - before;
+        blackhole.consume(inboxMetadataMap);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public void compact(HeapCounter counter, Blackhole blackhole) {
+        long before = usedHeap();
+        TenantInboxSet inboxSet = new TenantInboxSet(event -> {
+        }, TENANT_ID, () -> 0);
+        for (InboxMetadata metadata : metadataList) {
+            inboxSet.upsert(parse(metadata));
+        }
+        counter.inboxes = inboxCount;
+        counter.retainedBytes = usedHeap() - before;
+        blackhole.consume(inboxSet);
+        inboxSet.destroy();
+    }
+
+    @SneakyThrows
+    private static InboxMetadata parse(InboxMetadata metadata) {
+        return InboxMetadata.parseFrom(metadata.toByteString());
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+
+    @SneakyThrows
+    public static void main(String[] args) {
+        Options opt = new OptionsBuilder()
+            .include(InboxMetadataHeapBenchmark.class.getSimpleName())
+            .forks(1)
+            .warmupIterations(1)
+            .measurementIterations(3)
+            .build();
+        new Runner(opt).run();
+    }
+}
@@ -23,6 +23,11 @@ public class QoS0Test extends InboxInsertTest {
         fetchWithoutStartAfter(AT_MOST_ONCE);
     }
 
+    @Test(groups = "integration")
+    public void fetchMultipleInboxes() {
+        fetchMultipleInboxes(AT_MOST_ONCE);
+    }
+
     @Test(groups = "integration")
     public void fetchWithStartAfter() {
         fetchWithStartAfter(AT_MOST_ONCE);
@@ -43,9 +48,19 @@ public class QoS0Test extends InboxInsertTest {
         insertDropOldest(AT_MOST_ONCE);
     }
 
+    @Test(groups = "integration")
+    public void insertDropOldestPartially() {
+        insertDropOldestPartially(AT_MOST_ONCE);
+    }
+
     @Test(groups = "integration")
     public void insertDropYoungest() {
         insertDropYoungest(AT_MOST_ONCE);
     }
+
+    @Test(groups = "integration")
+    public void insertReturnInserted() {
+        insertReturnInserted(AT_MOST_ONCE);
+    }
 }
 
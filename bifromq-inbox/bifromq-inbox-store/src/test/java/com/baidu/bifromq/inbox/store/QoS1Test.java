@@ -23,6 +23,11 @@ public class QoS1Test extends InboxInsertTest {
         fetchWithoutStartAfter(AT_LEAST_ONCE);
     }
 
+    @Test(groups = "integration")
+    public void fetchMultipleInboxes() {
+        fetchMultipleInboxes(AT_LEAST_ONCE);
+    }
+
     @Test(groups = "integration")
     public void fetchWithMaxLimit() {
         fetchWithMaxLimit(AT_LEAST_ONCE);
@@ -47,5 +52,10 @@ public class QoS1Test extends InboxInsertTest {
     public void insertDropYoungest() {
         insertDropYoungest(AT_LEAST_ONCE);
     }
+
+    @Test(groups = "integration")
+    public void insertReturnInserted() {
+        insertReturnInserted(AT_LEAST_ONCE);
+    }
 }
 
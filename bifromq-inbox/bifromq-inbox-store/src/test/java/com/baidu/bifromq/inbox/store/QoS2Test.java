@@ -23,6 +23,11 @@ public class QoS2Test extends InboxInsertTest {
         fetchWithoutStartAfter(EXACTLY_ONCE);
     }
 
+    @Test(groups = "integration")
+    public void fetchMultipleInboxes() {
+        fetchMultipleInboxes(EXACTLY_ONCE);
+    }
+
     @Test(groups = "integration")
     public void fetchWithMaxLimit() {
         fetchWithMaxLimit(EXACTLY_ONCE);
@@ -47,5 +52,10 @@ public class QoS2Test extends InboxInsertTest {
     public void insertDropYoungest() {
         insertDropYoungest(EXACTLY_ONCE);
     }
+
+    @Test(groups = "integration")
+    public void insertReturnInserted() {
+        insertReturnInserted(EXACTLY_ONCE);
+    }
 }
 
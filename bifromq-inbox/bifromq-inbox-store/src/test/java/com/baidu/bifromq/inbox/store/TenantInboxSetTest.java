@@ -28,6 +28,7 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.List;
 import java.util.function.Supplier;
 
 import static com.baidu.bifromq.metrics.TenantMetric.MqttPersistentSessionNumGauge;
@@ -235,6 +236,38 @@ public class TenantInboxSetTest extends MeterTest {
         inboxSet.destroy();
     }
 
+    @Test
+    public void testGetCompact() {
+        String tenantId = "tenantId-" + System.nanoTime();
+        Supplier<Number> usedSpaceGetter = Mockito.mock(Supplier.class);
+        when(usedSpaceGetter.get()).thenReturn(1);
+        TenantInboxSet inboxSet = new TenantInboxSet(eventCollector, tenantId, usedSpaceGetter);
+        for (long incarnation : new long[] {3, 1, 2}) {
+            inboxSet.upsert(InboxMetadata.newBuilder()
+                .setInboxId("testInboxId")
+                .setIncarnation(incarnation)
+                .setVersion(incarnation)
+                .setQos0NextSeq(10)
+                .setSendBufferStartSeq(5)
+                .setSendBufferNextSeq(20)
+                .putTopicFilters("topic1", TopicFilterOption.getDefaultInstance())
+                .build());
+        }
+        inboxSet.remove("testInboxId", 2);
+        assertEquals(inboxSet.getAll("testInboxId").stream().map(m -> m.incarnation).toList(), List.of(1L, 3L));
+        assertFalse(inboxSet.getCompact("testInboxId", 2).isPresent());
+        CompactInboxMetadata compact = inboxSet.getCompact("testInboxId", 3).get();
+        assertEquals(compact.inboxId, "testInboxId");
+        assertEquals(compact.version, 3);
+        assertEquals(compact.qos0NextSeq, 10);
+        assertEquals(compact.sendBufferStartSeq, 5);
+        assertEquals(compact.sendBufferNextSeq, 20);
+        assertEquals(compact.topicFiltersCount, 1);
+        assertEquals(compact.decode(), inboxSet.get("testInboxId", 3).get());
+        assertGaugeValue(tenantId, MqttPersistentSubCountGauge, 2);
+        inboxSet.destroy();
+    }
+
     @Test
     public void testRemoveAll() {
         String tenantId = "tenantId-" + System.nanoTime();
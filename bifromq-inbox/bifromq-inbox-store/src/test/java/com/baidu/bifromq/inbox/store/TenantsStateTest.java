@@ -14,6 +14,7 @@
 package com.baidu.bifromq.inbox.store;
 
 import static com.baidu.bifromq.basekv.utils.BoundaryUtil.FULL_BOUNDARY;
+import static com.baidu.bifromq.inbox.util.KeyUtil.inboxKeyPrefix;
 import static com.baidu.bifromq.metrics.TenantMetric.MqttPersistentSessionNumGauge;
 import static com.baidu.bifromq.metrics.TenantMetric.MqttPersistentSessionSpaceGauge;
 import static com.baidu.bifromq.metrics.TenantMetric.MqttPersistentSubCountGauge;
@@ -22,11 +23,17 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 import com.baidu.bifromq.basekv.store.api.IKVCloseableReader;
 import com.baidu.bifromq.inbox.storage.proto.InboxMetadata;
 import com.baidu.bifromq.plugin.eventcollector.IEventCollector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import lombok.SneakyThrows;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -84,6 +91,37 @@ public class TenantsStateTest extends MeterTest {
         assertTrue(tenantsState.get(tenantId, inboxMetadata.getInboxId(), inboxMetadata.getIncarnation()).isPresent());
     }
 
+    @Test
+    public void testDecodedCache() {
+        when(reader.size(any())).thenReturn(1L);
+        String tenantId = "tenantId" + System.nanoTime();
+        InboxMetadata inboxMetadata = InboxMetadata.newBuilder()
+            .setInboxId("testInboxId")
+            .setIncarnation(1)
+            .build();
+        TenantsState tenantsState = new TenantsState(eventCollector, reader);
+        tenantsState.upsert(tenantId, inboxMetadata);
+        // the metadata upserted is reused instead of decoded again
+        assertSame(tenantsState.get(tenantId, "testInboxId", 1).get(), inboxMetadata);
+
+        InboxMetadata updated = inboxMetadata.toBuilder().setVersion(1).build();
+        tenantsState.upsert(tenantId, updated);
+        assertSame(tenantsState.get(tenantId, "testInboxId", 1).get(), updated);
+
+        tenantsState.remove(tenantId, "testInboxId", 1);
+        assertTrue(tenantsState.get(tenantId, "testInboxId", 1).isEmpty());
+
+        // the metadata loaded is decoded on first access
+        InboxMetadata loaded = inboxMetadata.toBuilder().setVersion(2).build();
+        long gen = tenantsState.startLoading();
+        assertTrue(tenantsState.load(gen, tenantId, loaded));
+        assertTrue(tenantsState.finishLoading(gen));
+        InboxMetadata decoded = tenantsState.get(tenantId, "testInboxId", 1).get();
+        assertNotSame(decoded, loaded);
+        assertEquals(decoded, loaded);
+        assertSame(tenantsState.get(tenantId, "testInboxId", 1).get(), decoded);
+    }
+
     @Test
     public void testRemove() {
         when(reader.size(any())).thenReturn(1L);
@@ -110,6 +148,38 @@ public class TenantsStateTest extends MeterTest {
         assertNoGauge(tenantId, MqttPersistentSessionSpaceGauge);
     }
 
+    @Test
+    public void testExpiryIndex() {
+        when(reader.size(any())).thenReturn(1L);
+        String tenantId = "tenantId" + System.nanoTime();
+        long bootTime = 10000;
+        TenantsState tenantsState = new TenantsState(eventCollector, reader, bootTime);
+        // expire at 10000 + 1500 + 1000
+        tenantsState.upsert(tenantId, InboxMetadata.newBuilder()
+            .setInboxId("inbox1").setIncarnation(1).setLastActiveTime(10000).setKeepAliveSeconds(1).setExpirySeconds(1)
+            .build());
+        // last active before boot
+        tenantsState.upsert(tenantId, InboxMetadata.newBuilder()
+            .setInboxId("inbox2").setIncarnation(1).setLastActiveTime(5000).setKeepAliveSeconds(10)
+            .setExpirySeconds(10).build());
+        // expire at 11000 + 0 + 1000
+        tenantsState.upsert(tenantId, InboxMetadata.newBuilder()
+            .setInboxId("inbox3").setIncarnation(1).setLastActiveTime(11000).setExpirySeconds(1).build());
+        assertEquals(expiryOrder(tenantsState), List.of("inbox2", "inbox3", "inbox1"));
+
+        // touched
+        tenantsState.upsert(tenantId, InboxMetadata.newBuilder()
+            .setInboxId("inbox2").setIncarnation(1).setLastActiveTime(20000).setKeepAliveSeconds(10)
+            .setExpirySeconds(10).build());
+        assertEquals(expiryOrder(tenantsState), List.of("inbox3", "inbox1", "inbox2"));
+
+        tenantsState.remove(tenantId, "inbox3", 1);
+        assertEquals(expiryOrder(tenantsState), List.of("inbox1", "inbox2"));
+
+        tenantsState.reset();
+        assertTrue(expiryOrder(tenantsState).isEmpty());
+    }
+
     @Test
     public void testReset() {
         when(reader.size(any())).thenReturn(1L);
@@ -155,4 +225,68 @@ public class TenantsStateTest extends MeterTest {
         assertNoGauge(tenantId, MqttPersistentSessionSpaceGauge);
         verify(reader).close();
     }
+
+    @Test
+    public void testReadOnDemandInLoading() {
+        when(reader.size(any())).thenReturn(1L);
+        String tenantId = "tenantId" + System.nanoTime();
+        InboxMetadata inboxMetadata = InboxMetadata.newBuilder()
+            .setInboxId("testInboxId")
+            .setIncarnation(1)
+            .build();
+        when(reader.get(inboxKeyPrefix(tenantId, inboxMetadata.getInboxId(), inboxMetadata.getIncarnation())))
+            .thenReturn(Optional.of(inboxMetadata.toByteString()));
+        TenantsState tenantsState = new TenantsState(eventCollector, reader);
+        long gen = tenantsState.startLoading();
+        assertTrue(tenantsState.isLoading());
+        assertEquals(tenantsState.get(tenantId, inboxMetadata.getInboxId(), inboxMetadata.getIncarnation(), reader)
+            .get(), inboxMetadata);
+        assertTrue(tenantsState.getCompact(tenantId, inboxMetadata.getInboxId(), inboxMetadata.getIncarnation(),
+            reader).isPresent());
+        // not loaded by reading on demand
+        assertTrue(tenantsState.get(tenantId, inboxMetadata.getInboxId(), inboxMetadata.getIncarnation()).isEmpty());
+
+        assertTrue(tenantsState.finishLoading(gen));
+        assertFalse(tenantsState.isLoading());
+        assertTrue(tenantsState.get(tenantId, inboxMetadata.getInboxId(), inboxMetadata.getIncarnation(), reader)
+            .isEmpty());
+    }
+
+    @Test
+    public void testLoadSkipChanged() {
+        when(reader.size(any())).thenReturn(1L);
+        String tenantId = "tenantId" + System.nanoTime();
+        InboxMetadata inboxMetadata = InboxMetadata.newBuilder()
+            .setInboxId("testInboxId")
+            .setIncarnation(1)
+            .setVersion(0)
+            .build();
+        InboxMetadata inboxMetadata1 = InboxMetadata.newBuilder()
+            .setInboxId("testInboxId1")
+            .setIncarnation(1)
+            .setVersion(0)
+            .build();
+        TenantsState tenantsState = new TenantsState(eventCollector, reader);
+        long gen = tenantsState.startLoading();
+        tenantsState.upsert(tenantId, inboxMetadata.toBuilder().setVersion(1).build());
+        tenantsState.remove(tenantId, inboxMetadata1.getInboxId(), inboxMetadata1.getIncarnation());
+
+        // the loader has read the metadata before they are changed
+        assertTrue(tenantsState.load(gen, tenantId, inboxMetadata));
+        assertTrue(tenantsState.load(gen, tenantId, inboxMetadata1));
+        assertEquals(tenantsState.get(tenantId, inboxMetadata.getInboxId(), inboxMetadata.getIncarnation()).get()
+            .getVersion(), 1);
+        assertTrue(tenantsState.get(tenantId, inboxMetadata1.getInboxId(), inboxMetadata1.getIncarnation()).isEmpty());
+
+        tenantsState.reset();
+        assertFalse(tenantsState.load(gen, tenantId, inboxMetadata));
+        assertFalse(tenantsState.finishLoading(gen));
+        assertTrue(tenantsState.getAll(tenantId).isEmpty());
+    }
+
+    private List<String> expiryOrder(TenantsState tenantsState) {
+        List<String> inboxIds = new ArrayList<>();
+        tenantsState.getAllByExpiry().forEach(entry -> inboxIds.add(entry.metadata().inboxId));
+        return inboxIds;
+    }
 }
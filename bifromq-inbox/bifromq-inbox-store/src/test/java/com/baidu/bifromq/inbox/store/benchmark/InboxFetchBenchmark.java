@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.inbox.store.benchmark;
+
+import static com.baidu.bifromq.basekv.utils.BoundaryUtil.FULL_BOUNDARY;
+import static com.baidu.bifromq.inbox.util.KeyUtil.bufferMsgKey;
+import static com.baidu.bifromq.inbox.util.KeyUtil.inboxKeyPrefix;
+
+import com.baidu.bifromq.basekv.proto.Boundary;
+import com.baidu.bifromq.basekv.store.api.IKVCloseableReader;
+import com.baidu.bifromq.basekv.store.api.IKVIterator;
+import com.baidu.bifromq.basekv.store.api.IKVRangeCoProc;
+import com.baidu.bifromq.basekv.store.proto.ROCoProcInput;
+import com.baidu.bifromq.basekv.utils.KVRangeIdUtil;
+import com.baidu.bifromq.inbox.storage.proto.BatchFetchRequest;
+import com.baidu.bifromq.inbox.storage.proto.InboxMessage;
+import com.baidu.bifromq.inbox.storage.proto.InboxMessageList;
+import com.baidu.bifromq.inbox.storage.proto.InboxMetadata;
+import com.baidu.bifromq.inbox.store.InboxStoreCoProcFactory;
+import com.baidu.bifromq.inbox.util.MessageUtil;
+import com.baidu.bifromq.type.ClientInfo;
+import com.baidu.bifromq.type.Message;
+import com.baidu.bifromq.type.QoS;
+import com.baidu.bifromq.type.TopicMessage;
+import com.google.protobuf.ByteString;
+import java.time.Duration;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import lombok.SneakyThrows;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measure fetching from the middle of a large send buffer, which is the case of reconnecting session having backlog.
+ * The dense queue is inserted in big batches, so it has few message lists, while the sparse queue is inserted one by
+ * one, so every message is in its own list.
+ */
+@State(Scope.Benchmark)
+public class InboxFetchBenchmark {
+    private static final String TENANT_ID = "tenant";
+    private static final String INBOX_ID = "inbox";
+    private static final long INCARNATION = 1;
+
+    @Param({"dense", "sparse"})
+    private String layout;
+
+    @Param({"10000"})
+    private int backlog;
+
+    @Param({"100"})
+    private int maxFetch;
+
+    private InboxStoreCoProcFactory coProcFactory;
+    private IKVRangeCoProc coProc;
+    private MemKVReader reader;
+    private ROCoProcInput fetchInput;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        int listSize = "dense".equals(layout) ? 100 : 1;
+        ByteString inboxKeyPrefix = inboxKeyPrefix(TENANT_ID, INBOX_ID, INCARNATION);
+        NavigableMap<ByteString, ByteString> data = new TreeMap<>(ByteString.unsignedLexicographicalComparator());
+        data.put(inboxKeyPrefix, InboxMetadata.newBuilder()
+            .setInboxId(INBOX_ID)
+            .setIncarnation(INCARNATION)
+            .setLimit(backlog)
+            .setClient(ClientInfo.newBuilder().setTenantId(TENANT_ID).build())
+            .setSendBufferNextSeq(backlog)
+            .build()
+            .toByteString());
+        for (long seq = 0; seq < backlog; seq += listSize) {
+            InboxMessageList.Builder listBuilder = InboxMessageList.newBuilder();
+            for (long i = seq; i < Math.min(backlog, seq + listSize); i++) {
+                listBuilder.addMessage(InboxMessage.newBuilder()
+                    .setSeq(i)
+                    .setTopicFilter("a/#")
+                    .setMsg(TopicMessage.newBuilder()
+                        .setTopic("a/b")
+                        .setMessage(Message.newBuilder()
+                            .setMessageId(i)
+                            .setPubQoS(QoS.AT_LEAST_ONCE)
+                            .setPayload(ByteString.copyFrom(new byte[256]))
+                            .build())
+                        .build())
+                    .build());
+            }
+            data.put(bufferMsgKey(inboxKeyPrefix, seq), listBuilder.build().toByteString());
+        }
+        reader = new MemKVReader(data);
+        coProcFactory = new InboxStoreCoProcFactory(null, event -> {
+        }, Duration.ofMinutes(1));
+        coProc = coProcFactory.createCoProc("cluster", "store", KVRangeIdUtil.generate(), () -> reader);
+        fetchInput = ROCoProcInput.newBuilder()
+            .setInboxService(MessageUtil.buildFetchRequest(1, BatchFetchRequest.newBuilder()
+                .addParams(BatchFetchRequest.Params.newBuilder()
+                    .setTenantId(TENANT_ID)
+                    .setInboxId(INBOX_ID)
+                    .setIncarnation(INCARNATION)
+                    .setMaxFetch(maxFetch)
+                    .setSendBufferStartAfter(backlog / 2)
+                    .build())
+                .build()))
+            .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        coProc.close();
+        coProcFactory.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void fetch(Blackhole blackhole) {
+        blackhole.consume(coProc.query(fetchInput, reader).join());
+    }
+
+    @SneakyThrows
+    public static void main(String[] args) {
+        Options opt = new OptionsBuilder()
+            .include(InboxFetchBenchmark.class.getSimpleName())
+            .forks(1)
+            .warmupIterations(2)
+            .measurementIterations(3)
+            .build();
+        new Runner(opt).run();
+    }
+
+    private record MemKVReader(NavigableMap<ByteString, ByteString> data) implements IKVCloseableReader {
+        @Override
+        public Boundary boundary() {
+            return FULL_BOUNDARY;
+        }
+
+        @Override
+        public long size(Boundary boundary) {
+            return 0;
+        }
+
+        @Override
+        public boolean exist(ByteString key) {
+            return data.containsKey(key);
+        }
+
+        @Override
+        public Optional<ByteString> get(ByteString key) {
+            return Optional.ofNullable(data.get(key));
+        }
+
+        @Override
+        public IKVIterator iterator() {
+            return new MemKVIterator(data);
+        }
+
+        @Override
+        public void refresh() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class MemKVIterator implements IKVIterator {
+        private final NavigableMap<ByteString, ByteString> data;
+        private Map.Entry<ByteString, ByteString> current;
+
+        MemKVIterator(NavigableMap<ByteString, ByteString> data) {
+            this.data = data;
+        }
+
+        @Override
+        public ByteString key() {
+            return current.getKey();
+        }
+
+        @Override
+        public ByteString value() {
+            return current.getValue();
+        }
+
+        @Override
+        public boolean isValid() {
+            return current != null;
+        }
+
+        @Override
+        public void next() {
+            current = data.higherEntry(current.getKey());
+        }
+
+        @Override
+        public void prev() {
+            current = data.lowerEntry(current.getKey());
+        }
+
+        @Override
+        public void seekToFirst() {
+            current = data.firstEntry();
+        }
+
+        @Override
+        public void seekToLast() {
+            current = data.lastEntry();
+        }
+
+        @Override
+        public void seek(ByteString key) {
+            current = data.ceilingEntry(key);
+        }
+
+        @Override
+        public void seekForPrev(ByteString key) {
+            current = data.floorEntry(key);
+        }
+    }
+}
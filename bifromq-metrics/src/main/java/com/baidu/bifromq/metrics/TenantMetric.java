@@ -19,6 +19,8 @@ public enum TenantMetric {
     // connection and session related metrics
     MqttConnectionGauge("mqtt.connection.num.gauge", Meter.Type.GAUGE),
     MqttAuthFailureCount("mqtt.auth.failure.count", Meter.Type.COUNTER),
+    MqttPermissionCacheHitCount("mqtt.perm.cache.hit.count", Meter.Type.COUNTER),
+    MqttPermissionCacheMissCount("mqtt.perm.cache.miss.count", Meter.Type.COUNTER),
     MqttConnectCount("mqtt.connect.count", Meter.Type.COUNTER),
     MqttDisconnectCount("mqtt.disconnect.count", Meter.Type.COUNTER),
     MqttSessionWorkingMemoryGauge("mqtt.session.mem.gauge", Meter.Type.GAUGE),
@@ -67,6 +69,10 @@ public enum TenantMetric {
 
     MqttRouteCacheSize("mqtt.route.cache.size.gauge", Meter.Type.GAUGE),
     MqttRouteCacheMissCount("mqtt.route.cache.miss.count", Meter.Type.COUNTER),
+    MqttRouteCacheBytesGauge("mqtt.route.cache.bytes.gauge", Meter.Type.GAUGE),
+    MqttRouteCacheHitRatioGauge("mqtt.route.cache.hit.ratio.gauge", Meter.Type.GAUGE),
+    MqttRouteFilterSizeGauge("mqtt.route.filter.size.gauge", Meter.Type.GAUGE),
+    MqttRouteFilterFPPGauge("mqtt.route.filter.fpp.gauge", Meter.Type.GAUGE),
     // retain related
     MqttIngressRetainBytes("mqtt.ingress.retain.bytes", Meter.Type.DISTRIBUTION_SUMMARY),
     MqttRetainedBytes("mqtt.retained.bytes", Meter.Type.DISTRIBUTION_SUMMARY),
@@ -23,6 +23,7 @@ import com.baidu.bifromq.mqtt.handler.ConditionalRejectHandler;
 import com.baidu.bifromq.mqtt.handler.ConnectionRateLimitHandler;
 import com.baidu.bifromq.mqtt.handler.MQTTMessageDebounceHandler;
 import com.baidu.bifromq.mqtt.handler.MQTTPreludeHandler;
+import com.baidu.bifromq.mqtt.handler.SharedPayloadEncoder;
 import com.baidu.bifromq.mqtt.handler.condition.DirectMemPressureCondition;
 import com.baidu.bifromq.mqtt.handler.condition.HeapMemPressureCondition;
 import com.baidu.bifromq.mqtt.handler.ws.MqttOverWSHandler;
@@ -169,6 +170,7 @@ abstract class AbstractMQTTBroker<T extends AbstractMQTTBrokerBuilder<T>> implem
                     pipeline.addLast("trafficShaper",
                         new ChannelTrafficShapingHandler(builder.writeLimit, builder.readLimit));
                     pipeline.addLast(MqttEncoder.class.getName(), MqttEncoder.INSTANCE);
+                    pipeline.addLast(SharedPayloadEncoder.NAME, SharedPayloadEncoder.INSTANCE);
                     // insert PacketFilter here
                     pipeline.addLast(MqttDecoder.class.getName(), new MqttDecoder(builder.maxBytesInMessage));
                     pipeline.addLast(MQTTMessageDebounceHandler.NAME, new MQTTMessageDebounceHandler());
@@ -192,6 +194,7 @@ abstract class AbstractMQTTBroker<T extends AbstractMQTTBrokerBuilder<T>> implem
                     pipeline.addLast("trafficShaper",
                         new ChannelTrafficShapingHandler(builder.writeLimit, builder.readLimit));
                     pipeline.addLast(MqttEncoder.class.getName(), MqttEncoder.INSTANCE);
+                    pipeline.addLast(SharedPayloadEncoder.NAME, SharedPayloadEncoder.INSTANCE);
                     // insert PacketFilter here
                     pipeline.addLast(MqttDecoder.class.getName(), new MqttDecoder(builder.maxBytesInMessage));
                     pipeline.addLast(MQTTMessageDebounceHandler.NAME, new MQTTMessageDebounceHandler());
@@ -230,6 +230,7 @@ public abstract class MQTTSessionHandler extends MQTTMessageHandler implements I
     protected final IEventCollector eventCollector;
     protected final IResourceThrottler resourceThrottler;
     private final IMQTTMessageSizer sizer;
+    private final boolean isMQTT5;
     private LWT willMessage;
     private boolean isGoAway;
     private ScheduledFuture<?> idleTimeoutTask;
@@ -249,8 +250,8 @@ public abstract class MQTTSessionHandler extends MQTTMessageHandler implements I
                                  ClientInfo clientInfo,
                                  @Nullable LWT willMessage,
                                  ChannelHandlerContext ctx) {
-        this.sizer = clientInfo.getMetadataOrDefault(MQTT_PROTOCOL_VER_KEY, "").equals(MQTT_PROTOCOL_VER_5_VALUE) ?
-            IMQTTMessageSizer.mqtt5() : IMQTTMessageSizer.mqtt3();
+        this.isMQTT5 = clientInfo.getMetadataOrDefault(MQTT_PROTOCOL_VER_KEY, "").equals(MQTT_PROTOCOL_VER_5_VALUE);
+        this.sizer = isMQTT5 ? IMQTTMessageSizer.mqtt5() : IMQTTMessageSizer.mqtt3();
         this.ctx = ctx;
         this.settings = settings;
         this.oomCondition = oomCondition;
@@ -921,7 +922,7 @@ public abstract class MQTTSessionHandler extends MQTTMessageHandler implements I
             return;
         }
         memUsage.addAndGet(msgSize);
-        writeAndFlush(pubMsg).addListener(f -> {
+        writeAndFlush(sharePayload(pubMsg, msg)).addListener(f -> {
             memUsage.addAndGet(-msgSize);
             if (f.isSuccess()) {
                 if (settings.debugMode) {
@@ -967,6 +968,10 @@ public abstract class MQTTSessionHandler extends MQTTMessageHandler implements I
         }
     }
 
+    private MqttPublishMessage sharePayload(MqttPublishMessage pubMsg, SubMessage msg) {
+        return SharedPayloadCache.share(ctx, pubMsg, msg.message().getPayload(), isMQTT5);
+    }
+
     private void writeConfirmableSubMessage(long seq,
                                             SubMessage msg,
                                             String topicFilter,
@@ -1020,7 +1025,7 @@ public abstract class MQTTSessionHandler extends MQTTMessageHandler implements I
             return;
         }
         memUsage.addAndGet(msgSize);
-        writeAndFlush(pubMsg).addListener(f -> {
+        writeAndFlush(sharePayload(pubMsg, msg)).addListener(f -> {
             memUsage.addAndGet(-msgSize);
             if (f.isSuccess()) {
                 if (settings.debugMode) {
@@ -39,6 +39,7 @@ import com.baidu.bifromq.inbox.storage.proto.TopicFilterOption;
 import com.baidu.bifromq.metrics.ITenantMeter;
 import com.baidu.bifromq.mqtt.handler.condition.Condition;
 import com.baidu.bifromq.mqtt.handler.record.ProtocolResponse;
+import com.baidu.bifromq.mqtt.session.FanOutBatch;
 import com.baidu.bifromq.mqtt.session.IMQTTTransientSession;
 import com.baidu.bifromq.plugin.eventcollector.OutOfTenantResource;
 import com.baidu.bifromq.plugin.eventcollector.mqttbroker.clientdisconnect.ByClient;
@@ -243,12 +244,21 @@ public abstract class MQTTTransientSessionHandler extends MQTTSessionHandler imp
 
     @Override
     public boolean publish(MatchInfo matchInfo, List<TopicMessagePack> topicMsgPacks) {
+        return publish(matchInfo, topicMsgPacks, ctx.executor()::execute);
+    }
+
+    @Override
+    public boolean publish(MatchInfo matchInfo, List<TopicMessagePack> topicMsgPacks, FanOutBatch batch) {
+        return publish(matchInfo, topicMsgPacks, task -> batch.add(ctx.executor(), task));
+    }
+
+    private boolean publish(MatchInfo matchInfo, List<TopicMessagePack> topicMsgPacks, Consumer<Runnable> scheduler) {
         String topicFilter = matchInfo.getTopicFilter();
         TopicFilterOption option = topicFilters.get(topicFilter);
         if (option == null || !ctx.channel().isActive()) {
             return false;
         }
-        ctx.executor().execute(() -> publish(topicFilter, option, topicMsgPacks));
+        scheduler.accept(() -> publish(topicFilter, option, topicMsgPacks));
         return true;
     }
 
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.mqtt.handler;
+
+import static com.baidu.bifromq.mqtt.utils.IMQTTMessageSizer.sizeBinary;
+import static com.baidu.bifromq.mqtt.utils.IMQTTMessageSizer.sizeUTF8EncodedString;
+import static com.baidu.bifromq.mqtt.utils.IMQTTMessageSizer.varIntBytes;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttProperties;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Encode the fixed header and variable header of PUBLISH message, whose remaining length covers the payload written
+ * separately. The properties allowed in PUBLISH message are encoded in the same way as MqttEncoder.
+ */
+final class PublishHeaderEncoder {
+    // fixed header byte and at most four bytes of remaining length
+    private static final int MAX_FIXED_HEADER_BYTES = 5;
+
+    /**
+     * Encode the headers of the PUBLISH message.
+     *
+     * @param alloc   the allocator
+     * @param message the PUBLISH message
+     * @param mqtt5   if the message is sent via MQTT5 protocol
+     * @return the encoded headers, or null if there is property not allowed in PUBLISH message
+     */
+    static ByteBuf encode(ByteBufAllocator alloc, MqttPublishMessage message, boolean mqtt5) {
+        MqttFixedHeader fixedHeader = message.fixedHeader();
+        MqttPublishVariableHeader variableHeader = message.variableHeader();
+        byte[] topicBytes = variableHeader.topicName().getBytes(StandardCharsets.UTF_8);
+        int variableHeaderBytes = 2 + topicBytes.length;
+        if (fixedHeader.qosLevel().value() > 0) {
+            variableHeaderBytes += 2;
+        }
+        int propertiesBytes = 0;
+        if (mqtt5) {
+            propertiesBytes = sizeProperties(variableHeader.properties());
+            if (propertiesBytes < 0) {
+                return null;
+            }
+            variableHeaderBytes += varIntBytes(propertiesBytes) + propertiesBytes;
+        }
+        ByteBuf headers = alloc.buffer(MAX_FIXED_HEADER_BYTES + variableHeaderBytes);
+        headers.writeByte(fixedHeaderByte1(fixedHeader));
+        writeVarInt(headers, variableHeaderBytes + message.payload().readableBytes());
+        headers.writeShort(topicBytes.length);
+        headers.writeBytes(topicBytes);
+        if (fixedHeader.qosLevel().value() > 0) {
+            headers.writeShort(variableHeader.packetId());
+        }
+        if (mqtt5) {
+            writeVarInt(headers, propertiesBytes);
+            writeProperties(headers, variableHeader.properties());
+        }
+        return headers;
+    }
+
+    private static int fixedHeaderByte1(MqttFixedHeader header) {
+        int ret = header.messageType().value() << 4;
+        if (header.isDup()) {
+            ret |= 0x08;
+        }
+        ret |= header.qosLevel().value() << 1;
+        if (header.isRetain()) {
+            ret |= 0x01;
+        }
+        return ret;
+    }
+
+    private static int sizeProperties(MqttProperties properties) {
+        int bytes = 0;
+        for (MqttProperties.MqttProperty<?> property : properties.listAll()) {
+            int propertyId = property.propertyId();
+            MqttProperties.MqttPropertyType propertyType = propertyType(propertyId);
+            if (propertyType == null) {
+                return -1;
+            }
+            switch (propertyType) {
+                case PAYLOAD_FORMAT_INDICATOR -> bytes += varIntBytes(propertyId) + 1;
+                case TOPIC_ALIAS -> bytes += varIntBytes(propertyId) + 2;
+                case PUBLICATION_EXPIRY_INTERVAL -> bytes += varIntBytes(propertyId) + 4;
+                case SUBSCRIPTION_IDENTIFIER ->
+                    bytes += varIntBytes(propertyId) + varIntBytes(((MqttProperties.IntegerProperty) property).value());
+                case CONTENT_TYPE, RESPONSE_TOPIC -> bytes += varIntBytes(propertyId)
+                    + sizeUTF8EncodedString(((MqttProperties.StringProperty) property).value());
+                case CORRELATION_DATA ->
+                    bytes += varIntBytes(propertyId) + sizeBinary(((MqttProperties.BinaryProperty) property).value());
+                case USER_PROPERTY -> {
+                    for (MqttProperties.StringPair pair : userProperties(property)) {
+                        bytes += varIntBytes(propertyId) + sizeUTF8EncodedString(pair.key)
+                            + sizeUTF8EncodedString(pair.value);
+                    }
+                }
+                default -> {
+                    return -1;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static void writeProperties(ByteBuf buf, MqttProperties properties) {
+        for (MqttProperties.MqttProperty<?> property : properties.listAll()) {
+            int propertyId = property.propertyId();
+            switch (MqttProperties.MqttPropertyType.valueOf(propertyId)) {
+                case PAYLOAD_FORMAT_INDICATOR -> {
+                    writeVarInt(buf, propertyId);
+                    buf.writeByte(((MqttProperties.IntegerProperty) property).value());
+                }
+                case TOPIC_ALIAS -> {
+                    writeVarInt(buf, propertyId);
+                    buf.writeShort(((MqttProperties.IntegerProperty) property).value());
+                }
+                case PUBLICATION_EXPIRY_INTERVAL -> {
+                    writeVarInt(buf, propertyId);
+                    buf.writeInt(((MqttProperties.IntegerProperty) property).value());
+                }
+                case SUBSCRIPTION_IDENTIFIER -> {
+                    writeVarInt(buf, propertyId);
+                    writeVarInt(buf, ((MqttProperties.IntegerProperty) property).value());
+                }
+                case CONTENT_TYPE, RESPONSE_TOPIC -> {
+                    writeVarInt(buf, propertyId);
+                    writeString(buf, ((MqttProperties.StringProperty) property).value());
+                }
+                case CORRELATION_DATA -> {
+                    byte[] data = ((MqttProperties.BinaryProperty) property).value();
+                    writeVarInt(buf, propertyId);
+                    buf.writeShort(data.length);
+                    buf.writeBytes(data);
+                }
+                case USER_PROPERTY -> {
+                    for (MqttProperties.StringPair pair : userProperties(property)) {
+                        writeVarInt(buf, propertyId);
+                        writeString(buf, pair.key);
+                        writeString(buf, pair.value);
+                    }
+                }
+                default -> throw new IllegalArgumentException("Unexpected property in PUBLISH: " + propertyId);
+            }
+        }
+    }
+
+    private static MqttProperties.MqttPropertyType propertyType(int propertyId) {
+        try {
+            return MqttProperties.MqttPropertyType.valueOf(propertyId);
+        } catch (IllegalArgumentException e) {
+            // unknown property id
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<MqttProperties.StringPair> userProperties(MqttProperties.MqttProperty<?> property) {
+        if (property instanceof MqttProperties.UserProperty userProperty) {
+            return List.of(userProperty.value());
+        }
+        return ((MqttProperties.MqttProperty<List<MqttProperties.StringPair>>) property).value();
+    }
+
+    private static void writeString(ByteBuf buf, String s) {
+        buf.writeShort(ByteBufUtil.utf8Bytes(s));
+        ByteBufUtil.writeUtf8(buf, s);
+    }
+
+    private static void writeVarInt(ByteBuf buf, int num) {
+        do {
+            int digit = num % 128;
+            num /= 128;
+            if (num > 0) {
+                digit |= 0x80;
+            }
+            buf.writeByte(digit);
+        } while (num > 0);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.mqtt.handler;
+
+import com.baidu.bifromq.sysprops.props.MqttSharedPayloadCacheBytes;
+import com.baidu.bifromq.sysprops.props.MqttSharedPayloadMinBytes;
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.FastThreadLocal;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per event loop cache of large PUBLISH payloads copied into direct memory. A message fanned out to many
+ * subscribers on the same event loop is copied once, and each subscriber writes a retained duplicate of it, which is
+ * sent along with its own encoded headers by {@link SharedPayloadEncoder}.
+ */
+public final class SharedPayloadCache {
+    static final int MIN_PAYLOAD_BYTES = MqttSharedPayloadMinBytes.INSTANCE.get();
+    private static final long MAX_CACHED_BYTES = MqttSharedPayloadCacheBytes.INSTANCE.get();
+    // the payload is only shared within a fan-out burst, release it soon after
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final FastThreadLocal<SharedPayloadCache> THREAD_LOCAL_CACHE = new FastThreadLocal<>() {
+        @Override
+        protected SharedPayloadCache initialValue() {
+            return new SharedPayloadCache(MAX_CACHED_BYTES);
+        }
+
+        @Override
+        protected void onRemoval(SharedPayloadCache cache) {
+            cache.clear();
+        }
+    };
+
+    private final long maxCachedBytes;
+    private final LinkedHashMap<PayloadKey, CachedPayload> payloads = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    private boolean expiryScheduled;
+
+    SharedPayloadCache(long maxCachedBytes) {
+        this.maxCachedBytes = maxCachedBytes;
+    }
+
+    /**
+     * Share the payload of the PUBLISH message to be written to the channel.
+     *
+     * @param ctx     the channel handler context, must be called in its event loop
+     * @param pubMsg  the PUBLISH message
+     * @param payload the payload of the message
+     * @param mqtt5   if the channel speaks MQTT5
+     * @return the message carrying a retained duplicate of the shared payload, or the original one if not shared or
+     *     the pipeline has no {@link SharedPayloadEncoder}
+     */
+    public static MqttPublishMessage share(ChannelHandlerContext ctx,
+                                           MqttPublishMessage pubMsg,
+                                           ByteString payload,
+                                           boolean mqtt5) {
+        if (payload.size() < MIN_PAYLOAD_BYTES || payload.size() > MAX_CACHED_BYTES) {
+            return pubMsg;
+        }
+        if (ctx.pipeline().get(SharedPayloadEncoder.NAME) == null) {
+            // e.g. the websocket pipeline, which has no encoder to write the shared payload
+            return pubMsg;
+        }
+        return new SharedPayloadPublishMessage(pubMsg, THREAD_LOCAL_CACHE.get().get(ctx, payload), mqtt5);
+    }
+
+    ByteBuf get(ChannelHandlerContext ctx, ByteString payload) {
+        assert ctx.executor().inEventLoop();
+        long now = System.nanoTime();
+        PayloadKey key = new PayloadKey(payload);
+        CachedPayload cached = payloads.get(key);
+        if (cached == null) {
+            ByteBuf buf = ctx.alloc().directBuffer(payload.size());
+            buf.writeBytes(payload.asReadOnlyByteBuffer());
+            cached = new CachedPayload(buf, now);
+            payloads.put(key, cached);
+            cachedBytes += payload.size();
+            evict(now);
+            if (!expiryScheduled) {
+                expiryScheduled = true;
+                EventExecutor executor = ctx.executor();
+                executor.schedule(() -> expire(executor), IDLE_NANOS, TimeUnit.NANOSECONDS);
+            }
+        } else {
+            cached.lastAccessNanos = now;
+        }
+        return cached.buf.retainedDuplicate();
+    }
+
+    int size() {
+        return payloads.size();
+    }
+
+    void clear() {
+        payloads.values().forEach(cached -> cached.buf.release());
+        payloads.clear();
+        cachedBytes = 0;
+    }
+
+    private void expire(EventExecutor executor) {
+        evict(System.nanoTime());
+        if (payloads.isEmpty()) {
+            expiryScheduled = false;
+        } else {
+            executor.schedule(() -> expire(executor), IDLE_NANOS, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void evict(long now) {
+        // entries are in access order
+        Iterator<Map.Entry<PayloadKey, CachedPayload>> itr = payloads.entrySet().iterator();
+        while (itr.hasNext()) {
+            CachedPayload cached = itr.next().getValue();
+            if (cachedBytes > maxCachedBytes || now - cached.lastAccessNanos >= IDLE_NANOS) {
+                itr.remove();
+                cachedBytes -= cached.buf.readableBytes();
+                cached.buf.release();
+            } else {
+                break;
+            }
+        }
+    }
+
+    private static class CachedPayload {
+        final ByteBuf buf;
+        long lastAccessNanos;
+
+        CachedPayload(ByteBuf buf, long lastAccessNanos) {
+            this.buf = buf;
+            this.lastAccessNanos = lastAccessNanos;
+        }
+    }
+
+    // the fanned out copies of a message share the same payload object
+    private record PayloadKey(ByteString payload) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PayloadKey other && other.payload == payload;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(payload);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.mqtt.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import java.util.List;
+
+/**
+ * Write the PUBLISH message carrying shared payload as its encoded headers followed by the payload, instead of copying
+ * the payload into the frame encoded by MqttEncoder.
+ */
+@ChannelHandler.Sharable
+public final class SharedPayloadEncoder extends MessageToMessageEncoder<SharedPayloadPublishMessage> {
+    public static final String NAME = "SharedPayloadEncoder";
+    public static final SharedPayloadEncoder INSTANCE = new SharedPayloadEncoder();
+
+    private SharedPayloadEncoder() {
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, SharedPayloadPublishMessage msg, List<Object> out) {
+        ByteBuf headers = PublishHeaderEncoder.encode(ctx.alloc(), msg, msg.mqtt5);
+        if (headers == null) {
+            // leave it to MqttEncoder
+            out.add(new MqttPublishMessage(msg.fixedHeader(), msg.variableHeader(), msg.payload().retain()));
+            return;
+        }
+        out.add(ctx.alloc().compositeDirectBuffer(2).addComponents(true, headers, msg.payload().retain()));
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.mqtt.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+
+/**
+ * The PUBLISH message carrying the payload shared via {@link SharedPayloadCache}, which is written by
+ * {@link SharedPayloadEncoder} without being copied into the encoded frame.
+ */
+final class SharedPayloadPublishMessage extends MqttPublishMessage {
+    final boolean mqtt5;
+
+    SharedPayloadPublishMessage(MqttPublishMessage message, ByteBuf sharedPayload, boolean mqtt5) {
+        super(message.fixedHeader(), message.variableHeader(), sharedPayload);
+        this.mqtt5 = mqtt5;
+    }
+}
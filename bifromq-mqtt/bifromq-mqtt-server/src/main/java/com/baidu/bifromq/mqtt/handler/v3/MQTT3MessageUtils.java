@@ -17,6 +17,8 @@ import com.baidu.bifromq.basehlc.HLC;
 import com.baidu.bifromq.type.Message;
 import com.baidu.bifromq.type.QoS;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
 import io.netty.handler.codec.mqtt.MqttQoS;
 
@@ -26,7 +28,9 @@ public final class MQTT3MessageUtils {
         return toMessage(pubMsg.variableHeader().packetId(),
             pubMsg.fixedHeader().qosLevel(),
             pubMsg.fixedHeader().isRetain(),
-            ByteString.copyFrom(pubMsg.payload().nioBuffer()));
+            // copy the payload out, since the decoded buffer is reused after the pub request is done, while the
+            // message may still be referenced, e.g. by in-proc fan-out
+            UnsafeByteOperations.unsafeWrap(ByteBufUtil.getBytes(pubMsg.payload())));
     }
 
     static Message toMessage(long packetId,
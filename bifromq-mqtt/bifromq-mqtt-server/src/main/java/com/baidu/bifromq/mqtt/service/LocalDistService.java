@@ -22,6 +22,7 @@ import com.baidu.bifromq.dist.client.IDistClient;
 import com.baidu.bifromq.dist.client.MatchResult;
 import com.baidu.bifromq.dist.client.UnmatchResult;
 import com.baidu.bifromq.metrics.ITenantMeter;
+import com.baidu.bifromq.mqtt.session.FanOutBatch;
 import com.baidu.bifromq.mqtt.session.IMQTTSession;
 import com.baidu.bifromq.mqtt.session.IMQTTTransientSession;
 import com.baidu.bifromq.plugin.subbroker.DeliveryPack;
@@ -95,6 +96,8 @@ public class LocalDistService implements ILocalDistService {
     @Override
     public CompletableFuture<DeliveryReply> dist(DeliveryRequest request) {
         DeliveryReply.Builder replyBuilder = DeliveryReply.newBuilder();
+        // deliveries to the sessions sharing same event loop are submitted together
+        FanOutBatch fanOutBatch = new FanOutBatch();
         for (Map.Entry<String, DeliveryPackage> entry : request.getPackageMap().entrySet()) {
             String tenantId = entry.getKey();
             DeliveryResults.Builder resultsBuilder = DeliveryResults.newBuilder();
@@ -115,8 +118,8 @@ public class LocalDistService implements ILocalDistService {
                             IMQTTSession session =
                                 sessionRegistry.get(ILocalDistService.parseReceiverId(matchInfo.getReceiverId()));
                             if (session instanceof IMQTTTransientSession) {
-                                boolean success =
-                                    ((IMQTTTransientSession) session).publish(matchInfo, singletonList(topicMsgPack));
+                                boolean success = ((IMQTTTransientSession) session)
+                                    .publish(matchInfo, singletonList(topicMsgPack), fanOutBatch);
                                 if (success) {
                                     ok.add(matchInfo);
                                 } else {
@@ -157,7 +160,7 @@ public class LocalDistService implements ILocalDistService {
                                         IMQTTSession session = sessionRegistry.get(sessionId);
                                         if (session instanceof IMQTTTransientSession) {
                                             if (((IMQTTTransientSession) session)
-                                                .publish(matchInfo, singletonList(topicMsgPack))) {
+                                                .publish(matchInfo, singletonList(topicMsgPack), fanOutBatch)) {
                                                 published = true;
                                             }
                                         }
@@ -169,7 +172,7 @@ public class LocalDistService implements ILocalDistService {
                                         IMQTTSession session = sessionRegistry.get(sessionId);
                                         if (session instanceof IMQTTTransientSession) {
                                             if (((IMQTTTransientSession) session)
-                                                .publish(matchInfo, singletonList(topicMsgPack))) {
+                                                .publish(matchInfo, singletonList(topicMsgPack), fanOutBatch)) {
                                                 published = true;
                                                 hasFanOutDone = true;
                                                 break;
@@ -205,6 +208,7 @@ public class LocalDistService implements ILocalDistService {
                 .build()));
             replyBuilder.putResult(tenantId, resultsBuilder.build());
         }
+        fanOutBatch.submit();
         return CompletableFuture.completedFuture(replyBuilder.build());
     }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.mqtt.session;
+
+import io.netty.util.concurrent.EventExecutor;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Collects the delivery tasks of local transient sessions during one fan-out, the tasks are grouped by the event loop
+ * of the sessions and submitted as one task per event loop. Not thread-safe, it's supposed to be used by the thread
+ * doing the fan-out.
+ */
+@Slf4j
+public final class FanOutBatch {
+    private final Map<EventExecutor, List<Runnable>> tasks = new IdentityHashMap<>();
+
+    /**
+     * Add a delivery task to be run in given event loop.
+     *
+     * @param executor the event loop of the session
+     * @param task     the delivery task
+     */
+    public void add(EventExecutor executor, Runnable task) {
+        tasks.computeIfAbsent(executor, k -> new ArrayList<>()).add(task);
+    }
+
+    /**
+     * Submit the collected tasks to their event loops, tasks in the same event loop are run in the order of adding.
+     *
+     * @return the number of submissions
+     */
+    public int submit() {
+        int submissions = tasks.size();
+        tasks.forEach((executor, taskList) -> {
+            if (taskList.size() == 1) {
+                executor.execute(taskList.get(0));
+            } else {
+                executor.execute(() -> {
+                    for (Runnable task : taskList) {
+                        try {
+                            task.run();
+                        } catch (Throwable e) {
+                            log.error("Unexpected error during local delivery", e);
+                        }
+                    }
+                });
+            }
+        });
+        tasks.clear();
+        return submissions;
+    }
+}
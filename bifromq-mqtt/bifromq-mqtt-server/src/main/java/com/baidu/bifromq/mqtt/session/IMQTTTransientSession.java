@@ -26,4 +26,15 @@ public interface IMQTTTransientSession extends IMQTTSession {
 
     boolean publish(MatchInfo matchInfo, List<TopicMessagePack> messagePack);
 
+    /**
+     * Publish the message packs to the session, the delivery task is collected by the batch instead of being scheduled
+     * to the event loop of the session immediately.
+     *
+     * @param matchInfo   the matched subscription
+     * @param messagePack the message packs to deliver
+     * @param batch       the batch collecting delivery tasks
+     * @return false if the session is inactive or has no such subscription
+     */
+    boolean publish(MatchInfo matchInfo, List<TopicMessagePack> messagePack, FanOutBatch batch);
+
 }
@@ -13,6 +13,10 @@
 
 package com.baidu.bifromq.mqtt.session;
 
+import static com.baidu.bifromq.metrics.TenantMetric.MqttPermissionCacheHitCount;
+import static com.baidu.bifromq.metrics.TenantMetric.MqttPermissionCacheMissCount;
+
+import com.baidu.bifromq.metrics.ITenantMeter;
 import com.baidu.bifromq.plugin.authprovider.IAuthProvider;
 import com.baidu.bifromq.plugin.authprovider.type.CheckResult;
 import com.baidu.bifromq.plugin.authprovider.type.MQTT3AuthData;
@@ -22,11 +26,16 @@ import com.baidu.bifromq.plugin.authprovider.type.MQTT5AuthResult;
 import com.baidu.bifromq.plugin.authprovider.type.MQTT5ExtendedAuthData;
 import com.baidu.bifromq.plugin.authprovider.type.MQTT5ExtendedAuthResult;
 import com.baidu.bifromq.plugin.authprovider.type.MQTTAction;
+import com.baidu.bifromq.sysprops.props.MqttPermissionCacheMaxSize;
+import com.baidu.bifromq.sysprops.props.MqttPermissionCacheTTLSeconds;
 import com.baidu.bifromq.type.ClientInfo;
+import com.google.common.base.Ticker;
 import io.netty.channel.ChannelHandlerContext;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -36,25 +45,51 @@ public class MQTTSessionAuthProvider implements IAuthProvider {
     private final LinkedHashMap<CompletableFuture<CheckResult>, CompletableFuture<CheckResult>>
         checkPermissionTaskQueue =
         new LinkedHashMap<>();
+    private final Ticker ticker;
+    private final long permissionCacheTTLNanos;
+    // the decisions of sub actions, which are checked again for every delivered message
+    private final LinkedHashMap<MQTTAction, CachedCheckResult> permissionCache;
+    private long authGen = 0;
 
     public MQTTSessionAuthProvider(IAuthProvider delegate, ChannelHandlerContext ctx) {
+        this(delegate, ctx, Ticker.systemTicker());
+    }
+
+    public MQTTSessionAuthProvider(IAuthProvider delegate, ChannelHandlerContext ctx, Ticker ticker) {
+        this(delegate, ctx, ticker, MqttPermissionCacheTTLSeconds.INSTANCE.get(),
+            MqttPermissionCacheMaxSize.INSTANCE.get());
+    }
+
+    MQTTSessionAuthProvider(IAuthProvider delegate,
+                            ChannelHandlerContext ctx,
+                            Ticker ticker,
+                            int permissionCacheTTLSeconds,
+                            int permissionCacheMaxSize) {
         this.delegate = delegate;
         this.ctx = ctx;
+        this.ticker = ticker;
+        this.permissionCacheTTLNanos = TimeUnit.SECONDS.toNanos(permissionCacheTTLSeconds);
+        this.permissionCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MQTTAction, CachedCheckResult> eldest) {
+                return size() > permissionCacheMaxSize;
+            }
+        };
     }
 
     @Override
     public CompletableFuture<MQTT3AuthResult> auth(MQTT3AuthData authData) {
-        return delegate.auth(authData);
+        return invalidateOnDone(delegate.auth(authData));
     }
 
     @Override
     public CompletableFuture<MQTT5AuthResult> auth(MQTT5AuthData authData) {
-        return delegate.auth(authData);
+        return invalidateOnDone(delegate.auth(authData));
     }
 
     @Override
     public CompletableFuture<MQTT5ExtendedAuthResult> extendedAuth(MQTT5ExtendedAuthData authData) {
-        return delegate.extendedAuth(authData);
+        return invalidateOnDone(delegate.extendedAuth(authData));
     }
 
     @Override
@@ -65,8 +100,20 @@ public class MQTTSessionAuthProvider implements IAuthProvider {
     @Override
     public CompletableFuture<CheckResult> checkPermission(ClientInfo client, MQTTAction action) {
         assert ctx.executor().inEventLoop();
+        boolean cacheable = permissionCacheTTLNanos > 0 && action.hasSub();
+        if (cacheable) {
+            CachedCheckResult cached = permissionCache.get(action);
+            if (cached != null && cached.isValidFor(client, ticker.read())) {
+                ITenantMeter.get(client.getTenantId()).recordCount(MqttPermissionCacheHitCount);
+                return CompletableFuture.completedFuture(cached.result);
+            }
+            ITenantMeter.get(client.getTenantId()).recordCount(MqttPermissionCacheMissCount);
+        }
         CompletableFuture<CheckResult> task = delegate.checkPermission(client, action);
         if (task.isDone()) {
+            if (cacheable) {
+                cache(authGen, client, action, task);
+            }
             return task;
         } else {
             // queue it for fifo semantic
@@ -74,7 +121,12 @@ public class MQTTSessionAuthProvider implements IAuthProvider {
             // in case authProvider returns same future object;
             task = task.thenApply(v -> v);
             checkPermissionTaskQueue.put(task, onDone);
+            long gen = authGen;
+            CompletableFuture<CheckResult> checkTask = task;
             task.whenCompleteAsync((_v, _e) -> {
+                if (cacheable) {
+                    cache(gen, client, action, checkTask);
+                }
                 Iterator<CompletableFuture<CheckResult>> itr = checkPermissionTaskQueue.keySet().iterator();
                 while (itr.hasNext()) {
                     CompletableFuture<CheckResult> k = itr.next();
@@ -94,4 +146,36 @@ public class MQTTSessionAuthProvider implements IAuthProvider {
             return onDone;
         }
     }
+
+    private void cache(long gen, ClientInfo client, MQTTAction action, CompletableFuture<CheckResult> checkTask) {
+        if (gen != authGen || checkTask.isCompletedExceptionally()) {
+            // the result of the check issued before re-auth is not cached
+            return;
+        }
+        CheckResult result = checkTask.join();
+        if (result.hasGranted() || result.hasDenied()) {
+            permissionCache.put(action, new CachedCheckResult(client, result, ticker.read() + permissionCacheTTLNanos));
+        }
+    }
+
+    private <T> CompletableFuture<T> invalidateOnDone(CompletableFuture<T> authTask) {
+        if (ctx.executor().inEventLoop()) {
+            invalidatePermissionCache();
+        } else {
+            ctx.executor().execute(this::invalidatePermissionCache);
+        }
+        authTask.whenCompleteAsync((v, e) -> invalidatePermissionCache(), ctx.executor());
+        return authTask;
+    }
+
+    private void invalidatePermissionCache() {
+        authGen++;
+        permissionCache.clear();
+    }
+
+    private record CachedCheckResult(ClientInfo client, CheckResult result, long expireAt) {
+        boolean isValidFor(ClientInfo client, long now) {
+            return now - expireAt < 0 && (this.client == client || this.client.equals(client));
+        }
+    }
 }
@@ -89,8 +89,8 @@ public final class MQTTSessionContext {
     }
 
     public IAuthProvider authProvider(ChannelHandlerContext ctx) {
-        // a wrapper to ensure async fifo semantic for check call
-        return new MQTTSessionAuthProvider(authProvider, ctx);
+        // a wrapper to ensure async fifo semantic for check call, and cache the results of sub action check
+        return new MQTTSessionAuthProvider(authProvider, ctx, ticker);
     }
 
     public AtomicLong getTransientSubNumGauge(String tenantId) {
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.mqtt.handler;
+
+import static org.testng.Assert.assertEquals;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.ArrayList;
+import java.util.List;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class MQTTMessageHandlerTest {
+    private FlushCounter flushCounter;
+    private TestHandler testHandler;
+    private EmbeddedChannel channel;
+
+    @BeforeMethod
+    public void setUp() {
+        flushCounter = new FlushCounter();
+        testHandler = new TestHandler(4);
+        channel = new EmbeddedChannel(flushCounter, testHandler);
+    }
+
+    @Test
+    public void testFlushOncePerBurst() {
+        testHandler.writeAndFlush("msg1");
+        testHandler.writeAndFlush("msg2");
+        testHandler.writeAndFlush("msg3");
+        assertEquals(flushCounter.flushes, 0);
+        channel.runPendingTasks();
+        assertEquals(flushCounter.flushes, 1);
+        assertEquals(flushCounter.flushed.size(), 3);
+    }
+
+    @Test
+    public void testFlushAfterFlushes() {
+        for (int i = 0; i < 5; i++) {
+            testHandler.writeAndFlush("msg" + i);
+        }
+        assertEquals(flushCounter.flushes, 1);
+        channel.runPendingTasks();
+        assertEquals(flushCounter.flushes, 2);
+    }
+
+    // hold the writes until flush, since EmbeddedChannel runs pending tasks on every write reaching it
+    private static class FlushCounter extends ChannelOutboundHandlerAdapter {
+        private final List<Object> pending = new ArrayList<>();
+        private final List<Object> flushed = new ArrayList<>();
+        private int flushes;
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            pending.add(msg);
+            promise.setSuccess();
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) {
+            flushes++;
+            flushed.addAll(pending);
+            pending.clear();
+        }
+    }
+
+    private static class TestHandler extends MQTTMessageHandler {
+        TestHandler(int explicitFlushAfterFlushes) {
+            super(explicitFlushAfterFlushes);
+        }
+    }
+}
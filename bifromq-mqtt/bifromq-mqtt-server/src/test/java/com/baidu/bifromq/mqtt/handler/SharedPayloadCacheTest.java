@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.mqtt.handler;
+
+import static org.awaitility.Awaitility.await;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.CharsetUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SharedPayloadCacheTest {
+    private EmbeddedChannel channel;
+    private ChannelHandlerContext ctx;
+    private SharedPayloadCache cache;
+
+    @BeforeMethod
+    public void setUp() {
+        channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        ctx = channel.pipeline().firstContext();
+        cache = new SharedPayloadCache(4096);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        cache.clear();
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void shareSamePayload() {
+        ByteString payload = ByteString.copyFromUtf8("hello");
+        ByteBuf shared1 = cache.get(ctx, payload);
+        ByteBuf shared2 = cache.get(ctx, payload);
+        assertTrue(shared1.isDirect());
+        assertEquals(shared1.toString(CharsetUtil.UTF_8), "hello");
+        assertSame(shared1.unwrap(), shared2.unwrap());
+        assertEquals(shared1.unwrap().refCnt(), 3);
+        shared1.release();
+        shared2.release();
+        assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void notShareEqualPayload() {
+        ByteBuf shared1 = cache.get(ctx, ByteString.copyFromUtf8("hello"));
+        ByteBuf shared2 = cache.get(ctx, ByteString.copyFromUtf8("hello"));
+        assertNotSame(shared1.unwrap(), shared2.unwrap());
+        shared1.release();
+        shared2.release();
+        assertEquals(cache.size(), 2);
+    }
+
+    @Test
+    public void evictByBytes() {
+        ByteBuf shared1 = cache.get(ctx, ByteString.copyFrom(new byte[2048]));
+        ByteBuf shared2 = cache.get(ctx, ByteString.copyFrom(new byte[2048]));
+        ByteBuf shared3 = cache.get(ctx, ByteString.copyFrom(new byte[2048]));
+        assertEquals(cache.size(), 2);
+        // evicted payload is still held by the writer
+        assertEquals(shared1.unwrap().refCnt(), 1);
+        assertEquals(shared2.unwrap().refCnt(), 2);
+        shared1.release();
+        shared2.release();
+        shared3.release();
+        assertEquals(shared1.unwrap().refCnt(), 0);
+    }
+
+    @Test
+    public void shareOnlyWithEncoder() {
+        ByteString payload = ByteString.copyFrom(new byte[SharedPayloadCache.MIN_PAYLOAD_BYTES]);
+        MqttPublishMessage pubMsg = new MqttPublishMessage(
+            new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.AT_MOST_ONCE, false, 0),
+            new MqttPublishVariableHeader("/a/b/c", 0), Unpooled.wrappedBuffer(payload.asReadOnlyByteBuffer()));
+        assertSame(SharedPayloadCache.share(ctx, pubMsg, payload, false), pubMsg);
+
+        EmbeddedChannel encoderChannel = new EmbeddedChannel();
+        encoderChannel.pipeline().addLast(SharedPayloadEncoder.NAME, SharedPayloadEncoder.INSTANCE);
+        MqttPublishMessage shared = SharedPayloadCache.share(encoderChannel.pipeline().firstContext(), pubMsg,
+            payload, false);
+        assertTrue(shared instanceof SharedPayloadPublishMessage);
+        shared.release();
+        encoderChannel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void expireIdle() {
+        ByteBuf shared = cache.get(ctx, ByteString.copyFromUtf8("hello"));
+        shared.release();
+        await().until(() -> {
+            channel.runPendingTasks();
+            return cache.size() == 0;
+        });
+        assertEquals(shared.unwrap().refCnt(), 0);
+    }
+}
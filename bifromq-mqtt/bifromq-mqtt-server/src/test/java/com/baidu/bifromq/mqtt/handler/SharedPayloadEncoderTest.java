@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.mqtt.handler;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttProperties;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.handler.codec.mqtt.MqttVersion;
+import io.netty.util.AttributeKey;
+import java.util.concurrent.ThreadLocalRandom;
+import org.testng.annotations.Test;
+
+public class SharedPayloadEncoderTest {
+    private static final AttributeKey<MqttVersion> MQTT_VERSION_KEY = AttributeKey.valueOf("NETTY_CODEC_MQTT_VERSION");
+
+    @Test
+    public void encodeMQTT3() {
+        // cover all lengths of remaining length encoding
+        for (int payloadSize : new int[] {8 * 1024, 64 * 1024, 2 * 1024 * 1024}) {
+            assertSameEncoding(MqttVersion.MQTT_3_1_1, payloadSize, MqttQoS.AT_MOST_ONCE, MqttProperties.NO_PROPERTIES);
+            assertSameEncoding(MqttVersion.MQTT_3_1_1, payloadSize, MqttQoS.AT_LEAST_ONCE,
+                MqttProperties.NO_PROPERTIES);
+        }
+    }
+
+    @Test
+    public void encodeMQTT5() {
+        MqttProperties props = new MqttProperties();
+        props.add(new MqttProperties.IntegerProperty(MqttProperties.MqttPropertyType.TOPIC_ALIAS.value(), 1));
+        props.add(new MqttProperties.IntegerProperty(
+            MqttProperties.MqttPropertyType.SUBSCRIPTION_IDENTIFIER.value(), 10));
+        props.add(new MqttProperties.UserProperty("key", "value"));
+        for (int payloadSize : new int[] {8 * 1024, 64 * 1024, 2 * 1024 * 1024}) {
+            assertSameEncoding(MqttVersion.MQTT_5, payloadSize, MqttQoS.EXACTLY_ONCE, props);
+        }
+    }
+
+    @Test
+    public void encodeMQTT5AllPubProperties() {
+        MqttProperties props = new MqttProperties();
+        props.add(new MqttProperties.IntegerProperty(
+            MqttProperties.MqttPropertyType.PAYLOAD_FORMAT_INDICATOR.value(), 1));
+        props.add(new MqttProperties.IntegerProperty(
+            MqttProperties.MqttPropertyType.PUBLICATION_EXPIRY_INTERVAL.value(), 3600));
+        props.add(new MqttProperties.StringProperty(MqttProperties.MqttPropertyType.CONTENT_TYPE.value(), "text"));
+        props.add(new MqttProperties.StringProperty(MqttProperties.MqttPropertyType.RESPONSE_TOPIC.value(), "/r"));
+        props.add(new MqttProperties.BinaryProperty(
+            MqttProperties.MqttPropertyType.CORRELATION_DATA.value(), new byte[] {1, 2, 3}));
+        props.add(new MqttProperties.IntegerProperty(
+            MqttProperties.MqttPropertyType.SUBSCRIPTION_IDENTIFIER.value(), 200));
+        props.add(new MqttProperties.IntegerProperty(
+            MqttProperties.MqttPropertyType.SUBSCRIPTION_IDENTIFIER.value(), 20000));
+        props.add(new MqttProperties.UserProperty("key1", "value1"));
+        props.add(new MqttProperties.UserProperty("key2", "值"));
+        assertSameEncoding(MqttVersion.MQTT_5, 64 * 1024, MqttQoS.AT_MOST_ONCE, props);
+    }
+
+    @Test
+    public void fallbackOnUnexpectedProperty() {
+        MqttProperties props = new MqttProperties();
+        props.add(new MqttProperties.StringProperty(MqttProperties.MqttPropertyType.REASON_STRING.value(), "r"));
+        EmbeddedChannel channel = new EmbeddedChannel(MqttEncoder.INSTANCE, SharedPayloadEncoder.INSTANCE);
+        channel.attr(MQTT_VERSION_KEY).set(MqttVersion.MQTT_5);
+        ByteBuf sharedPayload = Unpooled.directBuffer().writeBytes(new byte[64 * 1024]);
+        channel.writeOutbound(sharedPubMsg(sharedPayload.retainedDuplicate(), MqttQoS.AT_LEAST_ONCE, props, true));
+        ByteBuf encoded = channel.readOutbound();
+        assertFalse(encoded instanceof CompositeByteBuf);
+        encoded.release();
+        assertEquals(sharedPayload.refCnt(), 1);
+        sharedPayload.release();
+    }
+
+    @Test
+    public void fallbackOnUnknownProperty() {
+        MqttProperties props = new MqttProperties();
+        props.add(new MqttProperties.IntegerProperty(0x7F, 1));
+        MqttPublishMessage pubMsg = sharedPubMsg(Unpooled.EMPTY_BUFFER, MqttQoS.AT_MOST_ONCE, props, true);
+        assertNull(PublishHeaderEncoder.encode(UnpooledByteBufAllocator.DEFAULT, pubMsg, true));
+    }
+
+    @Test
+    public void skipUnsharedPayload() {
+        EmbeddedChannel channel = new EmbeddedChannel(MqttEncoder.INSTANCE, SharedPayloadEncoder.INSTANCE);
+        channel.writeOutbound(pubMsg(Unpooled.directBuffer().writeBytes(new byte[64 * 1024]), MqttQoS.AT_LEAST_ONCE,
+            MqttProperties.NO_PROPERTIES));
+        ByteBuf encoded = channel.readOutbound();
+        assertFalse(encoded instanceof CompositeByteBuf);
+        encoded.release();
+    }
+
+    private void assertSameEncoding(MqttVersion version, int payloadSize, MqttQoS qos, MqttProperties props) {
+        byte[] payload = new byte[payloadSize];
+        ThreadLocalRandom.current().nextBytes(payload);
+        ByteBuf sharedPayload = Unpooled.directBuffer(payloadSize).writeBytes(payload);
+
+        EmbeddedChannel channel = new EmbeddedChannel(MqttEncoder.INSTANCE, SharedPayloadEncoder.INSTANCE);
+        channel.attr(MQTT_VERSION_KEY).set(version);
+        channel.writeOutbound(sharedPubMsg(sharedPayload.retainedDuplicate(), qos, props,
+            version == MqttVersion.MQTT_5));
+        ByteBuf encoded = channel.readOutbound();
+        assertTrue(encoded instanceof CompositeByteBuf);
+
+        EmbeddedChannel expectedChannel = new EmbeddedChannel(MqttEncoder.INSTANCE);
+        expectedChannel.attr(MQTT_VERSION_KEY).set(version);
+        expectedChannel.writeOutbound(pubMsg(Unpooled.wrappedBuffer(payload), qos, props));
+        ByteBuf expected = expectedChannel.readOutbound();
+
+        assertEquals(ByteBufUtil.getBytes(encoded), ByteBufUtil.getBytes(expected));
+        encoded.release();
+        expected.release();
+        // the payload is released along with the encoded frame
+        assertEquals(sharedPayload.refCnt(), 1);
+        sharedPayload.release();
+    }
+
+    private MqttPublishMessage sharedPubMsg(ByteBuf payload, MqttQoS qos, MqttProperties props, boolean mqtt5) {
+        return new SharedPayloadPublishMessage(pubMsg(Unpooled.EMPTY_BUFFER, qos, props), payload, mqtt5);
+    }
+
+    private MqttPublishMessage pubMsg(ByteBuf payload, MqttQoS qos, MqttProperties props) {
+        return new MqttPublishMessage(new MqttFixedHeader(MqttMessageType.PUBLISH, false, qos, false, 0),
+            new MqttPublishVariableHeader("/a/b/c", qos == MqttQoS.AT_MOST_ONCE ? 0 : 1, props), payload);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.mqtt.handler.benchmark;
+
+import com.baidu.bifromq.basehlc.HLC;
+import com.baidu.bifromq.type.Message;
+import com.baidu.bifromq.type.QoS;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.mqtt.MqttDecoder;
+import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measure the allocation of turning a decoded PUBLISH into dist message, run with GC profiler. The "wrap" mode aliases
+ * the decoded buffer without copying, it's only the lower bound for reference: the buffer is reused once the pub
+ * request is done, while the message may still be referenced by in-proc fan-out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IngressPayloadBenchmark {
+    @Param({"1024", "262144"})
+    private int payloadSize;
+
+    @Param({"nioBuffer", "getBytes", "wrap"})
+    private String copyMode;
+
+    private byte[] pubPacket;
+    private EmbeddedChannel channel;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        EmbeddedChannel encoder = new EmbeddedChannel(MqttEncoder.INSTANCE);
+        encoder.writeOutbound(new MqttPublishMessage(
+            new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.AT_LEAST_ONCE, false, 0),
+            new MqttPublishVariableHeader("/a/b/c", 1), Unpooled.wrappedBuffer(new byte[payloadSize])));
+        ByteBuf encoded = encoder.readOutbound();
+        pubPacket = ByteBufUtil.getBytes(encoded);
+        encoded.release();
+        encoder.finishAndReleaseAll();
+        channel = new EmbeddedChannel(new MqttDecoder(payloadSize * 2));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public Message ingress() {
+        ByteBuf read = PooledByteBufAllocator.DEFAULT.directBuffer(pubPacket.length);
+        read.writeBytes(pubPacket);
+        channel.writeInbound(read);
+        MqttPublishMessage pubMsg = channel.readInbound();
+        ByteString payload = switch (copyMode) {
+            case "nioBuffer" -> ByteString.copyFrom(pubMsg.payload().nioBuffer());
+            case "getBytes" -> UnsafeByteOperations.unsafeWrap(ByteBufUtil.getBytes(pubMsg.payload()));
+            default -> UnsafeByteOperations.unsafeWrap(pubMsg.payload().nioBuffer());
+        };
+        // built the same way as MQTT3MessageUtils.toMessage
+        Message message = Message.newBuilder()
+            .setMessageId(pubMsg.variableHeader().packetId())
+            .setPubQoS(QoS.forNumber(pubMsg.fixedHeader().qosLevel().value()))
+            .setPayload(payload)
+            .setTimestamp(HLC.INST.getPhysical())
+            .setExpiryInterval(Integer.MAX_VALUE)
+            .setIsRetain(pubMsg.fixedHeader().isRetain())
+            .build();
+        pubMsg.release();
+        return message;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(IngressPayloadBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .warmupIterations(2)
+            .measurementIterations(3)
+            .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.mqtt.handler.benchmark;
+
+import com.baidu.bifromq.mqtt.handler.MQTTMessageHandler;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import java.util.concurrent.TimeUnit;
+import lombok.SneakyThrows;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measure writing a burst of PUBLISH messages to a TLS channel, flushing every message versus flushing the burst
+ * together via MQTTMessageHandler. The flushes reaching SslHandler, each of which costs a write syscall on real
+ * channel, and the TLS records produced are counted along with the delivered messages, and reported as the secondary
+ * results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OutboundFlushBenchmark {
+    @Param({"perMessage", "coalesced"})
+    private String flushMode;
+
+    @Param({"100"})
+    private int burst;
+
+    @Param({"64", "1024", "16384"})
+    private int payloadSize;
+
+    private EmbeddedChannel serverChannel;
+    private FlushCounter flushCounter;
+    private BurstWriter burstWriter;
+    private ByteBuf payload;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class WriteCounter {
+        public long messages;
+        public long flushes;
+        public long tlsRecords;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            messages = 0;
+            flushes = 0;
+            tlsRecords = 0;
+        }
+    }
+
+    @SneakyThrows
+    @Setup(Level.Trial)
+    public void setup() {
+        ClassLoader classLoader = OutboundFlushBenchmark.class.getClassLoader();
+        SslContext serverSslContext = SslContextBuilder.forServer(classLoader.getResourceAsStream("test.crt"),
+                classLoader.getResourceAsStream("test.pem"))
+            .sslProvider(SslProvider.JDK)
+            .build();
+        SslContext clientSslContext = SslContextBuilder.forClient()
+            .trustManager(InsecureTrustManagerFactory.INSTANCE)
+            .sslProvider(SslProvider.JDK)
+            .build();
+        flushCounter = new FlushCounter();
+        burstWriter = new BurstWriter();
+        serverChannel = new EmbeddedChannel();
+        serverChannel.pipeline().addLast(serverSslContext.newHandler(serverChannel.alloc()),
+            flushCounter, MqttEncoder.INSTANCE, burstWriter);
+        EmbeddedChannel clientChannel = new EmbeddedChannel();
+        clientChannel.pipeline().addLast(clientSslContext.newHandler(clientChannel.alloc()));
+        handshake(clientChannel, serverChannel);
+        clientChannel.finishAndReleaseAll();
+        payload = Unpooled.wrappedBuffer(new byte[payloadSize]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serverChannel.finishAndReleaseAll();
+        payload.release();
+    }
+
+    @Benchmark
+    public void writeBurst(WriteCounter counter) {
+        boolean coalesced = "coalesced".equals(flushMode);
+        long flushes = flushCounter.flushes;
+        for (int i = 0; i < burst; i++) {
+            MqttPublishMessage pubMsg = new MqttPublishMessage(
+                new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.AT_LEAST_ONCE, false, 0),
+                new MqttPublishVariableHeader("/a/b/c", i + 1), payload.retainedDuplicate());
+            burstWriter.write(pubMsg, coalesced);
+        }
+        // the scheduled flush runs after the burst
+        serverChannel.runPendingTasks();
+        counter.messages += burst;
+        counter.flushes += flushCounter.flushes - flushes;
+        ByteBuf out;
+        while ((out = serverChannel.readOutbound()) != null) {
+            counter.tlsRecords += countRecords(out);
+            out.release();
+        }
+    }
+
+    private static int countRecords(ByteBuf buf) {
+        int records = 0;
+        int idx = buf.readerIndex();
+        // TLS record: <content type(1)><version(2)><length(2)><fragment>
+        while (idx + 5 <= buf.writerIndex()) {
+            idx += 5 + buf.getUnsignedShort(idx + 3);
+            records++;
+        }
+        return records;
+    }
+
+    private static void handshake(EmbeddedChannel client, EmbeddedChannel server) {
+        SslHandler clientSsl = client.pipeline().get(SslHandler.class);
+        SslHandler serverSsl = server.pipeline().get(SslHandler.class);
+        for (int i = 0; i < 100 && !(clientSsl.handshakeFuture().isDone() && serverSsl.handshakeFuture().isDone());
+             i++) {
+            transfer(client, server);
+            transfer(server, client);
+        }
+        if (!serverSsl.handshakeFuture().isSuccess()) {
+            throw new IllegalStateException("TLS handshake failed", serverSsl.handshakeFuture().cause());
+        }
+        // drain the post handshake messages, e.g. the session tickets of TLS 1.3
+        transfer(server, client);
+    }
+
+    private static void transfer(EmbeddedChannel from, EmbeddedChannel to) {
+        Object msg;
+        while ((msg = from.readOutbound()) != null) {
+            to.writeInbound(msg);
+        }
+        to.runPendingTasks();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(OutboundFlushBenchmark.class.getSimpleName())
+            .forks(1)
+            .warmupIterations(2)
+            .measurementIterations(3)
+            .build();
+        new Runner(opt).run();
+    }
+
+    private static class FlushCounter extends ChannelOutboundHandlerAdapter {
+        private long flushes;
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) {
+            flushes++;
+            ctx.flush();
+        }
+    }
+
+    private static class BurstWriter extends MQTTMessageHandler {
+        void write(MqttPublishMessage pubMsg, boolean coalesced) {
+            if (coalesced) {
+                writeAndFlush(pubMsg);
+            } else {
+                ctx.writeAndFlush(pubMsg);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.mqtt.handler.benchmark;
+
+import com.baidu.bifromq.mqtt.handler.SharedPayloadCache;
+import com.baidu.bifromq.mqtt.handler.SharedPayloadEncoder;
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measure encoding one message for all the subscribers on an event loop, copying the payload into each frame versus
+ * sharing one copy of the payload. The fan-outs and the direct bytes allocated for their frames are reported as the
+ * secondary results. Payloads of all sizes are shared regardless of {@code mqtt_shared_payload_min_bytes}, so that the
+ * break-even size can be told.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Dmqtt_shared_payload_min_bytes=1")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SharedPayloadBenchmark {
+    @Param({"copy", "shared"})
+    private String mode;
+
+    @Param({"1000"})
+    private int subscribers;
+
+    @Param({"4096", "8192", "16384", "32768", "65536"})
+    private int payloadSize;
+
+    private EmbeddedChannel[] channels;
+    private byte[] payloadBytes;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class DirectBytesCounter {
+        public long fanOuts;
+        public long directBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            fanOuts = 0;
+            directBytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        channels = new EmbeddedChannel[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            channels[i] = new EmbeddedChannel(MqttEncoder.INSTANCE);
+            channels[i].pipeline().addLast(SharedPayloadEncoder.NAME, SharedPayloadEncoder.INSTANCE);
+        }
+        payloadBytes = new byte[payloadSize];
+        ThreadLocalRandom.current().nextBytes(payloadBytes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (EmbeddedChannel channel : channels) {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Benchmark
+    public void fanOut(DirectBytesCounter counter) {
+        // every message has its own payload object
+        ByteString payload = ByteString.copyFrom(payloadBytes);
+        boolean shared = "shared".equals(mode);
+        for (EmbeddedChannel channel : channels) {
+            ChannelHandlerContext ctx = channel.pipeline().lastContext();
+            MqttPublishMessage pubMsg = new MqttPublishMessage(
+                new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.AT_LEAST_ONCE, false, 0),
+                new MqttPublishVariableHeader("/a/b/c", 1), Unpooled.wrappedBuffer(payload.asReadOnlyByteBuffer()));
+            channel.writeOutbound(shared ? SharedPayloadCache.share(ctx, pubMsg, payload, false) : pubMsg);
+        }
+        counter.fanOuts++;
+        if (shared) {
+            counter.directBytes += payloadSize;
+        }
+        for (EmbeddedChannel channel : channels) {
+            ByteBuf frame = channel.readOutbound();
+            counter.directBytes += frame instanceof CompositeByteBuf composite
+                ? composite.component(0).capacity() : frame.capacity();
+            frame.release();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(SharedPayloadBenchmark.class.getSimpleName())
+            .forks(1)
+            .warmupIterations(2)
+            .measurementIterations(3)
+            .build();
+        new Runner(opt).run();
+    }
+}
@@ -32,6 +32,7 @@ import static org.testng.Assert.assertTrue;
 
 import com.baidu.bifromq.dist.client.IDistClient;
 import com.baidu.bifromq.mqtt.MockableTest;
+import com.baidu.bifromq.mqtt.session.FanOutBatch;
 import com.baidu.bifromq.mqtt.session.IMQTTTransientSession;
 import com.baidu.bifromq.plugin.subbroker.DeliveryPack;
 import com.baidu.bifromq.plugin.subbroker.DeliveryPackage;
@@ -43,6 +44,7 @@ import com.baidu.bifromq.type.ClientInfo;
 import com.baidu.bifromq.type.MatchInfo;
 import com.baidu.bifromq.type.TopicMessagePack;
 import com.bifromq.plugin.resourcethrottler.IResourceThrottler;
+import io.netty.util.concurrent.EventExecutor;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
@@ -161,7 +163,7 @@ public class LocalDistServiceTest extends MockableTest {
             ClientInfo clientInfo = ClientInfo.newBuilder().setTenantId(tenantId).build();
             when(session.clientInfo()).thenReturn(clientInfo);
             when(session.channelId()).thenReturn("channelId" + i);
-            when(session.publish(any(), anyList())).thenReturn(true);
+            when(session.publish(any(), anyList(), any())).thenReturn(true);
             when(localSessionRegistry.get("channelId" + i)).thenReturn(session);
             sessions.add(session);
             localDistService.match(reqId, topicFilter, session);
@@ -193,7 +195,7 @@ public class LocalDistServiceTest extends MockableTest {
             .allMatch(result -> result.getCode() == DeliveryResult.Code.OK));
 
         // Verify that the publish method was called correctly
-        verify(sessions.get(0), times(1)).publish(any(), anyList());
+        verify(sessions.get(0), times(1)).publish(any(), anyList(), any());
     }
 
     @Test
@@ -217,7 +219,7 @@ public class LocalDistServiceTest extends MockableTest {
 
         IMQTTTransientSession mockTransientSession = mock(IMQTTTransientSession.class);
         when(mockTransientSession.channelId()).thenReturn(channelId);
-        when(mockTransientSession.publish(any(), any())).thenReturn(true);
+        when(mockTransientSession.publish(any(), any(), any())).thenReturn(true);
         when(localSessionRegistry.get(anyString())).thenReturn(mockTransientSession);
 
         ILocalTopicRouter.ILocalRoutes localRoutes = mock(ILocalTopicRouter.ILocalRoutes.class);
@@ -233,7 +235,7 @@ public class LocalDistServiceTest extends MockableTest {
         DeliveryReply reply = future.join();
 
         verify(localSessionRegistry).get(anyString());
-        verify(mockTransientSession).publish(any(), any());
+        verify(mockTransientSession).publish(any(), any(), any());
 
         assertNotNull(reply);
         DeliveryResults results = reply.getResultMap().get(tenantId);
@@ -242,6 +244,56 @@ public class LocalDistServiceTest extends MockableTest {
         assertEquals(DeliveryResult.Code.OK, result.getCode());
     }
 
+    @Test
+    public void deliverToLocalRouteInBatch() {
+        String tenantId = "tenant1";
+        String topicFilter = "testTopic/#";
+        MatchInfo matchInfo = MatchInfo.newBuilder()
+            .setTopicFilter(topicFilter)
+            .setReceiverId("receiverId")
+            .build();
+        TopicMessagePack topicMessagePack = TopicMessagePack.newBuilder().setTopic("testTopic").build();
+        DeliveryPackage deliveryPack = DeliveryPackage.newBuilder()
+            .addPack(DeliveryPack.newBuilder()
+                .setMessagePack(topicMessagePack)
+                .addMatchInfo(matchInfo)
+                .build())
+            .build();
+        DeliveryRequest request = DeliveryRequest.newBuilder().putPackage(tenantId, deliveryPack).build();
+
+        EventExecutor eventLoop1 = mock(EventExecutor.class);
+        EventExecutor eventLoop2 = mock(EventExecutor.class);
+        Set<String> channelIds = new LinkedHashSet<>();
+        List<IMQTTTransientSession> sessions = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String channelId = "channel" + i;
+            EventExecutor eventLoop = i % 2 == 0 ? eventLoop1 : eventLoop2;
+            IMQTTTransientSession session = mock(IMQTTTransientSession.class);
+            when(session.publish(any(), any(), any())).thenAnswer(invocation -> {
+                FanOutBatch batch = invocation.getArgument(2);
+                batch.add(eventLoop, () -> {
+                });
+                return true;
+            });
+            when(localSessionRegistry.get(channelId)).thenReturn(session);
+            channelIds.add(channelId);
+            sessions.add(session);
+        }
+        ILocalTopicRouter.ILocalRoutes localRoutes = mock(ILocalTopicRouter.ILocalRoutes.class);
+        when(localRoutes.localReceiverId()).thenReturn("receiverId");
+        when(localRoutes.routeList()).thenReturn(channelIds);
+        when(localTopicRouter.getTopicRoutes(anyString(), any())).thenReturn(Optional.of(
+            CompletableFuture.completedFuture(localRoutes)));
+
+        DeliveryReply reply = localDistService.dist(request).join();
+
+        sessions.forEach(session -> verify(session).publish(eq(matchInfo), eq(List.of(topicMessagePack)), any()));
+        // one submission per event loop
+        verify(eventLoop1, times(1)).execute(any());
+        verify(eventLoop2, times(1)).execute(any());
+        assertEquals(reply.getResultMap().get(tenantId).getResult(0).getCode(), DeliveryResult.Code.OK);
+    }
+
     @Test
     public void deliverToMismatchedReceiver() {
         String tenantId = "tenant1";
@@ -263,7 +315,7 @@ public class LocalDistServiceTest extends MockableTest {
 
         IMQTTTransientSession mockTransientSession = mock(IMQTTTransientSession.class);
         when(mockTransientSession.channelId()).thenReturn(channelId);
-        when(mockTransientSession.publish(any(), any())).thenReturn(true);
+        when(mockTransientSession.publish(any(), any(), any())).thenReturn(true);
         when(localSessionRegistry.get(anyString())).thenReturn(mockTransientSession);
 
         ILocalTopicRouter.ILocalRoutes localRoutes = mock(ILocalTopicRouter.ILocalRoutes.class);
@@ -304,7 +356,7 @@ public class LocalDistServiceTest extends MockableTest {
 
         IMQTTTransientSession mockTransientSession = mock(IMQTTTransientSession.class);
         when(mockTransientSession.channelId()).thenReturn(channelId);
-        when(mockTransientSession.publish(any(), any())).thenReturn(true);
+        when(mockTransientSession.publish(any(), any(), any())).thenReturn(true);
         when(localSessionRegistry.get(anyString())).thenReturn(mockTransientSession);
 
         when(localTopicRouter.getTopicRoutes(anyString(), any())).thenReturn(Optional.empty());
@@ -341,7 +393,7 @@ public class LocalDistServiceTest extends MockableTest {
 
         IMQTTTransientSession mockTransientSession = mock(IMQTTTransientSession.class);
         when(mockTransientSession.channelId()).thenReturn(channelId);
-        when(mockTransientSession.publish(any(), any())).thenReturn(true);
+        when(mockTransientSession.publish(any(), any(), any())).thenReturn(true);
         when(localSessionRegistry.get(anyString())).thenReturn(mockTransientSession);
 
         when(localTopicRouter.getTopicRoutes(anyString(), any())).thenReturn(Optional.of(new CompletableFuture<>()));
@@ -378,7 +430,7 @@ public class LocalDistServiceTest extends MockableTest {
 
         IMQTTTransientSession mockTransientSession = mock(IMQTTTransientSession.class);
         when(mockTransientSession.channelId()).thenReturn(channelId);
-        when(mockTransientSession.publish(any(), any())).thenReturn(true);
+        when(mockTransientSession.publish(any(), any(), any())).thenReturn(true);
         when(localSessionRegistry.get(anyString())).thenReturn(mockTransientSession);
 
         when(localTopicRouter.getTopicRoutes(anyString(), any())).thenReturn(
@@ -419,12 +471,12 @@ public class LocalDistServiceTest extends MockableTest {
 
         IMQTTTransientSession mockTransientSession1 = mock(IMQTTTransientSession.class);
         when(mockTransientSession1.channelId()).thenReturn(channelId1);
-        when(mockTransientSession1.publish(any(), any())).thenReturn(true);
+        when(mockTransientSession1.publish(any(), any(), any())).thenReturn(true);
         when(localSessionRegistry.get(channelId1)).thenReturn(mockTransientSession1);
 
         IMQTTTransientSession mockTransientSession2 = mock(IMQTTTransientSession.class);
         when(mockTransientSession2.channelId()).thenReturn(channelId2);
-        when(mockTransientSession2.publish(any(), any())).thenReturn(true);
+        when(mockTransientSession2.publish(any(), any(), any())).thenReturn(true);
         when(localSessionRegistry.get(channelId2)).thenReturn(mockTransientSession2);
 
         ILocalTopicRouter.ILocalRoutes localRoutes = mock(ILocalTopicRouter.ILocalRoutes.class);
@@ -443,8 +495,8 @@ public class LocalDistServiceTest extends MockableTest {
         DeliveryReply reply = future.join();
 
         verify(localSessionRegistry).get(channelId1);
-        verify(mockTransientSession1).publish(eq(matchInfo), eq(List.of(topicMessagePack)));
-        verify(mockTransientSession2, never()).publish(any(), any());
+        verify(mockTransientSession1).publish(eq(matchInfo), eq(List.of(topicMessagePack)), any());
+        verify(mockTransientSession2, never()).publish(any(), any(), any());
 
         DeliveryResults results = reply.getResultMap().get(tenantId);
         DeliveryResult result = results.getResult(0);
@@ -479,12 +531,12 @@ public class LocalDistServiceTest extends MockableTest {
 
         IMQTTTransientSession mockTransientSession1 = mock(IMQTTTransientSession.class);
         when(mockTransientSession1.channelId()).thenReturn(channelId1);
-        when(mockTransientSession1.publish(any(), any())).thenReturn(true);
+        when(mockTransientSession1.publish(any(), any(), any())).thenReturn(true);
         when(localSessionRegistry.get(channelId1)).thenReturn(mockTransientSession1);
 
         IMQTTTransientSession mockTransientSession2 = mock(IMQTTTransientSession.class);
         when(mockTransientSession2.channelId()).thenReturn(channelId2);
-        when(mockTransientSession2.publish(any(), any())).thenReturn(true);
+        when(mockTransientSession2.publish(any(), any(), any())).thenReturn(true);
         when(localSessionRegistry.get(channelId2)).thenReturn(mockTransientSession2);
 
         ILocalTopicRouter.ILocalRoutes localRoutes = mock(ILocalTopicRouter.ILocalRoutes.class);
@@ -503,8 +555,8 @@ public class LocalDistServiceTest extends MockableTest {
         DeliveryReply reply = future.join();
 
         verify(localSessionRegistry, times(2)).get(channelId1);
-        verify(mockTransientSession1, times(2)).publish(any(), any());
-        verify(mockTransientSession2, never()).publish(any(), any());
+        verify(mockTransientSession1, times(2)).publish(any(), any(), any());
+        verify(mockTransientSession2, never()).publish(any(), any(), any());
 
         DeliveryResults results = reply.getResultMap().get(tenantId);
         DeliveryResult result = results.getResult(0);
@@ -532,7 +584,7 @@ public class LocalDistServiceTest extends MockableTest {
 
         IMQTTTransientSession mockTransientSession = mock(IMQTTTransientSession.class);
         when(mockTransientSession.channelId()).thenReturn(channelId);
-        when(mockTransientSession.publish(any(), any())).thenReturn(false);
+        when(mockTransientSession.publish(any(), any(), any())).thenReturn(false);
         when(localSessionRegistry.get(anyString())).thenReturn(mockTransientSession);
 
         ILocalTopicRouter.ILocalRoutes localRoutes = mock(ILocalTopicRouter.ILocalRoutes.class);
@@ -548,7 +600,7 @@ public class LocalDistServiceTest extends MockableTest {
         DeliveryReply reply = future.join();
 
         verify(localSessionRegistry).get(anyString());
-        verify(mockTransientSession).publish(any(), any());
+        verify(mockTransientSession).publish(any(), any(), any());
 
         DeliveryResults results = reply.getResultMap().get(tenantId);
         DeliveryResult result = results.getResult(0);
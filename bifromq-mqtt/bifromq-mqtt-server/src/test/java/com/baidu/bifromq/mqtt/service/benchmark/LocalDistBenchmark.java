@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.mqtt.service.benchmark;
+
+import com.baidu.bifromq.dist.client.MatchResult;
+import com.baidu.bifromq.dist.client.UnmatchResult;
+import com.baidu.bifromq.mqtt.inbox.rpc.proto.SubReply;
+import com.baidu.bifromq.mqtt.inbox.rpc.proto.UnsubReply;
+import com.baidu.bifromq.mqtt.service.ILocalSessionRegistry;
+import com.baidu.bifromq.mqtt.service.ILocalTopicRouter;
+import com.baidu.bifromq.mqtt.service.LocalDistService;
+import com.baidu.bifromq.mqtt.session.FanOutBatch;
+import com.baidu.bifromq.mqtt.session.IMQTTSession;
+import com.baidu.bifromq.mqtt.session.IMQTTTransientSession;
+import com.baidu.bifromq.plugin.subbroker.DeliveryPack;
+import com.baidu.bifromq.plugin.subbroker.DeliveryPackage;
+import com.baidu.bifromq.plugin.subbroker.DeliveryRequest;
+import com.baidu.bifromq.type.ClientInfo;
+import com.baidu.bifromq.type.MatchInfo;
+import com.baidu.bifromq.type.Message;
+import com.baidu.bifromq.type.QoS;
+import com.baidu.bifromq.type.TopicMessagePack;
+import com.google.protobuf.ByteString;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measure fanning out one message to all local subscribers of a topic filter until every session has received it,
+ * scheduling one task per session versus one task per event loop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LocalDistBenchmark {
+    private static final String TENANT_ID = "tenantA";
+    private static final String RECEIVER_ID = "receiverId";
+
+    @Param({"perSession", "batched"})
+    private String mode;
+
+    @Param({"1000", "10000", "100000"})
+    private int subscribers;
+
+    @Param({"16"})
+    private int eventLoops;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private EventLoopGroup eventLoopGroup;
+    private LocalDistService localDistService;
+    private DeliveryRequest request;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        eventLoopGroup = new DefaultEventLoopGroup(eventLoops);
+        Map<String, IMQTTSession> sessions = new HashMap<>();
+        Set<String> routeList = new LinkedHashSet<>();
+        for (int i = 0; i < subscribers; i++) {
+            String channelId = "channel" + i;
+            sessions.put(channelId, new BenchSession(channelId, eventLoopGroup.next()));
+            routeList.add(channelId);
+        }
+        ILocalTopicRouter.ILocalRoutes localRoutes = new ILocalTopicRouter.ILocalRoutes() {
+            @Override
+            public String localReceiverId() {
+                return RECEIVER_ID;
+            }
+
+            @Override
+            public Set<String> routeList() {
+                return routeList;
+            }
+        };
+        ILocalSessionRegistry sessionRegistry = new ILocalSessionRegistry() {
+            @Override
+            public void add(String sessionId, IMQTTSession session) {
+            }
+
+            @Override
+            public boolean remove(String sessionId, IMQTTSession session) {
+                return false;
+            }
+
+            @Override
+            public IMQTTSession get(String sessionId) {
+                return sessions.get(sessionId);
+            }
+
+            @Override
+            public CompletableFuture<Void> disconnectAll(int disconnectRate) {
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+        ILocalTopicRouter topicRouter = new ILocalTopicRouter() {
+            @Override
+            public CompletableFuture<MatchResult> addTopicRoute(long reqId, String tenantId, String topicFilter,
+                                                                String channelId) {
+                return CompletableFuture.completedFuture(MatchResult.OK);
+            }
+
+            @Override
+            public CompletableFuture<UnmatchResult> removeTopicRoute(long reqId, String tenantId, String topicFilter,
+                                                                     String channelId) {
+                return CompletableFuture.completedFuture(UnmatchResult.OK);
+            }
+
+            @Override
+            public Optional<CompletableFuture<? extends ILocalRoutes>> getTopicRoutes(String tenantId,
+                                                                                     MatchInfo matchInfo) {
+                return Optional.of(CompletableFuture.completedFuture(localRoutes));
+            }
+        };
+        localDistService = new LocalDistService("serverId", sessionRegistry, topicRouter, null,
+            (tenantId, type) -> true);
+        request = DeliveryRequest.newBuilder()
+            .putPackage(TENANT_ID, DeliveryPackage.newBuilder()
+                .addPack(DeliveryPack.newBuilder()
+                    .setMessagePack(TopicMessagePack.newBuilder()
+                        .setTopic("a/b/c")
+                        .addMessage(TopicMessagePack.PublisherPack.newBuilder()
+                            .setPublisher(ClientInfo.newBuilder().setTenantId(TENANT_ID).build())
+                            .addMessage(Message.newBuilder()
+                                .setPubQoS(QoS.AT_MOST_ONCE)
+                                .setPayload(ByteString.copyFromUtf8("hello"))
+                                .build())
+                            .build())
+                        .build())
+                    .addMatchInfo(MatchInfo.newBuilder()
+                        .setTopicFilter("a/b/c")
+                        .setReceiverId(RECEIVER_ID)
+                        .build())
+                    .build())
+                .build())
+            .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        eventLoopGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Benchmark
+    public void fanOut() {
+        long expected = delivered.get() + subscribers;
+        localDistService.dist(request).join();
+        while (delivered.get() < expected) {
+            Thread.onSpinWait();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(LocalDistBenchmark.class.getSimpleName())
+            .forks(1)
+            .warmupIterations(2)
+            .measurementIterations(3)
+            .build();
+        new Runner(opt).run();
+    }
+
+    private class BenchSession implements IMQTTTransientSession {
+        private final String channelId;
+        private final EventExecutor eventLoop;
+        private final ClientInfo clientInfo = ClientInfo.newBuilder().setTenantId(TENANT_ID).build();
+
+        BenchSession(String channelId, EventExecutor eventLoop) {
+            this.channelId = channelId;
+            this.eventLoop = eventLoop;
+        }
+
+        @Override
+        public String channelId() {
+            return channelId;
+        }
+
+        @Override
+        public ClientInfo clientInfo() {
+            return clientInfo;
+        }
+
+        @Override
+        public CompletableFuture<SubReply.Result> subscribe(long reqId, String topicFilter, QoS qos) {
+            return CompletableFuture.completedFuture(SubReply.Result.OK);
+        }
+
+        @Override
+        public CompletableFuture<UnsubReply.Result> unsubscribe(long reqId, String topicFilter) {
+            return CompletableFuture.completedFuture(UnsubReply.Result.OK);
+        }
+
+        @Override
+        public CompletableFuture<Void> disconnect() {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public boolean publish(MatchInfo matchInfo, List<TopicMessagePack> messagePack) {
+            eventLoop.execute(delivered::incrementAndGet);
+            return true;
+        }
+
+        @Override
+        public boolean publish(MatchInfo matchInfo, List<TopicMessagePack> messagePack, FanOutBatch batch) {
+            if ("perSession".equals(mode)) {
+                // the way of scheduling before batching
+                return publish(matchInfo, messagePack);
+            }
+            batch.add(eventLoop, delivered::incrementAndGet);
+            return true;
+        }
+    }
+}
@@ -14,16 +14,24 @@
 package com.baidu.bifromq.mqtt.session;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 import com.baidu.bifromq.mqtt.MockableTest;
 import com.baidu.bifromq.plugin.authprovider.IAuthProvider;
 import com.baidu.bifromq.plugin.authprovider.type.CheckResult;
+import com.baidu.bifromq.plugin.authprovider.type.Error;
 import com.baidu.bifromq.plugin.authprovider.type.Granted;
+import com.baidu.bifromq.plugin.authprovider.type.MQTT5ExtendedAuthData;
+import com.baidu.bifromq.plugin.authprovider.type.MQTT5ExtendedAuthResult;
 import com.baidu.bifromq.plugin.authprovider.type.MQTTAction;
 import com.baidu.bifromq.plugin.authprovider.type.PubAction;
+import com.baidu.bifromq.plugin.authprovider.type.SubAction;
 import com.baidu.bifromq.type.ClientInfo;
+import com.google.common.base.Ticker;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.DefaultEventLoop;
 import io.netty.util.concurrent.EventExecutor;
@@ -35,6 +43,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.extern.slf4j.Slf4j;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
@@ -110,4 +120,134 @@ public class MQTTSessionAuthProviderTest extends MockableTest {
             assertEquals(expected.get(i), i);
         }
     }
+
+    @Test
+    public void cacheSubPermission() {
+        MQTTSessionAuthProvider authProvider = new MQTTSessionAuthProvider(delegate, context, Ticker.systemTicker(), 5,
+            10);
+        ClientInfo client = ClientInfo.newBuilder().setTenantId("tenant").build();
+        MQTTAction subAction = subAction("a/b");
+        when(delegate.checkPermission(any(), any())).thenReturn(CompletableFuture.completedFuture(granted()));
+
+        assertTrue(check(authProvider, client, subAction).hasGranted());
+        assertTrue(check(authProvider, client, subAction).hasGranted());
+        verify(delegate, times(1)).checkPermission(client, subAction);
+
+        // cached result is not used for other client
+        ClientInfo otherClient = ClientInfo.newBuilder().setTenantId("tenant").setType("other").build();
+        check(authProvider, otherClient, subAction);
+        verify(delegate, times(1)).checkPermission(otherClient, subAction);
+    }
+
+    @Test
+    public void cacheAsyncSubPermission() {
+        MQTTSessionAuthProvider authProvider = new MQTTSessionAuthProvider(delegate, context, Ticker.systemTicker(), 5,
+            10);
+        ClientInfo client = ClientInfo.newBuilder().setTenantId("tenant").build();
+        MQTTAction subAction = subAction("a/b");
+        when(delegate.checkPermission(any(), any())).thenReturn(CompletableFuture.supplyAsync(this::granted));
+
+        assertTrue(check(authProvider, client, subAction).hasGranted());
+        assertTrue(check(authProvider, client, subAction).hasGranted());
+        verify(delegate, times(1)).checkPermission(client, subAction);
+    }
+
+    @Test
+    public void skipCacheNonSubPermission() {
+        MQTTSessionAuthProvider authProvider = new MQTTSessionAuthProvider(delegate, context, Ticker.systemTicker(), 5,
+            10);
+        ClientInfo client = ClientInfo.newBuilder().setTenantId("tenant").build();
+        MQTTAction pubAction = MQTTAction.newBuilder().setPub(PubAction.newBuilder().setTopic("a/b").build()).build();
+        when(delegate.checkPermission(any(), any())).thenReturn(CompletableFuture.completedFuture(granted()));
+
+        check(authProvider, client, pubAction);
+        check(authProvider, client, pubAction);
+        verify(delegate, times(2)).checkPermission(client, pubAction);
+    }
+
+    @Test
+    public void skipCacheErrorResult() {
+        MQTTSessionAuthProvider authProvider = new MQTTSessionAuthProvider(delegate, context, Ticker.systemTicker(), 5,
+            10);
+        ClientInfo client = ClientInfo.newBuilder().setTenantId("tenant").build();
+        MQTTAction subAction = subAction("a/b");
+        when(delegate.checkPermission(any(), any())).thenReturn(CompletableFuture.completedFuture(
+            CheckResult.newBuilder().setError(Error.getDefaultInstance()).build()));
+
+        check(authProvider, client, subAction);
+        check(authProvider, client, subAction);
+        verify(delegate, times(2)).checkPermission(client, subAction);
+    }
+
+    @Test
+    public void cacheExpiry() {
+        AtomicLong nanos = new AtomicLong();
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        MQTTSessionAuthProvider authProvider = new MQTTSessionAuthProvider(delegate, context, ticker, 5, 10);
+        ClientInfo client = ClientInfo.newBuilder().setTenantId("tenant").build();
+        MQTTAction subAction = subAction("a/b");
+        when(delegate.checkPermission(any(), any())).thenReturn(CompletableFuture.completedFuture(granted()));
+
+        check(authProvider, client, subAction);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        check(authProvider, client, subAction);
+        verify(delegate, times(1)).checkPermission(client, subAction);
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        check(authProvider, client, subAction);
+        verify(delegate, times(2)).checkPermission(client, subAction);
+    }
+
+    @Test
+    public void cacheMaxSize() {
+        MQTTSessionAuthProvider authProvider = new MQTTSessionAuthProvider(delegate, context, Ticker.systemTicker(), 5,
+            2);
+        ClientInfo client = ClientInfo.newBuilder().setTenantId("tenant").build();
+        when(delegate.checkPermission(any(), any())).thenReturn(CompletableFuture.completedFuture(granted()));
+
+        check(authProvider, client, subAction("a"));
+        check(authProvider, client, subAction("b"));
+        check(authProvider, client, subAction("c"));
+        check(authProvider, client, subAction("a"));
+        verify(delegate, times(2)).checkPermission(client, subAction("a"));
+        check(authProvider, client, subAction("c"));
+        verify(delegate, times(1)).checkPermission(client, subAction("c"));
+    }
+
+    @Test
+    public void invalidateCacheOnReAuth() {
+        MQTTSessionAuthProvider authProvider = new MQTTSessionAuthProvider(delegate, context, Ticker.systemTicker(), 5,
+            10);
+        ClientInfo client = ClientInfo.newBuilder().setTenantId("tenant").build();
+        MQTTAction subAction = subAction("a/b");
+        when(delegate.checkPermission(any(), any())).thenReturn(CompletableFuture.completedFuture(granted()));
+        when(delegate.extendedAuth(any())).thenReturn(
+            CompletableFuture.completedFuture(MQTT5ExtendedAuthResult.getDefaultInstance()));
+
+        check(authProvider, client, subAction);
+        contextExecutor.submit(() -> authProvider.extendedAuth(MQTT5ExtendedAuthData.getDefaultInstance()).join())
+            .syncUninterruptibly();
+        check(authProvider, client, subAction);
+        verify(delegate, times(2)).checkPermission(client, subAction);
+    }
+
+    private CheckResult check(MQTTSessionAuthProvider authProvider, ClientInfo client, MQTTAction action) {
+        return contextExecutor.submit(() -> authProvider.checkPermission(client, action))
+            .syncUninterruptibly()
+            .getNow()
+            .join();
+    }
+
+    private MQTTAction subAction(String topicFilter) {
+        return MQTTAction.newBuilder().setSub(SubAction.newBuilder().setTopicFilter(topicFilter).build()).build();
+    }
+
+    private CheckResult granted() {
+        return CheckResult.newBuilder().setGranted(Granted.getDefaultInstance()).build();
+    }
 }
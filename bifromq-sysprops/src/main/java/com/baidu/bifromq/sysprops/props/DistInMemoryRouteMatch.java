@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.sysprops.props;
+
+import com.baidu.bifromq.sysprops.BifroMQSysProp;
+import com.baidu.bifromq.sysprops.parser.BooleanParser;
+
+/**
+ * The system property for matching routes against the in-memory topic filter index of each dist-worker range, disable
+ * it to fall back to scanning match records in the range.
+ */
+public final class DistInMemoryRouteMatch extends BifroMQSysProp<Boolean, BooleanParser> {
+    public static final DistInMemoryRouteMatch INSTANCE = new DistInMemoryRouteMatch();
+
+    private DistInMemoryRouteMatch() {
+        super("dist_worker_in_memory_route_match", true, BooleanParser.INSTANCE);
+    }
+}
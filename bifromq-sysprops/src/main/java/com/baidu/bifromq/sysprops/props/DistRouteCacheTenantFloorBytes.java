@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.sysprops.props;
+
+import com.baidu.bifromq.sysprops.BifroMQSysProp;
+import com.baidu.bifromq.sysprops.parser.LongParser;
+
+/**
+ * The system property for the bytes of cached routes reserved for each tenant in dist-worker, the routes beyond it
+ * compete with other tenants in the shared route cache pool. The floors are reserved out of the route cache budget, and
+ * halved when the floors of all tenants don't fit in it.
+ */
+public final class DistRouteCacheTenantFloorBytes extends BifroMQSysProp<Long, LongParser> {
+    public static final DistRouteCacheTenantFloorBytes INSTANCE = new DistRouteCacheTenantFloorBytes();
+
+    private DistRouteCacheTenantFloorBytes() {
+        super("dist_worker_route_cache_tenant_floor_bytes", 64L * 1024, LongParser.NON_NEGATIVE);
+    }
+}
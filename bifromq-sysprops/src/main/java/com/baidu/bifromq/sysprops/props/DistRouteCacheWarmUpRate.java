@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.sysprops.props;
+
+import com.baidu.bifromq.sysprops.BifroMQSysProp;
+import com.baidu.bifromq.sysprops.parser.IntegerParser;
+
+/**
+ * The system property for the max number of topics per second preloaded by the route cache warm-up of a dist-worker
+ * range, so that the warm-up won't compete with live traffic for the matching resources.
+ */
+public final class DistRouteCacheWarmUpRate extends BifroMQSysProp<Integer, IntegerParser> {
+    public static final DistRouteCacheWarmUpRate INSTANCE = new DistRouteCacheWarmUpRate();
+
+    private DistRouteCacheWarmUpRate() {
+        super("dist_worker_route_cache_warmup_rate", 1000, IntegerParser.POSITIVE);
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2024. The BifroMQ Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baidu.bifromq.sysprops.props;
+
+import com.baidu.bifromq.sysprops.BifroMQSysProp;
+import com.baidu.bifromq.sysprops.parser.IntegerParser;
+
+/**
+ * The system property for how long a permission check result of subscription is cached in mqtt session, 0 to
+ * disable the cache.
+ */
+public final class MqttPermissionCacheTTLSeconds extends BifroMQSysProp<Integer, IntegerParser> {
+    public static final MqttPermissionCacheTTLSeconds INSTANCE = new MqttPermissionCacheTTLSeconds();
+
+    private MqttPermissionCacheTTLSeconds() {
+        super("mqtt_permission_cache_ttl_seconds", 5, IntegerParser.NON_NEGATIVE);
+    }
+}